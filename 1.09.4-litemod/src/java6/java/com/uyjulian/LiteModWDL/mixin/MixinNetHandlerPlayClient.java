@@ -31,9 +31,12 @@ import net.minecraft.client.network.NetHandlerPlayClient;
 import net.minecraft.network.NetworkManager;
 import net.minecraft.network.play.INetHandlerPlayClient;
 import net.minecraft.network.play.server.SPacketBlockAction;
+import net.minecraft.network.play.server.SPacketBlockChange;
 import net.minecraft.network.play.server.SPacketChat;
+import net.minecraft.network.play.server.SPacketChunkData;
 import net.minecraft.network.play.server.SPacketCustomPayload;
 import net.minecraft.network.play.server.SPacketMaps;
+import net.minecraft.network.play.server.SPacketMultiBlockChange;
 import net.minecraft.network.play.server.SPacketUnloadChunk;
 import net.minecraft.util.text.ITextComponent;
 import wdl.ReflectionUtils;
@@ -63,6 +66,20 @@ public abstract class MixinNetHandlerPlayClient implements INetHandlerPlayClient
 	@Shadow
 	private WorldClient world;
 
+	@Inject(method="handleMultiBlockChange", at=@At("HEAD"))
+	private void onHandleMultiBlockChange(SPacketMultiBlockChange packetIn, CallbackInfo ci) {
+		/* WDL >>> */
+		wdl.WDLHooks.onNHPCHandleMultiBlockChange((NetHandlerPlayClient)(Object)this, packetIn);
+		/* <<< WDL */
+		//more down here
+	}
+	@Inject(method="handleChunkData", at=@At("HEAD"))
+	private void onHandleChunkData(SPacketChunkData packetIn, CallbackInfo ci) {
+		/* WDL >>> */
+		wdl.WDLHooks.onNHPCHandleChunkData((NetHandlerPlayClient)(Object)this, packetIn);
+		/* <<< WDL */
+		//more down here
+	}
 	@Inject(method="processChunkUnload", at=@At("HEAD"))
 	private void onProcessChunkUnload(SPacketUnloadChunk packetIn, CallbackInfo ci) {
 		/* WDL >>> */
@@ -70,6 +87,13 @@ public abstract class MixinNetHandlerPlayClient implements INetHandlerPlayClient
 		/* <<< WDL */
 		//more down here
 	}
+	@Inject(method="handleBlockChange", at=@At("HEAD"))
+	private void onHandleBlockChange(SPacketBlockChange packetIn, CallbackInfo ci) {
+		/* WDL >>> */
+		wdl.WDLHooks.onNHPCHandleBlockChange((NetHandlerPlayClient)(Object)this, packetIn);
+		/* <<< WDL */
+		//more down here
+	}
 	@Inject(method="onDisconnect", at=@At("HEAD"))
 	private void onDisconnect(ITextComponent reason, CallbackInfo ci) {
 		/* WDL >>> */
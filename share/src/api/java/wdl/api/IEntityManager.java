@@ -66,6 +66,29 @@ public interface IEntityManager extends IWDLMod {
 	@Nullable
 	public abstract String getIdentifierFor(@Nonnull Entity entity);
 
+	/**
+	 * Checks whether {@link #getIdentifierFor(Entity)} may give different
+	 * results for different entities of the given class.
+	 * <p>
+	 * If this returns <code>false</code>, the identifier (or lack of one) for
+	 * one entity of that class will be reused for all other entities of that
+	 * class, without calling {@link #getIdentifierFor(Entity)} again.  This is
+	 * the case if the identifier only depends on the entity's type.  If it
+	 * returns <code>true</code>, {@link #getIdentifierFor(Entity)} will be
+	 * called for each entity, as it would be for special cases such as
+	 * holograms, which are only identified by the state of the entity.
+	 * <p>
+	 * The default implementation returns <code>true</code>, which is always
+	 * correct but slower.
+	 *
+	 * @param entityClass
+	 *            The class of the entity to identify.
+	 * @return True if each entity of that class must be identified separately.
+	 */
+	public default boolean isIdentifierInstanceSensitive(@Nonnull Class<? extends Entity> entityClass) {
+		return true;
+	}
+
 	/**
 	 * Gets the track distance for the given entity.
 	 * <p>
@@ -0,0 +1,187 @@
+/*
+ * This file is part of World Downloader: A mod to make backups of your
+ * multiplayer worlds.
+ * http://www.minecraftforum.net/forums/mapping-and-modding/minecraft-mods/2520465
+ *
+ * Copyright (c) 2014 nairol, cubic72
+ * Copyright (c) 2019 Pokechu22, julialy
+ *
+ * This project is licensed under the MMPLv2.  The full text of the MMPL can be
+ * found in LICENSE.md, or online at https://github.com/iopleke/MMPLv2/blob/master/LICENSE.md
+ * For information about this the MMPLv2, see http://stopmodreposts.org/
+ *
+ * Do not redistribute (in modified or unmodified form) without prior permission.
+ */
+package wdl;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.nbt.CompressedStreamTools;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import wdl.io.Compression;
+
+/**
+ * Tile entities that were saved manually (for instance, by opening a chest),
+ * waiting for their chunk to be saved.
+ *
+ * Each tile entity is written to NBT as soon as it is captured, and only the
+ * serialized bytes (optionally gzip-compressed) are kept, so that the tile
+ * entity and its items can be freed.  Chunks and positions are keyed by
+ * {@link ChunkPos#asLong(int, int)} and {@link BlockPos#toLong()}.
+ *
+ * Tile entities are captured on the client thread, but chunks may be saved
+ * from the save thread, so all methods are synchronized.
+ */
+public class CapturedTileEntities {
+	/**
+	 * Stored for a tile entity that failed to save, so that nothing is saved
+	 * at its position.
+	 */
+	private static final byte[] FAILED = new byte[0];
+
+	private final Long2ObjectMap<Long2ObjectMap<byte[]>> chunks = new Long2ObjectOpenHashMap<>();
+	private int count;
+	private long retainedBytes;
+	private boolean compress = true;
+
+	/**
+	 * Sets whether tile entities captured from now on are compressed.  Ones
+	 * that were already captured are unaffected.
+	 */
+	public synchronized void setCompress(boolean compress) {
+		this.compress = compress;
+	}
+
+	/**
+	 * Records the given tile entity NBT, replacing any previous one at the
+	 * same position.
+	 *
+	 * @param compound The NBT, or null if the tile entity failed to save.
+	 */
+	public synchronized void put(BlockPos pos, @Nullable NBTTagCompound compound) {
+		long chunkKey = ChunkPos.asLong(pos.getX() >> 4, pos.getZ() >> 4);
+		Long2ObjectMap<byte[]> chunk = chunks.get(chunkKey);
+		if (chunk == null) {
+			chunk = new Long2ObjectOpenHashMap<>();
+			chunks.put(chunkKey, chunk);
+		}
+		byte[] data = compound != null ? encode(compound) : FAILED;
+		byte[] previous = chunk.put(pos.toLong(), data);
+		if (previous != null) {
+			count--;
+			retainedBytes -= previous.length;
+		}
+		count++;
+		retainedBytes += data.length;
+	}
+
+	/**
+	 * Gets the tile entities captured in the given chunk.
+	 *
+	 * @return A new map of positions to NBT, where a null value means that
+	 *         the tile entity failed to save; or null if there are none.
+	 */
+	@Nullable
+	public synchronized Map<BlockPos, NBTTagCompound> get(ChunkPos pos) {
+		Long2ObjectMap<byte[]> chunk = chunks.get(ChunkPos.asLong(pos.x, pos.z));
+		if (chunk == null) {
+			return null;
+		}
+		Map<BlockPos, NBTTagCompound> result = new HashMap<>();
+		for (Long2ObjectMap.Entry<byte[]> e : chunk.long2ObjectEntrySet()) {
+			byte[] data = e.getValue();
+			result.put(BlockPos.fromLong(e.getLongKey()), data == FAILED ? null : decode(data));
+		}
+		return result;
+	}
+
+	/**
+	 * Forgets the tile entities captured in the given chunk.
+	 */
+	public synchronized void remove(ChunkPos pos) {
+		Long2ObjectMap<byte[]> chunk = chunks.remove(ChunkPos.asLong(pos.x, pos.z));
+		if (chunk != null) {
+			for (byte[] data : chunk.values()) {
+				count--;
+				retainedBytes -= data.length;
+			}
+		}
+	}
+
+	public synchronized void clear() {
+		chunks.clear();
+		count = 0;
+		retainedBytes = 0;
+	}
+
+	/**
+	 * Gets the number of captured tile entities.
+	 */
+	public synchronized int getCount() {
+		return count;
+	}
+
+	/**
+	 * Gets the number of chunks with captured tile entities.
+	 */
+	public synchronized int getChunkCount() {
+		return chunks.size();
+	}
+
+	/**
+	 * Gets the total size of the stored NBT, in bytes.
+	 */
+	public synchronized long getRetainedBytes() {
+		return retainedBytes;
+	}
+
+	private byte[] encode(NBTTagCompound compound) {
+		try {
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			if (compress) {
+				Compression.writeCompressedUntracked(compound, bytes);
+			} else {
+				try (DataOutputStream output = new DataOutputStream(bytes)) {
+					CompressedStreamTools.write(compound, output);
+				}
+			}
+			return bytes.toByteArray();
+		} catch (IOException ex) {
+			// Can't happen when writing to memory
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	private static NBTTagCompound decode(byte[] data) {
+		try {
+			// Gzip data always starts with 0x1f 0x8b; uncompressed NBT starts
+			// with the compound tag's type, 10.
+			if (data[0] == (byte) 0x1f) {
+				return CompressedStreamTools.readCompressed(new ByteArrayInputStream(data));
+			} else {
+				return CompressedStreamTools.read(new DataInputStream(new ByteArrayInputStream(data)));
+			}
+		} catch (IOException ex) {
+			throw new UncheckedIOException(ex);
+		}
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "CapturedTileEntities [count=" + count + ", chunks=" + chunks.size()
+				+ ", retainedBytes=" + retainedBytes + ", compress=" + compress + "]";
+	}
+}
@@ -0,0 +1,167 @@
+/*
+ * This file is part of World Downloader: A mod to make backups of your
+ * multiplayer worlds.
+ * http://www.minecraftforum.net/forums/mapping-and-modding/minecraft-mods/2520465
+ *
+ * Copyright (c) 2014 nairol, cubic72
+ * Copyright (c) 2019 Pokechu22, julialy
+ *
+ * This project is licensed under the MMPLv2.  The full text of the MMPL can be
+ * found in LICENSE.md, or online at https://github.com/iopleke/MMPLv2/blob/master/LICENSE.md
+ * For information about this the MMPLv2, see http://stopmodreposts.org/
+ *
+ * Do not redistribute (in modified or unmodified form) without prior permission.
+ */
+package wdl;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.TreeSet;
+
+import wdl.WDLPluginChannels.ChunkRange;
+
+/**
+ * An immutable index of chunk override ranges, rebuilt whenever the server
+ * changes them, so that checking a chunk doesn't need to look at every range.
+ *
+ * The X axis is split into slabs at every range edge.  Within a slab, the same
+ * set of ranges applies to every column, so their Z extents are merged into
+ * sorted, non-overlapping intervals.  A lookup is then two binary searches.
+ */
+public final class ChunkOverrideIndex {
+	public static final ChunkOverrideIndex EMPTY = new ChunkOverrideIndex(Collections.emptyList());
+
+	/**
+	 * Start of each slab, in increasing order.  Each slab ends where the next
+	 * starts; the last one is always empty.  Longs, as a range may end at
+	 * {@link Integer#MAX_VALUE}.
+	 */
+	private final long[] slabStarts;
+	/**
+	 * Merged Z intervals of each slab, as pairs of inclusive start and end.
+	 */
+	private final int[][] slabIntervals;
+	/** All ranges, sorted by x1. */
+	private final ChunkRange[] ranges;
+	/** The greatest x2 of each range and the ranges before it in {@link #ranges}. */
+	private final int[] maxX2;
+
+	public ChunkOverrideIndex(Collection<ChunkRange> ranges) {
+		this.ranges = ranges.toArray(new ChunkRange[0]);
+		Arrays.sort(this.ranges, Comparator.comparingInt(r -> r.x1));
+		this.maxX2 = new int[this.ranges.length];
+		for (int i = 0; i < this.ranges.length; i++) {
+			maxX2[i] = Math.max(this.ranges[i].x2, i > 0 ? maxX2[i - 1] : Integer.MIN_VALUE);
+		}
+
+		TreeSet<Long> edges = new TreeSet<>();
+		for (ChunkRange range : ranges) {
+			edges.add((long) range.x1);
+			edges.add(range.x2 + 1L);
+		}
+		this.slabStarts = new long[edges.size()];
+		this.slabIntervals = new int[edges.size()][];
+		int slab = 0;
+		for (long start : edges) {
+			slabStarts[slab] = start;
+			slabIntervals[slab] = mergeIntervals(ranges, start);
+			slab++;
+		}
+	}
+
+	/**
+	 * Merges the Z extents of the ranges that contain the given X coordinate.
+	 */
+	private static int[] mergeIntervals(Collection<ChunkRange> ranges, long x) {
+		List<ChunkRange> covering = new ArrayList<>();
+		for (ChunkRange range : ranges) {
+			if (range.x1 <= x && x <= range.x2) {
+				covering.add(range);
+			}
+		}
+		covering.sort(Comparator.comparingInt(r -> r.z1));
+
+		int[] merged = new int[covering.size() * 2];
+		int count = 0;
+		for (ChunkRange range : covering) {
+			// Also merge adjacent intervals, as they cover the same chunks
+			if (count > 0 && range.z1 <= merged[count - 1] + 1L) {
+				merged[count - 1] = Math.max(merged[count - 1], range.z2);
+			} else {
+				merged[count++] = range.z1;
+				merged[count++] = range.z2;
+			}
+		}
+		return Arrays.copyOf(merged, count);
+	}
+
+	/**
+	 * Checks whether the given chunk is in any of the ranges.
+	 */
+	public boolean contains(int x, int z) {
+		int slab = Arrays.binarySearch(slabStarts, x);
+		if (slab < 0) {
+			// Insertion point is the first slab after x
+			slab = -slab - 2;
+			if (slab < 0) {
+				return false;
+			}
+		}
+		int[] intervals = slabIntervals[slab];
+		// Find the last interval starting at or before z
+		int low = 0, high = intervals.length / 2 - 1, found = -1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (intervals[mid * 2] <= z) {
+				found = mid;
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		return found >= 0 && z <= intervals[found * 2 + 1];
+	}
+
+	/**
+	 * Gets the ranges that overlap the given area (inclusive).
+	 */
+	public List<ChunkRange> getRangesInArea(int minX, int minZ, int maxX, int maxZ) {
+		// Only ranges with x1 <= maxX can overlap; find the last one
+		int low = 0, high = ranges.length - 1, last = -1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (ranges[mid].x1 <= maxX) {
+				last = mid;
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		List<ChunkRange> result = new ArrayList<>();
+		// Once no earlier range reaches minX, none of them can overlap
+		for (int i = last; i >= 0 && maxX2[i] >= minX; i--) {
+			ChunkRange range = ranges[i];
+			if (range.x2 >= minX && range.z1 <= maxZ && range.z2 >= minZ) {
+				result.add(range);
+			}
+		}
+		return result;
+	}
+
+	public int size() {
+		return ranges.length;
+	}
+
+	public boolean isEmpty() {
+		return ranges.length == 0;
+	}
+
+	@Override
+	public String toString() {
+		return "ChunkOverrideIndex [ranges=" + ranges.length + ", slabs=" + slabStarts.length + "]";
+	}
+}
@@ -0,0 +1,238 @@
+/*
+ * This file is part of World Downloader: A mod to make backups of your
+ * multiplayer worlds.
+ * http://www.minecraftforum.net/forums/mapping-and-modding/minecraft-mods/2520465
+ *
+ * Copyright (c) 2014 nairol, cubic72
+ * Copyright (c) 2019 Pokechu22, julialy
+ *
+ * This project is licensed under the MMPLv2.  The full text of the MMPL can be
+ * found in LICENSE.md, or online at https://github.com/iopleke/MMPLv2/blob/master/LICENSE.md
+ * For information about this the MMPLv2, see http://stopmodreposts.org/
+ *
+ * Do not redistribute (in modified or unmodified form) without prior permission.
+ */
+package wdl;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.chunk.Chunk;
+
+/**
+ * Spreads the work of saving unloaded chunks over several ticks, so that a
+ * burst of unloads (e.g. from a teleport) doesn't stall the client.
+ *
+ * Chunks are queued when they are unloaded, and each tick chunks are saved
+ * (nearest to the player first) until the tick's time budget is used up.
+ * All of this happens on the client thread.
+ */
+public class ChunkSaveScheduler {
+	private static final Logger LOGGER = LogManager.getLogger();
+
+	/**
+	 * Weight given to the newest tick when averaging rates.
+	 */
+	private static final double RATE_SMOOTHING = 0.05;
+	/**
+	 * Number of client ticks per second, used to convert per-tick rates.
+	 */
+	private static final int TICKS_PER_SECOND = 20;
+
+	/**
+	 * Saves a single chunk.
+	 */
+	private final Consumer<Chunk> saver;
+	/**
+	 * Chunks waiting to be saved.  If the same position is unloaded twice
+	 * before being saved, only the newest chunk is kept.
+	 */
+	private final Map<ChunkPos, Chunk> queue = new LinkedHashMap<>();
+
+	private int enqueuedThisTick;
+	private double enqueueRate;
+	private double drainRate;
+	private int peakQueueDepth;
+	private long totalSaved;
+	private long reloadedBeforeSave;
+
+	/**
+	 * @param saver Action that saves a chunk immediately.
+	 */
+	public ChunkSaveScheduler(Consumer<Chunk> saver) {
+		this.saver = saver;
+	}
+
+	/**
+	 * Queues the given chunk to be saved.
+	 *
+	 * @param chunk The chunk, which has been or will be unloaded.
+	 * @param budgetMillis The per-tick budget; if not positive, the chunk is
+	 *                     saved immediately instead.
+	 */
+	public void enqueue(Chunk chunk, int budgetMillis) {
+		if (budgetMillis <= 0) {
+			saver.accept(chunk);
+			totalSaved++;
+			return;
+		}
+		queue.put(chunk.getPos(), chunk);
+		enqueuedThisTick++;
+		peakQueueDepth = Math.max(peakQueueDepth, queue.size());
+	}
+
+	/**
+	 * Removes the chunk at the given position from the queue without saving
+	 * it, if it is queued.
+	 */
+	public void remove(ChunkPos pos) {
+		queue.remove(pos);
+	}
+
+	/**
+	 * Immediately saves the chunk at the given position, if it is queued.
+	 * This must be done before a new chunk is loaded at that position, as
+	 * saving the old chunk frees WDL's data for that position, which would
+	 * by then belong to the new chunk.
+	 *
+	 * @return True if a chunk was saved.
+	 */
+	public boolean flush(ChunkPos pos) {
+		Chunk chunk = queue.remove(pos);
+		if (chunk == null) {
+			return false;
+		}
+		saver.accept(chunk);
+		totalSaved++;
+		reloadedBeforeSave++;
+		return true;
+	}
+
+	/**
+	 * Saves queued chunks nearest to the given position until the time budget
+	 * runs out.  At least one chunk is saved per tick, so that the queue always
+	 * makes progress.
+	 *
+	 * @param blockX X coordinate of the player
+	 * @param blockZ Z coordinate of the player
+	 * @param budgetMillis Time budget for this tick, in milliseconds.
+	 */
+	public void tick(double blockX, double blockZ, int budgetMillis) {
+		int saved = 0;
+		if (!queue.isEmpty()) {
+			long deadline = System.nanoTime() + budgetMillis * 1000000L;
+
+			for (Chunk chunk : getNearestFirst(blockX, blockZ)) {
+				queue.remove(chunk.getPos());
+				saver.accept(chunk);
+				saved++;
+				if (System.nanoTime() >= deadline) {
+					break;
+				}
+			}
+			totalSaved += saved;
+			if (!queue.isEmpty()) {
+				LOGGER.debug("[WDL] Chunk save queue has {} chunks left after saving {} this tick", queue.size(), saved);
+			}
+		}
+
+		enqueueRate += (enqueuedThisTick * TICKS_PER_SECOND - enqueueRate) * RATE_SMOOTHING;
+		drainRate += (saved * TICKS_PER_SECOND - drainRate) * RATE_SMOOTHING;
+		enqueuedThisTick = 0;
+	}
+
+	/**
+	 * Immediately saves all queued chunks, nearest first.
+	 */
+	public void flush(double blockX, double blockZ) {
+		List<Chunk> chunks = getNearestFirst(blockX, blockZ);
+		queue.clear();
+		for (Chunk chunk : chunks) {
+			saver.accept(chunk);
+		}
+		totalSaved += chunks.size();
+	}
+
+	/**
+	 * Discards all queued chunks without saving them, and resets statistics.
+	 */
+	public void clear() {
+		queue.clear();
+		enqueuedThisTick = 0;
+		enqueueRate = 0;
+		drainRate = 0;
+		peakQueueDepth = 0;
+		totalSaved = 0;
+		reloadedBeforeSave = 0;
+	}
+
+	private List<Chunk> getNearestFirst(double blockX, double blockZ) {
+		double chunkX = blockX / 16 - 0.5, chunkZ = blockZ / 16 - 0.5;
+		List<Chunk> chunks = new ArrayList<>(queue.values());
+		chunks.sort(Comparator.comparingDouble(c -> {
+			ChunkPos pos = c.getPos();
+			double dx = pos.x - chunkX, dz = pos.z - chunkZ;
+			return dx * dx + dz * dz;
+		}));
+		return chunks;
+	}
+
+	/**
+	 * Gets the number of chunks currently waiting to be saved.
+	 */
+	public int getQueueDepth() {
+		return queue.size();
+	}
+
+	/**
+	 * Gets the largest number of chunks that have been waiting at once.
+	 */
+	public int getPeakQueueDepth() {
+		return peakQueueDepth;
+	}
+
+	/**
+	 * Gets the average number of chunks queued per second.
+	 */
+	public double getEnqueueRate() {
+		return enqueueRate;
+	}
+
+	/**
+	 * Gets the average number of chunks saved per second.  If this is
+	 * consistently below {@link #getEnqueueRate()}, saving is falling behind.
+	 */
+	public double getDrainRate() {
+		return drainRate;
+	}
+
+	/**
+	 * Gets the total number of chunks saved through this scheduler.
+	 */
+	public long getTotalSaved() {
+		return totalSaved;
+	}
+
+	/**
+	 * Gets the number of queued chunks that had to be saved early because
+	 * they were loaded again before their turn came.
+	 */
+	public long getReloadedBeforeSave() {
+		return reloadedBeforeSave;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("ChunkSaveScheduler [queueDepth=%d, peakQueueDepth=%d, enqueueRate=%.1f/s, drainRate=%.1f/s, totalSaved=%d, reloadedBeforeSave=%d]",
+				getQueueDepth(), getPeakQueueDepth(), getEnqueueRate(), getDrainRate(), getTotalSaved(),
+				getReloadedBeforeSave());
+	}
+}
@@ -0,0 +1,191 @@
+/*
+ * This file is part of World Downloader: A mod to make backups of your
+ * multiplayer worlds.
+ * http://www.minecraftforum.net/forums/mapping-and-modding/minecraft-mods/2520465
+ *
+ * Copyright (c) 2014 nairol, cubic72
+ * Copyright (c) 2019 Pokechu22, julialy
+ *
+ * This project is licensed under the MMPLv2.  The full text of the MMPL can be
+ * found in LICENSE.md, or online at https://github.com/iopleke/MMPLv2/blob/master/LICENSE.md
+ * For information about this the MMPLv2, see http://stopmodreposts.org/
+ *
+ * Do not redistribute (in modified or unmodified form) without prior permission.
+ */
+package wdl;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+import javax.annotation.Nullable;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import io.netty.buffer.Unpooled;
+import net.minecraft.block.state.IBlockState;
+import net.minecraft.init.Blocks;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.network.PacketBuffer;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.chunk.Chunk;
+import net.minecraft.world.chunk.ChunkSection;
+import net.minecraft.world.chunk.NibbleArray;
+
+/**
+ * A copy of the data in a chunk, taken on the client thread, which can later
+ * be turned into the chunk's final NBT on another thread.
+ *
+ * Block data and light are copied into {@link #sections}, in the same compact
+ * form used by the chunk data packet, and are only turned into section NBT
+ * later (by {@link WDLChunkLoader#createChunkNBT(ChunkSnapshot)}).  Biomes and
+ * heightmaps are copied into {@link #levelTag}; entities and tile entities are
+ * written to NBT when the snapshot is taken, as they are still owned by the
+ * client.
+ *
+ * Nothing here refers to the live chunk, so a snapshot can safely be used on
+ * any thread; in particular, the blocks used when deciding which old tile
+ * entities to import come from {@link #getBlockState}.
+ *
+ * @see WDLChunkLoader#createSnapshot
+ * @see WDLChunkLoader#createChunkNBT(ChunkSnapshot)
+ */
+public class ChunkSnapshot {
+	private static final Logger LOGGER = LogManager.getLogger();
+
+	/**
+	 * A copy of a single non-empty section of the chunk.
+	 */
+	static class Section {
+		/**
+		 * The Y coordinate of the bottom of the section.
+		 */
+		final int y;
+		/**
+		 * The section's block states, as written by the block state
+		 * container for the chunk data packet.
+		 */
+		private final byte[] blockData;
+		final byte[] blockLight;
+		/**
+		 * The section's skylight, or null if there is none.
+		 */
+		@Nullable
+		final byte[] skyLight;
+		/**
+		 * The block states, read back into a section (without light); created
+		 * when first needed.
+		 */
+		@Nullable
+		private ChunkSection blocks;
+
+		Section(ChunkSection section, boolean hasSky) {
+			this.y = section.getYLocation();
+			PacketBuffer buf = new PacketBuffer(Unpooled.buffer(section.getData().getSerializedSize()));
+			section.getData().write(buf);
+			this.blockData = new byte[buf.readableBytes()];
+			buf.readBytes(blockData);
+			this.blockLight = section.getBlockLight().getData().clone();
+
+			NibbleArray skyLightArray = hasSky ? section.getSkyLight() : null;
+			if (hasSky && skyLightArray == null) {
+				// Shouldn't happen, but if it does, handle it smoothly.
+				LOGGER.error("[WDL] Skylight array for section at y=" + y +
+						" is null despite VersionedProperties " +
+						"saying it shouldn't be!");
+			}
+			this.skyLight = skyLightArray != null ? skyLightArray.getData().clone() : null;
+		}
+
+		/**
+		 * Gets the block states of this section, recreated in a new
+		 * {@link ChunkSection} that isn't part of any chunk.  Not thread-safe,
+		 * but a snapshot is only ever used by one thread at a time.
+		 */
+		ChunkSection getBlocks() {
+			if (blocks == null) {
+				ChunkSection section = new ChunkSection(y, false);
+				section.getData().read(new PacketBuffer(Unpooled.wrappedBuffer(blockData)));
+				blocks = section;
+			}
+			return blocks;
+		}
+	}
+
+	/**
+	 * The location of the chunk.
+	 */
+	public final ChunkPos pos;
+	/**
+	 * Copies of the chunk's sections, indexed the same way as
+	 * {@link Chunk#getSections()}.  Empty sections are null.
+	 */
+	final Section[] sections;
+	/**
+	 * The contents of the chunk's <code>Level</code> tag, other than its
+	 * sections and tile entities.
+	 */
+	final NBTTagCompound levelTag;
+	/**
+	 * Whether tile entities are allowed to be saved in this chunk at all.
+	 */
+	boolean saveTileEntities;
+	/**
+	 * Tile entities that were in the chunk itself, not yet edited.
+	 */
+	final Map<BlockPos, NBTTagCompound> existingTileEntities = new HashMap<>();
+	/**
+	 * Tile entities that were saved manually, not yet edited. A position may
+	 * map to <code>null</code> if the tile entity there failed to save, in
+	 * which case nothing is saved at that position.
+	 */
+	final Map<BlockPos, NBTTagCompound> newTileEntities = new HashMap<>();
+	/**
+	 * Old tile entities to import, if they are chosen on the client thread
+	 * (which is needed when extensions take part, as they are given the live
+	 * chunk).  Completes once the old data has been read and the client
+	 * thread has chosen them.  Null if they are chosen when serializing.
+	 */
+	@Nullable
+	CompletableFuture<Map<BlockPos, NBTTagCompound>> oldTileEntities;
+
+	/**
+	 * Copies the given chunk's sections.  Must be called on the client thread.
+	 *
+	 * @param chunk    The chunk to copy.
+	 * @param hasSky   Whether the world has skylight.
+	 * @param levelTag The rest of the chunk's data.
+	 */
+	ChunkSnapshot(Chunk chunk, boolean hasSky, NBTTagCompound levelTag) {
+		this.pos = chunk.getPos();
+		this.levelTag = levelTag;
+
+		ChunkSection[] chunkSections = chunk.getSections();
+		this.sections = new Section[chunkSections.length];
+		for (int i = 0; i < chunkSections.length; i++) {
+			if (chunkSections[i] != Chunk.EMPTY_SECTION) {
+				sections[i] = new Section(chunkSections[i], hasSky);
+			}
+		}
+	}
+
+	/**
+	 * Gets the block state at the given position, as it was when the snapshot
+	 * was taken.
+	 */
+	IBlockState getBlockState(BlockPos pos) {
+		int index = pos.getY() >> 4;
+		if (index < 0 || index >= sections.length || sections[index] == null) {
+			return Blocks.AIR.getDefaultState();
+		}
+		return sections[index].getBlocks().get(pos.getX() & 15, pos.getY() & 15, pos.getZ() & 15);
+	}
+
+	@Override
+	public String toString() {
+		return "ChunkSnapshot [pos=" + pos + ", existingTileEntities=" + existingTileEntities.size()
+				+ ", newTileEntities=" + newTileEntities.size() + "]";
+	}
+}
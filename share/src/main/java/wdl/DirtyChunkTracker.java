@@ -0,0 +1,118 @@
+/*
+ * This file is part of World Downloader: A mod to make backups of your
+ * multiplayer worlds.
+ * http://www.minecraftforum.net/forums/mapping-and-modding/minecraft-mods/2520465
+ *
+ * Copyright (c) 2014 nairol, cubic72
+ * Copyright (c) 2019 Pokechu22, julialy
+ *
+ * This project is licensed under the MMPLv2.  The full text of the MMPL can be
+ * found in LICENSE.md, or online at https://github.com/iopleke/MMPLv2/blob/master/LICENSE.md
+ * For information about this the MMPLv2, see http://stopmodreposts.org/
+ *
+ * Do not redistribute (in modified or unmodified form) without prior permission.
+ */
+package wdl;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import net.minecraft.util.math.ChunkPos;
+
+/**
+ * Keeps track of which loaded chunks have changed since they were last saved,
+ * so that they can be autosaved periodically while downloading.
+ *
+ * Chunks are marked dirty when the server sends their data or changes blocks
+ * in them, and when WDL saves a tile entity or entity in them.  All of this
+ * happens on the client thread.
+ */
+public class DirtyChunkTracker {
+	/**
+	 * Chunks changed since they were last saved, in the order they first
+	 * changed.
+	 */
+	private final Set<ChunkPos> dirty = new LinkedHashSet<>();
+	/**
+	 * Time of the last autosave, from {@link System#currentTimeMillis()}.
+	 */
+	private long lastAutosave;
+	private int autosaves;
+	private long totalAutosaved;
+
+	/**
+	 * Marks the given chunk as changed.
+	 */
+	public void markDirty(ChunkPos pos) {
+		dirty.add(pos);
+	}
+
+	/**
+	 * Marks the given chunk as saved by some other means (e.g. because it
+	 * was unloaded).
+	 */
+	public void markClean(ChunkPos pos) {
+		dirty.remove(pos);
+	}
+
+	public boolean isDirty(ChunkPos pos) {
+		return dirty.contains(pos);
+	}
+
+	/**
+	 * If the autosave interval has passed since the last autosave, marks all
+	 * chunks clean and returns the ones that were dirty.
+	 *
+	 * @param now             The current time, from {@link System#currentTimeMillis()}.
+	 * @param intervalSeconds The autosave interval; if not positive, autosaving
+	 *                        is disabled and nothing is ever returned.
+	 * @return The chunks to autosave, which is empty if no autosave is due.
+	 */
+	public List<ChunkPos> takeDirtyIfDue(long now, int intervalSeconds) {
+		if (intervalSeconds <= 0 || now - lastAutosave < intervalSeconds * 1000L) {
+			return Collections.emptyList();
+		}
+		lastAutosave = now;
+		List<ChunkPos> chunks = new ArrayList<>(dirty);
+		dirty.clear();
+		autosaves++;
+		totalAutosaved += chunks.size();
+		return chunks;
+	}
+
+	/**
+	 * Forgets all dirty chunks and restarts the autosave interval.
+	 *
+	 * @param now The current time, from {@link System#currentTimeMillis()}.
+	 */
+	public void reset(long now) {
+		dirty.clear();
+		lastAutosave = now;
+		autosaves = 0;
+		totalAutosaved = 0;
+	}
+
+	/**
+	 * Gets the number of chunks that have changed since they were last saved.
+	 */
+	public int getNumDirty() {
+		return dirty.size();
+	}
+
+	/**
+	 * Gets the total number of chunks given out for autosaving since the
+	 * last {@link #reset}.
+	 */
+	public long getTotalAutosaved() {
+		return totalAutosaved;
+	}
+
+	@Override
+	public String toString() {
+		return "DirtyChunkTracker [dirty=" + dirty.size() + ", autosaves=" + autosaves
+				+ ", totalAutosaved=" + totalAutosaved + "]";
+	}
+}
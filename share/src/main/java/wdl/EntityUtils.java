@@ -17,7 +17,10 @@ package wdl;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.CheckForSigned;
 import javax.annotation.Nonnull;
@@ -27,6 +30,8 @@ import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Multimap;
 
 import net.minecraft.entity.Entity;
@@ -36,6 +41,7 @@ import net.minecraft.entity.player.EntityPlayer;
 import wdl.api.IEntityManager;
 import wdl.api.WDLApi;
 import wdl.api.WDLApi.ModInfo;
+import wdl.config.IConfiguration;
 import wdl.config.settings.EntitySettings;
 import wdl.config.settings.EntitySettings.TrackDistanceMode;
 
@@ -67,16 +73,181 @@ public class EntityUtils {
 	}
 	/**
 	 * Gets a collection of all active IEntityManager in order.
+	 *
+	 * The list is cached until {@link #invalidateEntityManagers()} is called.
 	 */
 	public static List<IEntityManager> getEntityManagers() {
-		// XXX This order isn't necessarily the one a user would want
-		List<IEntityManager> managers = new ArrayList<>();
-		for (ModInfo<IEntityManager> info : WDLApi.getImplementingExtensions(IEntityManager.class)) {
-			managers.add(info.mod);
+		return getManagerCache().managers;
+	}
+
+	/**
+	 * The active entity managers, along with the entity classifications made
+	 * with them.  Replaced as a whole when extensions change, so that a
+	 * classification is never stored alongside a different set of managers.
+	 */
+	private static class ManagerCache {
+		public final List<IEntityManager> managers;
+		public final Map<Class<? extends Entity>, Classification> classifications = new ConcurrentHashMap<>();
+
+		public ManagerCache() {
+			// XXX This order isn't necessarily the one a user would want
+			List<IEntityManager> managers = new ArrayList<>();
+			for (ModInfo<IEntityManager> info : WDLApi.getImplementingExtensions(IEntityManager.class)) {
+				managers.add(info.mod);
+			}
+			managers.add(STANDARD_SPIGOT_MANAGER);
+			managers.add(STANDARD_VANILLA_MANAGER);
+			this.managers = ImmutableList.copyOf(managers);
+		}
+	}
+
+	/**
+	 * How entities of a single class are identified.
+	 */
+	private static class Classification {
+		/**
+		 * Managers that need to be asked about each entity, in order, before
+		 * falling back to {@link #type}.
+		 */
+		public final IEntityManager[] perEntity;
+		/**
+		 * The identifier given by the first manager that identifies entities
+		 * of this class by class alone, or null if none did.
+		 */
+		@Nullable
+		public final String type;
+
+		public Classification(IEntityManager[] perEntity, @Nullable String type) {
+			this.perEntity = perEntity;
+			this.type = type;
+		}
+
+		/**
+		 * Checks whether the given type is provided by one of the managers
+		 * that need to see each entity, in which case its track distance may
+		 * also depend on the entity and can't be compiled ahead of time.
+		 */
+		public boolean isInstanceSensitive(String type) {
+			for (IEntityManager manager : perEntity) {
+				if (manager.getProvidedEntities().contains(type)) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	@Nullable
+	private static volatile ManagerCache managerCache;
+	private static final AtomicLong classificationHits = new AtomicLong();
+	private static final AtomicLong classificationMisses = new AtomicLong();
+
+	private static ManagerCache getManagerCache() {
+		ManagerCache cache = managerCache;
+		if (cache == null) {
+			cache = new ManagerCache();
+			managerCache = cache;
 		}
-		managers.add(STANDARD_SPIGOT_MANAGER);
-		managers.add(STANDARD_VANILLA_MANAGER);
-		return managers;
+		return cache;
+	}
+
+	/**
+	 * Discards the cached entity managers and entity classifications.  Must be
+	 * called whenever extensions are added, enabled, or disabled.
+	 */
+	public static void invalidateEntityManagers() {
+		managerCache = null;
+		entityPolicy = null;
+	}
+
+	/**
+	 * Whether each entity type is enabled and what its track distance is,
+	 * resolved once from a configuration so that saving and removing entities
+	 * doesn't need to go through the configuration each time.
+	 */
+	private static class EntityPolicy {
+		private static class Entry {
+			public final boolean enabled;
+			@CheckForSigned
+			public final int trackDistance;
+
+			public Entry(boolean enabled, int trackDistance) {
+				this.enabled = enabled;
+				this.trackDistance = trackDistance;
+			}
+		}
+
+		/** The configuration this policy was built from. */
+		public final IConfiguration config;
+		/** The {@linkplain IConfiguration#getVersion() version} of that configuration. */
+		public final long version;
+		/**
+		 * Entries by type.  Track distances are computed without an entity, so
+		 * they are not used for types that are identified per entity (see
+		 * {@link Classification#isInstanceSensitive}).
+		 */
+		private final ImmutableMap<String, Entry> entries;
+
+		public EntityPolicy(IConfiguration config) {
+			this.config = config;
+			this.version = config.getVersion();
+
+			TrackDistanceMode mode = config.getValue(EntitySettings.TRACK_DISTANCE_MODE);
+			ImmutableMap.Builder<String, Entry> builder = ImmutableMap.builder();
+			for (String type : getEntityTypes()) {
+				boolean enabled = config.isEntityGroupEnabled(getEntityGroup(type))
+						&& config.isEntityTypeEnabled(type);
+				builder.put(type, new Entry(enabled, getEntityTrackDistance(mode, type, null)));
+			}
+			this.entries = builder.build();
+		}
+
+		/**
+		 * Gets the entry for the given type, or null if the type wasn't known
+		 * when this policy was built.
+		 */
+		@Nullable
+		public Entry get(String type) {
+			return entries.get(type);
+		}
+	}
+
+	@Nullable
+	private static volatile EntityPolicy entityPolicy;
+
+	private static EntityPolicy getEntityPolicy() {
+		IConfiguration config = WDL.INSTANCE.worldProps;
+		EntityPolicy policy = entityPolicy;
+		if (policy == null || policy.config != config || policy.version != config.getVersion()) {
+			policy = new EntityPolicy(config);
+			entityPolicy = policy;
+		}
+		return policy;
+	}
+
+	/**
+	 * Discards the compiled entity settings, so that they are rebuilt the
+	 * next time an entity is checked.  Must be called whenever server entity
+	 * ranges or the server itself change; changes to the configuration are
+	 * noticed automatically.
+	 */
+	public static void invalidateEntityPolicy() {
+		entityPolicy = null;
+	}
+
+	/**
+	 * Gets the number of times an entity's class was found in the
+	 * classification cache.
+	 */
+	public static long getClassificationCacheHits() {
+		return classificationHits.get();
+	}
+
+	/**
+	 * Gets the number of times a new entity class needed to be classified.
+	 */
+	public static long getClassificationCacheMisses() {
+		return classificationMisses.get();
 	}
 
 	/**
@@ -109,6 +280,10 @@ public class EntityUtils {
 		if (type == null) {
 			return -1;
 		}
+		EntityPolicy.Entry entry = getEntityPolicy().get(type);
+		if (entry != null && !getClassification(entity).isInstanceSensitive(type)) {
+			return entry.trackDistance;
+		}
 		return getEntityTrackDistance(getTrackDistanceMode(), type, entity);
 	}
 
@@ -201,9 +376,12 @@ public class EntityUtils {
 		String type = getEntityType(e);
 		if (type == null) {
 			return false;
-		} else {
-			return isEntityEnabled(type);
 		}
+		EntityPolicy.Entry entry = getEntityPolicy().get(type);
+		if (entry != null) {
+			return entry.enabled;
+		}
+		return isEntityEnabled(type);
 	}
 
 	/**
@@ -237,15 +415,58 @@ public class EntityUtils {
 			return null;
 		}
 
-		for (IEntityManager manager : getEntityManagers()) {
+		Classification classification = getClassification(e);
+		for (IEntityManager manager : classification.perEntity) {
 			String type = manager.getIdentifierFor(e);
 			if (type != null) {
 				return type;
 			}
 		}
+		if (classification.type != null) {
+			return classification.type;
+		}
 		LOGGER.warn("Failed to classify entity " + e);
 		return null;
 	}
+
+	/**
+	 * Gets the cached classification for the given entity's class, working it
+	 * out if this is the first entity of that class.
+	 */
+	private static Classification getClassification(Entity e) {
+		ManagerCache cache = getManagerCache();
+		Classification classification = cache.classifications.get(e.getClass());
+		if (classification != null) {
+			classificationHits.incrementAndGet();
+		} else {
+			classificationMisses.incrementAndGet();
+			classification = classify(cache.managers, e);
+			cache.classifications.put(e.getClass(), classification);
+		}
+		return classification;
+	}
+
+	/**
+	 * Works out how entities of the same class as the given entity are
+	 * identified.  Managers that identify by class are asked about the given
+	 * entity, up to the first one that gives an identifier; managers before
+	 * that which need to see each entity are kept to be asked each time.
+	 */
+	private static Classification classify(List<IEntityManager> managers, Entity e) {
+		List<IEntityManager> perEntity = new ArrayList<>();
+		String type = null;
+		for (IEntityManager manager : managers) {
+			if (manager.isIdentifierInstanceSensitive(e.getClass())) {
+				perEntity.add(manager);
+				continue;
+			}
+			type = manager.getIdentifierFor(e);
+			if (type != null) {
+				break;
+			}
+		}
+		return new Classification(perEntity.toArray(new IEntityManager[0]), type);
+	}
 	/**
 	 * Gets the currently selected track distance mode from {@link WDL#worldProps}.
 	 */
@@ -73,6 +73,11 @@ IWDLModDescripted {
 		return null;
 	}
 	@Override
+	public boolean isIdentifierInstanceSensitive(Class<? extends Entity> entityClass) {
+		// Only armor stands can be holograms; other entities never are
+		return EntityArmorStand.class.isAssignableFrom(entityClass);
+	}
+	@Override
 	public int getTrackDistance(String identifier, Entity entity) {
 		// Assume holograms act the same as armor stands
 		if (identifier == "x-extended:hologram") {
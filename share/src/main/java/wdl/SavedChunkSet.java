@@ -0,0 +1,221 @@
+/*
+ * This file is part of World Downloader: A mod to make backups of your
+ * multiplayer worlds.
+ * http://www.minecraftforum.net/forums/mapping-and-modding/minecraft-mods/2520465
+ *
+ * Copyright (c) 2014 nairol, cubic72
+ * Copyright (c) 2019 Pokechu22, julialy
+ *
+ * This project is licensed under the MMPLv2.  The full text of the MMPL can be
+ * found in LICENSE.md, or online at https://github.com/iopleke/MMPLv2/blob/master/LICENSE.md
+ * For information about this the MMPLv2, see http://stopmodreposts.org/
+ *
+ * Do not redistribute (in modified or unmodified form) without prior permission.
+ */
+package wdl;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import javax.annotation.Nullable;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.util.math.ChunkPos;
+
+/**
+ * The set of chunks that have been saved, for use in a UI.
+ *
+ * Chunks are grouped by region, and each region is a 32x32 bitset keyed by
+ * {@link ChunkPos#asLong(int, int)} of the region coordinates, so no object is
+ * kept per chunk and only the regions in an area need to be looked at to find
+ * the chunks in it.
+ *
+ * Chunks are added from the save thread and read on the client thread, so all
+ * methods are synchronized.
+ */
+public class SavedChunkSet {
+	private static final int REGION_SIZE = 32;
+	/** Number of longs in a region's bitset. */
+	private static final int WORDS_PER_REGION = REGION_SIZE * REGION_SIZE / 64;
+	/** Marks the start of the binary format, as "WDLS". */
+	private static final int MAGIC = 0x57444C53;
+	private static final int VERSION = 1;
+
+	@FunctionalInterface
+	public static interface ChunkConsumer {
+		void accept(int chunkX, int chunkZ);
+	}
+
+	private final Long2ObjectMap<long[]> regions = new Long2ObjectOpenHashMap<>();
+	private int size;
+	/** Incremented whenever the contents change. */
+	private int modCount;
+
+	/**
+	 * Adds the given chunk.
+	 *
+	 * @return True if the chunk was not already in the set.
+	 */
+	public synchronized boolean add(int chunkX, int chunkZ) {
+		long regionKey = ChunkPos.asLong(chunkX >> 5, chunkZ >> 5);
+		long[] bits = regions.get(regionKey);
+		if (bits == null) {
+			bits = new long[WORDS_PER_REGION];
+			regions.put(regionKey, bits);
+		}
+		int index = index(chunkX, chunkZ);
+		long mask = 1L << index;
+		if ((bits[index >> 6] & mask) != 0) {
+			return false;
+		}
+		bits[index >> 6] |= mask;
+		size++;
+		modCount++;
+		return true;
+	}
+
+	public boolean add(ChunkPos pos) {
+		return add(pos.x, pos.z);
+	}
+
+	public synchronized boolean contains(int chunkX, int chunkZ) {
+		long[] bits = regions.get(ChunkPos.asLong(chunkX >> 5, chunkZ >> 5));
+		if (bits == null) {
+			return false;
+		}
+		int index = index(chunkX, chunkZ);
+		return (bits[index >> 6] & (1L << index)) != 0;
+	}
+
+	public boolean contains(ChunkPos pos) {
+		return contains(pos.x, pos.z);
+	}
+
+	/**
+	 * Index of the given chunk in its region's bitset.
+	 */
+	private static int index(int chunkX, int chunkZ) {
+		return (chunkX & (REGION_SIZE - 1)) | (chunkZ & (REGION_SIZE - 1)) << 5;
+	}
+
+	/**
+	 * Calls the given consumer for each chunk in the set within the given
+	 * bounds (inclusive).  Only the regions overlapping the bounds are looked
+	 * at.  The consumer must not modify this set.
+	 */
+	public synchronized void forEachInArea(int minX, int minZ, int maxX, int maxZ, ChunkConsumer consumer) {
+		for (int rz = minZ >> 5; rz <= maxZ >> 5; rz++) {
+			for (int rx = minX >> 5; rx <= maxX >> 5; rx++) {
+				long[] bits = regions.get(ChunkPos.asLong(rx, rz));
+				if (bits == null) {
+					continue;
+				}
+				for (int word = 0; word < WORDS_PER_REGION; word++) {
+					long remaining = bits[word];
+					while (remaining != 0) {
+						int index = (word << 6) | Long.numberOfTrailingZeros(remaining);
+						remaining &= remaining - 1;
+						int x = (rx << 5) | (index & (REGION_SIZE - 1));
+						int z = (rz << 5) | (index >> 5);
+						if (x >= minX && x <= maxX && z >= minZ && z <= maxZ) {
+							consumer.accept(x, z);
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Gets a copy of the bitset for the given region, where chunk (x, z)
+	 * within the region is bit <code>x + z * 32</code>.
+	 *
+	 * @return The bitset, or null if no chunk in the region was added.
+	 */
+	@Nullable
+	public synchronized long[] getRegionBits(int regionX, int regionZ) {
+		long[] bits = regions.get(ChunkPos.asLong(regionX, regionZ));
+		return bits != null ? bits.clone() : null;
+	}
+
+	/**
+	 * Gets a number that changes whenever the contents of this set change,
+	 * so that callers can tell whether anything they derived from it is out
+	 * of date.
+	 */
+	public synchronized int getModCount() {
+		return modCount;
+	}
+
+	/**
+	 * Gets the number of chunks in the set.
+	 */
+	public synchronized int size() {
+		return size;
+	}
+
+	public synchronized void clear() {
+		regions.clear();
+		size = 0;
+		modCount++;
+	}
+
+	/**
+	 * Writes this set in a compact binary form: a header, the number of
+	 * regions, and then each region's coordinates and bitset.
+	 */
+	public synchronized void write(DataOutput output) throws IOException {
+		output.writeInt(MAGIC);
+		output.writeInt(VERSION);
+		output.writeInt(regions.size());
+		for (Long2ObjectMap.Entry<long[]> e : regions.long2ObjectEntrySet()) {
+			long key = e.getLongKey();
+			// Same layout as ChunkPos.asLong: x in the low bits, z in the high
+			output.writeInt((int) key);
+			output.writeInt((int) (key >> 32));
+			for (long word : e.getValue()) {
+				output.writeLong(word);
+			}
+		}
+	}
+
+	/**
+	 * Replaces the contents of this set with data written by
+	 * {@link #write(DataOutput)}.
+	 *
+	 * @throws IOException if the data is not in the expected format.
+	 */
+	public synchronized void read(DataInput input) throws IOException {
+		int magic = input.readInt();
+		int version = input.readInt();
+		if (magic != MAGIC || version != VERSION) {
+			throw new IOException("Unexpected saved chunk set header: magic "
+					+ Integer.toHexString(magic) + ", version " + version);
+		}
+		int count = input.readInt();
+		if (count < 0) {
+			throw new IOException("Negative region count " + count);
+		}
+		clear();
+		for (int i = 0; i < count; i++) {
+			int rx = input.readInt();
+			int rz = input.readInt();
+			long[] bits = new long[WORDS_PER_REGION];
+			for (int word = 0; word < WORDS_PER_REGION; word++) {
+				bits[word] = input.readLong();
+				size += Long.bitCount(bits[word]);
+			}
+			long[] previous = regions.put(ChunkPos.asLong(rx, rz), bits);
+			if (previous != null) {
+				throw new IOException("Duplicate region " + rx + ", " + rz);
+			}
+		}
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "SavedChunkSet [size=" + size + ", regions=" + regions.size() + "]";
+	}
+}
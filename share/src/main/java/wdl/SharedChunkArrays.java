@@ -0,0 +1,120 @@
+/*
+ * This file is part of World Downloader: A mod to make backups of your
+ * multiplayer worlds.
+ * http://www.minecraftforum.net/forums/mapping-and-modding/minecraft-mods/2520465
+ *
+ * Copyright (c) 2014 nairol, cubic72
+ * Copyright (c) 2019 Pokechu22, julialy
+ *
+ * This project is licensed under the MMPLv2.  The full text of the MMPL can be
+ * found in LICENSE.md, or online at https://github.com/iopleke/MMPLv2/blob/master/LICENSE.md
+ * For information about this the MMPLv2, see http://stopmodreposts.org/
+ *
+ * Do not redistribute (in modified or unmodified form) without prior permission.
+ */
+package wdl;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import net.minecraft.world.biome.Biome;
+import wdl.versioned.VersionedFunctions;
+
+/**
+ * Arrays that are shared between the NBT of different chunks when their
+ * contents are the same, to avoid allocating a new copy for each chunk (or
+ * section).  This mostly matters in the nether and the end, where there is no
+ * skylight and there is only one biome.
+ *
+ * The returned arrays must never be modified; this is safe for chunk NBT as it
+ * is only ever written out.
+ */
+final class SharedChunkArrays {
+	private SharedChunkArrays() { throw new AssertionError(); }
+
+	/** Length of a section's light array (4096 nibbles). */
+	private static final int LIGHT_LENGTH = 2048;
+	/** Number of columns in a chunk, and thus length of the biome array. */
+	private static final int BIOME_LENGTH = 256;
+
+	private static final byte[] ZERO_LIGHT = new byte[LIGHT_LENGTH];
+	/** Byte biome arrays consisting entirely of one biome, indexed by that biome. */
+	private static final AtomicReferenceArray<byte[]> UNIFORM_BIOME_BYTES = new AtomicReferenceArray<>(256);
+	/** Int biome arrays consisting entirely of one biome, indexed by biome ID (if below 256). */
+	private static final AtomicReferenceArray<int[]> UNIFORM_BIOME_IDS = new AtomicReferenceArray<>(256);
+
+	/**
+	 * Gets a light array with no light at all.
+	 *
+	 * @param length The length of the array.
+	 */
+	static byte[] getZeroLight(int length) {
+		return length == LIGHT_LENGTH ? ZERO_LIGHT : new byte[length];
+	}
+
+	/**
+	 * Copies the given byte biome array (as used by 1.12 and earlier), sharing
+	 * the copy if every column has the same biome.
+	 */
+	static byte[] copyBiomes(byte[] biomes) {
+		if (biomes.length != BIOME_LENGTH) {
+			return biomes.clone();
+		}
+		byte first = biomes[0];
+		for (int i = 1; i < biomes.length; i++) {
+			if (biomes[i] != first) {
+				return biomes.clone();
+			}
+		}
+		int index = first & 0xFF;
+		byte[] shared = UNIFORM_BIOME_BYTES.get(index);
+		if (shared == null) {
+			shared = biomes.clone();
+			UNIFORM_BIOME_BYTES.compareAndSet(index, null, shared);
+		}
+		return shared;
+	}
+
+	/**
+	 * Converts the given biomes to IDs (as used by 1.13 and later), sharing the
+	 * array if every column has the same biome.  Consecutive columns usually
+	 * have the same biome, so the registry is only checked when the biome
+	 * changes.
+	 */
+	static int[] getBiomeIds(Biome[] biomes) {
+		if (biomes.length == 0) {
+			return new int[0];
+		}
+		Biome first = biomes[0];
+		boolean uniform = true;
+		for (int i = 1; i < biomes.length; i++) {
+			if (biomes[i] != first) {
+				uniform = false;
+				break;
+			}
+		}
+
+		int firstId = VersionedFunctions.getBiomeId(first);
+		if (uniform && biomes.length == BIOME_LENGTH && firstId >= 0 && firstId < 256) {
+			int[] shared = UNIFORM_BIOME_IDS.get(firstId);
+			if (shared == null) {
+				shared = new int[BIOME_LENGTH];
+				Arrays.fill(shared, firstId);
+				UNIFORM_BIOME_IDS.compareAndSet(firstId, null, shared);
+			}
+			return shared;
+		}
+
+		int[] ids = new int[biomes.length];
+		Biome last = first;
+		int lastId = firstId;
+		for (int i = 0; i < biomes.length; i++) {
+			if (biomes[i] != last) {
+				last = biomes[i];
+				lastId = VersionedFunctions.getBiomeId(last);
+			}
+			ids[i] = lastId;
+		}
+		return ids;
+	}
+}
@@ -106,6 +106,11 @@ class StandardEntityManagers {
 			return null;
 		}
 
+		@Override
+		public boolean isIdentifierInstanceSensitive(Class<? extends Entity> entityClass) {
+			return false;
+		}
+
 		@Override
 		public int getTrackDistance(String identifier, Entity entity) {
 			return getSpigotType(identifier).getDefaultRange();
@@ -186,6 +191,11 @@ class StandardEntityManagers {
 			}
 		}
 
+		@Override
+		public boolean isIdentifierInstanceSensitive(Class<? extends Entity> entityClass) {
+			return false;
+		}
+
 		/**
 		 * Gets the entity tracking range used by vanilla Minecraft.
 		 * <p>
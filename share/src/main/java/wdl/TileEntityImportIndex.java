@@ -0,0 +1,223 @@
+/*
+ * This file is part of World Downloader: A mod to make backups of your
+ * multiplayer worlds.
+ * http://www.minecraftforum.net/forums/mapping-and-modding/minecraft-mods/2520465
+ *
+ * Copyright (c) 2014 nairol, cubic72
+ * Copyright (c) 2019 Pokechu22, julialy
+ *
+ * This project is licensed under the MMPLv2.  The full text of the MMPL can be
+ * found in LICENSE.md, or online at https://github.com/iopleke/MMPLv2/blob/master/LICENSE.md
+ * For information about this the MMPLv2, see http://stopmodreposts.org/
+ *
+ * Do not redistribute (in modified or unmodified form) without prior permission.
+ */
+package wdl;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagList;
+import net.minecraft.util.math.ChunkPos;
+import wdl.io.RegionWriter;
+import wdl.io.SelectiveNBTReader;
+
+/**
+ * In-memory copy of the tile entities in the existing save, so that importing
+ * old tile entities doesn't need to read the chunk from disk again each time
+ * it is saved.
+ *
+ * When a download starts, the existing region files nearest to the player
+ * are scanned in the background, through the same {@link RegionWriter} that
+ * writes chunks, so the scan never sees a partially written region.  Only
+ * tile entities whose IDs could be imported are kept.  Once a chunk is saved,
+ * its entry is dropped, and later saves of it read the region file instead.
+ *
+ * Deciding which of the kept tile entities to import depends on the blocks in
+ * the current chunk, so that still happens when the chunk is saved.
+ */
+public class TileEntityImportIndex {
+	private static final Logger LOGGER = LogManager.getLogger();
+
+	private static final SelectiveNBTReader TILE_ENTITY_READER =
+			new SelectiveNBTReader("Level.TileEntities");
+	private static final Pattern REGION_FILE = Pattern.compile("^r\\.(-?\\d+)\\.(-?\\d+)\\.mca$");
+
+	/**
+	 * Maximum number of regions to scan.  Chunks in regions further away are
+	 * read from the region file when they are saved.
+	 */
+	static final int MAX_SCANNED_REGIONS = 64;
+
+	/**
+	 * Importable tile entities of chunks that have any and haven't been saved.
+	 */
+	private final Map<ChunkPos, NBTTagList> tileEntities = new ConcurrentHashMap<>();
+	/**
+	 * Chunks that have been saved since the index was created; they have no
+	 * entry, and the scan must not add one.
+	 */
+	private final Set<ChunkPos> savedChunks = ConcurrentHashMap.newKeySet();
+	/**
+	 * Regions that the scan has finished, as packed coordinates.
+	 */
+	private final Set<Long> scannedRegions = ConcurrentHashMap.newKeySet();
+	private volatile boolean scanCancelled;
+	private volatile int regionsToScan;
+	/** Checks whether tile entities with the given ID may be imported. */
+	private volatile Predicate<String> importable = id -> true;
+
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	private static long regionKey(int regionX, int regionZ) {
+		return ((long) regionX << 32) | (regionZ & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Starts scanning the existing region files in the background. Regions
+	 * are scanned one at a time, so that saving isn't held up.
+	 *
+	 * @param writer       The region writer for the dimension.
+	 * @param regionFolder The <code>region</code> folder of the dimension.
+	 * @param chunkX       The X coordinate of the chunk the player is in.
+	 * @param chunkZ       The Z coordinate of the chunk the player is in.
+	 * @param importable   Checks whether tile entities with the given ID may
+	 *                     be imported; others are not kept.
+	 */
+	public void startScan(RegionWriter writer, File regionFolder, int chunkX, int chunkZ,
+			Predicate<String> importable) {
+		this.importable = importable;
+		File[] files = regionFolder.listFiles();
+		if (files == null) {
+			return;
+		}
+		List<int[]> regions = new ArrayList<>();
+		for (File file : files) {
+			Matcher matcher = REGION_FILE.matcher(file.getName());
+			if (matcher.matches()) {
+				regions.add(new int[] { Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)) });
+			}
+		}
+		int regionX = chunkX >> 5, regionZ = chunkZ >> 5;
+		regions.sort(Comparator.comparingInt(r -> {
+			int dx = r[0] - regionX, dz = r[1] - regionZ;
+			return dx * dx + dz * dz;
+		}));
+		if (regions.size() > MAX_SCANNED_REGIONS) {
+			regions = regions.subList(0, MAX_SCANNED_REGIONS);
+		}
+		regionsToScan = regions.size();
+		LOGGER.debug("[WDL] Scanning {} existing regions in {} for tile entities", regions.size(), regionFolder);
+		scanNext(writer, regions.iterator());
+	}
+
+	private void scanNext(RegionWriter writer, Iterator<int[]> regions) {
+		if (scanCancelled || !regions.hasNext()) {
+			return;
+		}
+		int[] region = regions.next();
+		writer.readRegion(region[0], region[1], TILE_ENTITY_READER::read, (pos, tag) -> {
+			NBTTagList list = filter(tag.getCompound("Level").getList("TileEntities", 10));
+			if (list.size() > 0) {
+				// Checked within compute, so that a save that happens at
+				// the same time always wins
+				tileEntities.compute(pos, (key, existing) ->
+						savedChunks.contains(key) ? null : list);
+			}
+		}, () -> scanCancelled).whenComplete((result, ex) -> {
+			if (ex != null) {
+				LOGGER.warn("[WDL] Failed to scan region {}, {} for tile entities", region[0], region[1], ex);
+			} else if (!scanCancelled) {
+				// A cancelled read may have stopped partway through the region
+				scannedRegions.add(regionKey(region[0], region[1]));
+			}
+			scanNext(writer, regions);
+		});
+	}
+
+	/**
+	 * Gets the tile entities in the given list that may be imported.
+	 */
+	private NBTTagList filter(NBTTagList list) {
+		Predicate<String> importable = this.importable;
+		NBTTagList filtered = new NBTTagList();
+		for (int i = 0; i < list.size(); i++) {
+			NBTTagCompound tileEntity = list.getCompound(i);
+			if (importable.test(tileEntity.getString("id"))) {
+				filtered.add(tileEntity);
+			}
+		}
+		return filtered;
+	}
+
+	/**
+	 * Stops the scan after the row of chunks currently being scanned.
+	 */
+	public void cancelScan() {
+		scanCancelled = true;
+	}
+
+	/**
+	 * Checks whether the importable tile entities of the given chunk are
+	 * known, which is the case if its region has been scanned and it hasn't
+	 * been saved since.
+	 */
+	public boolean isKnown(ChunkPos pos) {
+		boolean known = !savedChunks.contains(pos)
+				&& scannedRegions.contains(regionKey(pos.x >> 5, pos.z >> 5));
+		if (known) {
+			hits.incrementAndGet();
+		} else {
+			misses.incrementAndGet();
+		}
+		return known;
+	}
+
+	/**
+	 * Checks whether the given chunk has been saved since the index was
+	 * created.
+	 */
+	public boolean wasSaved(ChunkPos pos) {
+		return savedChunks.contains(pos);
+	}
+
+	/**
+	 * Gets a copy of the old importable tile entities for the given chunk,
+	 * which may be empty. Only meaningful if {@link #isKnown} returned true.
+	 */
+	public NBTTagList get(ChunkPos pos) {
+		NBTTagList list = tileEntities.get(pos);
+		return list != null ? list.copy() : new NBTTagList();
+	}
+
+	/**
+	 * Records that the given chunk is being saved, dropping its entry; from
+	 * now on, its tile entities come from the region file.
+	 */
+	public void markSaved(ChunkPos pos) {
+		savedChunks.add(pos);
+		tileEntities.remove(pos);
+	}
+
+	@Override
+	public String toString() {
+		return "TileEntityImportIndex [scannedRegions=" + scannedRegions.size() + "/" + regionsToScan
+				+ ", chunksWithTileEntities=" + tileEntities.size() + ", hits=" + hits.get()
+				+ ", misses=" + misses.get() + ", scanCancelled=" + scanCancelled + "]";
+	}
+}
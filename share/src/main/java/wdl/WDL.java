@@ -25,24 +25,30 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.nio.file.Files;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.annotation.Nullable;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Maps;
-import com.google.common.collect.Multimap;
 import com.mojang.realmsclient.RealmsMainScreen;
 import com.mojang.realmsclient.dto.RealmsServer;
 
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
 import net.minecraft.block.Block;
 import net.minecraft.block.BlockAir;
 import net.minecraft.block.BlockBed;
@@ -68,6 +74,7 @@ import net.minecraft.realms.RealmsScreen;
 import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.math.ChunkPos;
+import net.minecraft.util.math.MathHelper;
 import net.minecraft.world.GameRules;
 import net.minecraft.world.chunk.Chunk;
 import net.minecraft.world.chunk.ChunkSection;
@@ -75,7 +82,6 @@ import net.minecraft.world.chunk.EmptyChunk;
 import net.minecraft.world.storage.MapData;
 import net.minecraft.world.storage.SaveHandler;
 import net.minecraft.world.storage.SessionLockException;
-import net.minecraft.world.storage.ThreadedFileIOBase;
 import net.minecraft.world.storage.WorldInfo;
 import wdl.WorldBackup.WorldBackupType;
 import wdl.api.IPlayerInfoEditor;
@@ -94,6 +100,8 @@ import wdl.gui.GuiWDLMultiworld;
 import wdl.gui.GuiWDLMultiworldSelect;
 import wdl.gui.GuiWDLOverwriteChanges;
 import wdl.gui.GuiWDLSaveProgress;
+import wdl.io.Compression;
+import wdl.io.RegionCoverageIndex;
 import wdl.update.GithubInfoGrabber;
 import wdl.versioned.VersionedFunctions;
 
@@ -167,14 +175,18 @@ public class WDL {
 	public WDLChunkLoader chunkLoader;
 
 	/**
-	 * All tile entities that were saved manually, by chunk and then position.
+	 * NBT of all tile entities that were saved manually, by chunk and then
+	 * position.
 	 */
-	public Map<ChunkPos, Map<BlockPos, TileEntity>> newTileEntities = new HashMap<>();
+	public final CapturedTileEntities newTileEntities = new CapturedTileEntities();
 
 	/**
-	 * All entities that were downloaded, by chunk.
+	 * NBT of entities that were downloaded but are no longer loaded, by chunk
+	 * (as given by {@link ChunkPos#asLong(int, int)}).  The entities are
+	 * written (and edited) as soon as they are removed, so that the entity
+	 * objects themselves aren't kept around.
 	 */
-	public Multimap<ChunkPos, Entity> newEntities = HashMultimap.create();
+	public Long2ObjectMap<List<NBTTagCompound>> newEntities = new Long2ObjectOpenHashMap<>();
 
 	/**
 	 * All of the {@link MapData}s that were sent to the client in the current
@@ -185,7 +197,27 @@ public class WDL {
 	/**
 	 * All chunks that have been saved, for use in a UI.
 	 */
-	public Set<ChunkPos> savedChunks = new HashSet<>();
+	public final SavedChunkSet savedChunks = new SavedChunkSet();
+
+	/**
+	 * Chunks that were unloaded while downloading and are waiting to be saved.
+	 */
+	public final ChunkSaveScheduler chunkSaveScheduler = new ChunkSaveScheduler(this::saveChunk);
+
+	/**
+	 * Loaded chunks that have changed since they were last saved.
+	 */
+	public final DirtyChunkTracker dirtyChunks = new DirtyChunkTracker();
+
+	/**
+	 * Loaded chunks that are waiting to be autosaved.
+	 */
+	public final ChunkSaveScheduler autosaveScheduler = new ChunkSaveScheduler(this::autosaveChunk);
+
+	/**
+	 * Number of chunks skipped by {@link #isEmpty(Chunk)}.
+	 */
+	private final AtomicInteger skippedEmptyChunks = new AtomicInteger();
 
 	// State variables:
 	/**
@@ -358,8 +390,22 @@ public class WDL {
 			if (lastPlayed > lastSaved) {
 				// The world was played later than it was saved; confirm that the
 				// user is willing for possible changes they made to be overwritten.
+				// Counting changed chunks may need to re-read every region
+				// header, so do it in the background and let the screen show
+				// the count once it's ready.
+				CompletableFuture<Integer> changedChunks;
+				if (lastSaved != -1) {
+					changedChunks = RegionCoverageIndex.loadAsync(new File(worldFolder, "region"))
+							.thenApply(index -> index.countChunksWrittenAfter(lastSaved / 1000))
+							.exceptionally(ex -> {
+								LOGGER.warn("[WDL] Failed to count chunks changed since the last download: ", ex);
+								return -1;
+							});
+				} else {
+					changedChunks = CompletableFuture.completedFuture(-1);
+				}
 				minecraft.displayGuiScreen(new GuiWDLOverwriteChanges(this,
-						lastSaved, lastPlayed, () -> {
+						lastSaved, lastPlayed, changedChunks, () -> {
 							overrideLastModifiedCheck = true;
 							callback.run();
 						}, cancel));
@@ -392,13 +438,21 @@ public class WDL {
 		WDL.minecraft.displayGuiScreen(null);
 
 		chunkLoader = WDLChunkLoader.create(this, saveHandler, worldClient.dimension);
-		newTileEntities.values().forEach((m) -> {
-			m.clear();
-		});
+		chunkLoader.startImportIndexScan(MathHelper.floor(player.posX) >> 4,
+				MathHelper.floor(player.posZ) >> 4);
 		newTileEntities.clear();
+		newTileEntities.setCompress(serverProps.getValue(MiscSettings.COMPRESS_CAPTURED_TILE_ENTITIES));
 		newEntities.clear();
 		newMapDatas.clear();
 		savedChunks.clear();
+		chunkSaveScheduler.clear();
+		autosaveScheduler.clear();
+		dirtyChunks.reset(System.currentTimeMillis());
+		skippedEmptyChunks.set(0);
+		Compression.setLevel(serverProps.getValue(MiscSettings.COMPRESSION_LEVEL));
+		Compression.resetStatistics();
+		// The server brand is known by now, which affects track distances
+		EntityUtils.invalidateEntityPolicy();
 
 		startOnChange = true;
 		downloading = true;
@@ -416,6 +470,7 @@ public class WDL {
 			startOnChange = false;
 			WDLMessages.chatMessageTranslated(WDL.serverProps,
 					WDLMessageTypes.INFO, "wdl.messages.generalInfo.downloadStopped");
+			flushChunkSaveQueue();
 			startSaveThread();
 		}
 	}
@@ -433,6 +488,8 @@ public class WDL {
 			saving = false;
 			downloading = false;
 			worldLoadingDeferred = false;
+			chunkSaveScheduler.clear();
+			autosaveScheduler.clear();
 
 			WDLMessages.chatMessageTranslated(WDL.serverProps,
 					WDLMessageTypes.INFO, "wdl.messages.generalInfo.downloadCanceled");
@@ -447,9 +504,52 @@ public class WDL {
 		WDLMessages.chatMessageTranslated(WDL.serverProps,
 				WDLMessageTypes.INFO, "wdl.messages.generalInfo.worldChanged");
 		WDL.worldLoadingDeferred = true;
+		flushChunkSaveQueue();
 		startSaveThread();
 	}
 
+	/**
+	 * Immediately saves all chunks in {@link #chunkSaveScheduler}.  Must be
+	 * called on the client thread before starting the save thread.  Pending
+	 * autosaves are dropped, as those chunks are still loaded and will be
+	 * saved by {@link #saveChunks}.
+	 */
+	private void flushChunkSaveQueue() {
+		if (player != null) {
+			chunkSaveScheduler.flush(player.posX, player.posZ);
+		} else {
+			chunkSaveScheduler.flush(0, 0);
+		}
+		autosaveScheduler.clear();
+	}
+
+	/**
+	 * Queues chunks that have changed since the last autosave to be saved
+	 * once the autosave interval has passed, and saves some of the queued
+	 * ones.  Chunks waiting to be saved after unloading go first, and nothing
+	 * is saved while the chunk loader is backlogged.  Must be
+	 * called on the client thread each tick while downloading.
+	 */
+	public void tickAutosave() {
+		// A budget of 0 saves unloaded chunks immediately, but autosaves are
+		// never urgent, so they are always spread out over several ticks.
+		int budget = Math.max(1, serverProps.getValue(MiscSettings.CHUNK_SAVE_BUDGET));
+		List<ChunkPos> due = dirtyChunks.takeDirtyIfDue(System.currentTimeMillis(),
+				serverProps.getValue(MiscSettings.AUTOSAVE_INTERVAL));
+		if (!due.isEmpty()) {
+			LOGGER.debug("[WDL] Autosaving {} changed chunks", due.size());
+			for (ChunkPos pos : due) {
+				Chunk c = worldClient.getChunk(pos.x, pos.z);
+				if (!(c instanceof EmptyChunk)) {
+					autosaveScheduler.enqueue(c, budget);
+				}
+			}
+		}
+		if (chunkSaveScheduler.getQueueDepth() == 0 && !chunkLoader.isBacklogged()) {
+			autosaveScheduler.tick(player.posX, player.posZ, budget);
+		}
+	}
+
 	/**
 	 * Starts the asynchronous save thread.
 	 */
@@ -586,6 +686,7 @@ public class WDL {
 		minecraft.addScheduledTask(() -> { minecraft.displayGuiScreen(progressScreen); });
 
 		saveProps();
+		Compression.setLevel(serverProps.getValue(MiscSettings.COMPRESSION_LEVEL));
 
 		try {
 			saveHandler.checkSessionLock();
@@ -621,10 +722,32 @@ public class WDL {
 				return I18n.format("wdl.saveProgress.flushingIO.subtitle", chunkLoader.getNumPendingChunks());
 			}, 1);
 
-			ThreadedFileIOBase.getThreadedIOInstance().waitForFinish();
+			chunkLoader.stopImportIndexScan();
+			chunkLoader.flushRegionFiles();
 		} catch (Exception e) {
 			throw new RuntimeException("Threw exception waiting for asynchronous IO to finish. Hmmm.", e);
 		}
+		// Only stamped once every chunk is on disk, so that chunks written by
+		// this save don't count as changes made afterwards when this is
+		// compared with the region file timestamps.
+		worldProps.setValue(MiscSettings.LAST_SAVED, System.currentTimeMillis());
+		saveProps();
+		if (Compression.getBytesIn() > 0) {
+			WDLMessages.chatMessageTranslated(WDL.serverProps,
+					WDLMessageTypes.SAVING, "wdl.messages.saving.compressionStats",
+					Compression.getBytesIn() / 1024, Compression.getBytesOut() / 1024,
+					Compression.getBytesOut() * 100 / Compression.getBytesIn());
+		}
+		if (chunkLoader.getNumSpilledChunks() > 0) {
+			WDLMessages.chatMessageTranslated(WDL.serverProps,
+					WDLMessageTypes.SAVING, "wdl.messages.saving.chunksSpilled",
+					chunkLoader.getNumSpilledChunks());
+		}
+		if (chunkLoader.getNumElidedWrites() > 0) {
+			WDLMessages.chatMessageTranslated(WDL.serverProps,
+					WDLMessageTypes.SAVING, "wdl.messages.saving.unchangedChunksSkipped",
+					chunkLoader.getNumElidedWrites());
+		}
 		saveHandler.flush();
 		minecraft.getSaveLoader().flushCache();
 
@@ -727,7 +850,7 @@ public class WDL {
 
 		try (FileOutputStream stream = new FileOutputStream(playerFileTmp)) {
 
-			CompressedStreamTools.writeCompressed(playerNBT, stream);
+			Compression.writeCompressed(playerNBT, stream);
 
 			// Remove the old player file to make space for the new one.
 			Files.deleteIfExists(playerFile.toPath());
@@ -802,15 +925,13 @@ public class WDL {
 				I18n.format("wdl.saveProgress.worldMetadata.writingNBT"), taskNum);
 		File saveDirectory = saveHandler.getWorldDirectory();
 
-		worldProps.setValue(MiscSettings.LAST_SAVED, worldInfoNBT.getLong("LastPlayed"));
-
 		File dataFileTmp = new File(saveDirectory, "level.dat_new");
 		File dataFileBackup = new File(saveDirectory, "level.dat_old");
 		File dataFile = new File(saveDirectory, "level.dat");
 
 		try (FileOutputStream stream = new FileOutputStream(dataFileTmp)) {
 			// Make temporary level.dat_new
-			CompressedStreamTools.writeCompressed(rootWorldInfoNBT, stream);
+			Compression.writeCompressed(rootWorldInfoNBT, stream);
 
 			if (dataFile.exists()) {
 				// level.dat becomes level.dat_old
@@ -831,18 +952,32 @@ public class WDL {
 	}
 
 	/**
-	 * Calls saveChunk for all currently loaded chunks
+	 * Saves all currently loaded chunks.
+	 *
+	 * Snapshots of the chunks are taken on the client thread, a batch at a
+	 * time; these only copy the chunks' arrays.  NBT for those snapshots
+	 * (including encoding their sections) is then created either on this
+	 * thread or on a pool of worker threads (see
+	 * {@link MiscSettings#SAVE_THREADS}), while the client thread snapshots the
+	 * next batch.
 	 *
 	 * @throws IllegalAccessException
 	 * @throws IllegalArgumentException
+	 * @throws ExecutionException
+	 * @throws InterruptedException
 	 */
 	private void saveChunks(GuiWDLSaveProgress progressScreen)
-			throws IllegalArgumentException, IllegalAccessException {
+			throws IllegalArgumentException, IllegalAccessException,
+			InterruptedException, ExecutionException {
 		if (!WDLPluginChannels.canDownloadAtAll()) { return; }
 
 		WDLMessages.chatMessageTranslated(WDL.serverProps,
 				WDLMessageTypes.SAVING, "wdl.messages.saving.savingChunks");
 
+		// Chunks that were unloaded earlier need to be queued before the
+		// loaded ones, which may be newer versions of the same chunk.
+		chunkLoader.waitForSnapshots();
+
 		// Get the list of loaded chunks
 		Object obj = ReflectionUtils.findAndGetPrivateField(worldClient.getChunkProvider(),
 				ChunkProviderClient.class,
@@ -864,48 +999,201 @@ public class WDL {
 		progressScreen.startMajorTask(I18n.format("wdl.saveProgress.chunk.title"),
 				chunks.size());
 
-		for (int currentChunk = 0; currentChunk < chunks.size(); currentChunk++) {
-			Chunk c = chunks.get(currentChunk);
-			if (c != null) {
-				//Serverside restrictions check
-				if (!WDLPluginChannels.canSaveChunk(c)) {
-					continue;
-				}
-
-				progressScreen.setMinorTaskProgress(I18n.format(
-						"wdl.saveProgress.chunk.saving", c.x,
-						c.z), currentChunk);
+		int threads = serverProps.getValue(MiscSettings.SAVE_THREADS);
+		ForkJoinPool pool = null;
+		if (threads > 1) {
+			pool = new ForkJoinPool(threads, (p) -> {
+				ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(p);
+				thread.setName("WDL Chunk Serializer " + thread.getPoolIndex());
+				return thread;
+			}, null, false);
+		}
 
-				saveChunk(c);
+		try {
+			int batchSize = Math.max(threads, 1) * CHUNKS_PER_THREAD_PER_BATCH;
+			Future<List<ChunkSnapshot>> nextSnapshots = snapshotBatch(chunks, 0, batchSize);
+			for (int batchStart = 0; batchStart < chunks.size(); batchStart += batchSize) {
+				List<ChunkSnapshot> snapshots = nextSnapshots.get();
+
+				List<ForkJoinTask<NBTTagCompound>> tasks = new ArrayList<>();
+				if (pool != null) {
+					for (ChunkSnapshot snapshot : snapshots) {
+						tasks.add(pool.submit(() -> chunkLoader.createChunkNBT(snapshot)));
+					}
+				}
+				// Snapshot the next batch while this one is being serialized
+				nextSnapshots = snapshotBatch(chunks, batchStart + batchSize, batchSize);
+
+				if (pool != null) {
+					for (int i = 0; i < snapshots.size(); i++) {
+						ChunkSnapshot snapshot = snapshots.get(i);
+						progressScreen.setMinorTaskProgress(I18n.format(
+								"wdl.saveProgress.chunk.saving", snapshot.pos.x,
+								snapshot.pos.z), batchStart + i);
+						try {
+							chunkLoader.writeChunkNBT(snapshot.pos, tasks.get(i).get());
+						} catch (ExecutionException e) {
+							WDLMessages.chatMessageTranslated(WDL.serverProps,
+									WDLMessageTypes.ERROR,
+									"wdl.messages.generalError.failedToSaveChunk", snapshot.pos.x, snapshot.pos.z, e.getCause());
+						}
+					}
+				} else {
+					for (int i = 0; i < snapshots.size(); i++) {
+						ChunkSnapshot snapshot = snapshots.get(i);
+						progressScreen.setMinorTaskProgress(I18n.format(
+								"wdl.saveProgress.chunk.saving", snapshot.pos.x,
+								snapshot.pos.z), batchStart + i);
+						try {
+							chunkLoader.writeChunkNBT(snapshot.pos, chunkLoader.createChunkNBT(snapshot));
+						} catch (Exception e) {
+							WDLMessages.chatMessageTranslated(WDL.serverProps,
+									WDLMessageTypes.ERROR,
+									"wdl.messages.generalError.failedToSaveChunk", snapshot.pos.x, snapshot.pos.z, e);
+						}
+					}
+				}
+			}
+		} finally {
+			if (pool != null) {
+				pool.shutdown();
 			}
 		}
+
 		WDLMessages.chatMessageTranslated(WDL.serverProps,
 				WDLMessageTypes.SAVING, "wdl.messages.saving.chunksSaved");
+		if (skippedEmptyChunks.get() > 0) {
+			WDLMessages.chatMessageTranslated(WDL.serverProps,
+					WDLMessageTypes.SAVING, "wdl.messages.saving.emptyChunksSkipped",
+					skippedEmptyChunks.get());
+		}
 	}
 
 	/**
-	 * Import all non-overwritten TileEntities, then save the chunk
+	 * Number of chunks given to each worker thread in a single batch by
+	 * {@link #saveChunks}.  All chunks in a batch are snapshotted at once on
+	 * the client thread, so this bounds both how long the client is blocked
+	 * and how many chunks are kept in memory at once (at most two batches).
+	 */
+	private static final int CHUNKS_PER_THREAD_PER_BATCH = 16;
+
+	/**
+	 * Schedules snapshots of a batch of the given chunks to be taken on the
+	 * client thread.
+	 *
+	 * @param start The index of the first chunk in the batch; if past the end
+	 *              of the list, the batch is empty.
+	 * @return A future with the snapshots.
+	 */
+	private Future<List<ChunkSnapshot>> snapshotBatch(List<Chunk> chunks, int start, int batchSize) {
+		if (start >= chunks.size()) {
+			return CompletableFuture.completedFuture(Collections.emptyList());
+		}
+		List<Chunk> batch = chunks.subList(start, Math.min(start + batchSize, chunks.size()));
+		return minecraft.addScheduledTask(() -> {
+			return createSnapshots(batch);
+		});
+	}
+
+	/**
+	 * Creates snapshots of the given chunks, skipping ones that shouldn't be
+	 * saved.  Must be called on the client thread.
+	 */
+	private List<ChunkSnapshot> createSnapshots(List<Chunk> chunks) {
+		List<ChunkSnapshot> snapshots = new ArrayList<>();
+		for (Chunk c : chunks) {
+			if (c == null) {
+				continue;
+			}
+			ChunkSnapshot snapshot = createSnapshot(c);
+			if (snapshot != null) {
+				snapshots.add(snapshot);
+			}
+		}
+		return snapshots;
+	}
+
+	/**
+	 * Saves the given chunk.  Must be called on the client thread; a snapshot
+	 * of the chunk is taken immediately but the rest of the work of saving it
+	 * happens on a background thread.
 	 */
 	public void saveChunk(Chunk c) {
-		if (!WDLPluginChannels.canDownloadAtAll()) { return; }
+		ChunkSnapshot snapshot = createSnapshot(c);
+		if (snapshot != null) {
+			chunkLoader.saveSnapshotAsync(snapshot);
+		}
+	}
+
+	/**
+	 * Saves the given chunk, which is still loaded, in the background.  Unlike
+	 * {@link #saveChunk}, WDL's own data for the chunk is kept, as the chunk
+	 * will be saved again later.  Must be called on the client thread.
+	 */
+	private void autosaveChunk(Chunk c) {
+		ChunkSnapshot snapshot = createSnapshot(c, false);
+		if (snapshot != null) {
+			chunkLoader.saveSnapshotAsync(snapshot);
+		}
+	}
+
+	/**
+	 * Creates a snapshot of the given chunk, and then frees WDL's own data for
+	 * that chunk (which is included in the snapshot).  Must be called on the
+	 * client thread.
+	 *
+	 * @return The snapshot, or null if the chunk should not be saved.
+	 */
+	@Nullable
+	private ChunkSnapshot createSnapshot(Chunk c) {
+		return createSnapshot(c, true);
+	}
 
-		if (!WDLPluginChannels.canSaveChunk(c)) { return; }
+	/**
+	 * Creates a snapshot of the given chunk.  Must be called on the client
+	 * thread.
+	 *
+	 * @param unload Whether to free WDL's own data for the chunk afterwards.
+	 * @return The snapshot, or null if the chunk should not be saved.
+	 */
+	@Nullable
+	private ChunkSnapshot createSnapshot(Chunk c, boolean unload) {
+		if (!prepareToSaveChunk(c)) { return null; }
 
 		try {
-			savedChunks.add(c.getPos());
-			if (isEmpty(c)) {
-				//LOGGER.warn("[WDL] Tried to save empty chunk! (" + c + "@" + c.x + "," + c.z + ")");
-				return;
+			ChunkSnapshot snapshot = chunkLoader.createSnapshot(worldClient, c);
+			if (unload) {
+				unloadChunk(c.getPos());
 			}
-			chunkLoader.saveChunk(worldClient, c);
+			return snapshot;
 		} catch (Exception e) {
 			// Better tell the player that something didn't work:
 			WDLMessages.chatMessageTranslated(WDL.serverProps,
 					WDLMessageTypes.ERROR,
 					"wdl.messages.generalError.failedToSaveChunk", c.x, c.z, e);
+			return null;
 		}
 	}
 
+	/**
+	 * Checks whether the given chunk should be saved, and marks it as saved.
+	 *
+	 * @return True if the chunk should actually be written.
+	 */
+	private boolean prepareToSaveChunk(Chunk c) {
+		if (!WDLPluginChannels.canDownloadAtAll()) { return false; }
+
+		if (!WDLPluginChannels.canSaveChunk(c)) { return false; }
+
+		savedChunks.add(c.getPos());
+		if (isEmpty(c)) {
+			//LOGGER.warn("[WDL] Tried to save empty chunk! (" + c + "@" + c.x + "," + c.z + ")");
+			skippedEmptyChunks.incrementAndGet();
+			return false;
+		}
+		return true;
+	}
+
 	private boolean isEmpty(Chunk c) {
 		if (c.isEmpty() || c instanceof EmptyChunk) {
 			return true;
@@ -918,27 +1206,39 @@ public class WDL {
 		}
 		if (array[0] != Chunk.EMPTY_SECTION) {
 			// All-air empty chunks sometimes are sent with a bottom section;
-			// handle that and a few other special cases.
-			for (int y = 0; y < 16; y++) {
-				for (int z = 0; z < 16; z++) {
-					for (int x = 0; x < 16; x++) {
-						Block block = array[0].get(x, y, z).getBlock(); 
-						if (!(block instanceof BlockAir || block instanceof BlockBed)) {
-							// Contains a non-airoid; stop
-							return false;
+			// handle that and a few other special cases.  The section keeps a
+			// count of non-air blocks, which covers the all-air case without
+			// looking at each block.
+			if (!array[0].isEmpty()) {
+				for (int y = 0; y < 16; y++) {
+					for (int z = 0; z < 16; z++) {
+						for (int x = 0; x < 16; x++) {
+							Block block = array[0].get(x, y, z).getBlock();
+							if (!(block instanceof BlockAir || block instanceof BlockBed)) {
+								// Contains a non-airoid; stop
+								return false;
+							}
 						}
 					}
 				}
 			}
 			// Only composed of airoids; treat as empty
-			LOGGER.warn("[WDL] Skipping airoid empty chunk at " + c.x + ", " + c.z);
+			LOGGER.debug("[WDL] Skipping airoid empty chunk at " + c.x + ", " + c.z);
 		} else {
 			// Definitely empty
-			LOGGER.warn("[WDL] Skipping chunk with all null sections at " + c.x + ", " + c.z);
+			LOGGER.debug("[WDL] Skipping chunk with all null sections at " + c.x + ", " + c.z);
 		}
 		return true;
 	}
 
+	/**
+	 * Gets the number of chunks that were not saved because they were empty,
+	 * since the download started.
+	 */
+	public int getSkippedEmptyChunks() {
+		return skippedEmptyChunks.get();
+	}
+
 	/**
 	 * Loads the sever-shared properties, which act as a default
 	 * for the properties of each individual world in a multiworld server.
@@ -1358,7 +1658,7 @@ public class WDL {
 			}
 
 			try (FileOutputStream stream = new FileOutputStream(mapFile)) {
-				CompressedStreamTools.writeCompressed(mapNBT, stream);
+				Compression.writeCompressed(mapNBT, stream);
 			} catch (IOException ex) {
 				throw new RuntimeException("WDL: Exception while writing " +
 						"map data for map " + e.getKey() + "!", ex);
@@ -1486,7 +1786,8 @@ public class WDL {
 	}
 
 	/**
-	 * Adds the given tile entity to {@link #newTileEntities}.
+	 * Writes the given tile entity to NBT and adds it to
+	 * {@link #newTileEntities}, replacing any previous one at its position.
 	 *
 	 * @param pos
 	 *            The position of the tile entity
@@ -1494,15 +1795,8 @@ public class WDL {
 	 *            The tile entity to add
 	 */
 	public void saveTileEntity(BlockPos pos, TileEntity te) {
-		int chunkX = pos.getX() >> 4;
-		int chunkZ = pos.getZ() >> 4;
-
-		ChunkPos chunkPos = new ChunkPos(chunkX, chunkZ);
-
-		if (!newTileEntities.containsKey(chunkPos)) {
-			newTileEntities.put(chunkPos, new HashMap<BlockPos, TileEntity>());
-		}
-		newTileEntities.get(chunkPos).put(pos, te);
+		newTileEntities.put(pos, WDLChunkLoader.writeTileEntity(pos, te));
+		dirtyChunks.markDirty(new ChunkPos(pos.getX() >> 4, pos.getZ() >> 4));
 	}
 
 	/**
@@ -1511,12 +1805,8 @@ public class WDL {
 	 * @param pos Location of the chunk
 	 */
 	public void unloadChunk(ChunkPos pos) {
-		Map<BlockPos, TileEntity> m = newTileEntities.get(pos);
-		if(m != null) {
-			m.clear();
-		}
 		newTileEntities.remove(pos);
-		newEntities.removeAll(pos);
+		newEntities.remove(ChunkPos.asLong(pos.x, pos.z));
 	}
 
 	/**
@@ -1635,8 +1925,12 @@ public class WDL {
 		state.addDetail("lastEntity", lastEntity);
 		state.addDetail("saveHandler", saveHandler);
 		state.addDetail("chunkLoader", chunkLoader);
+		state.addDetail("chunkSaveScheduler", chunkSaveScheduler);
+		state.addDetail("dirtyChunks", dirtyChunks);
+		state.addDetail("autosaveScheduler", autosaveScheduler);
+		state.addDetail("skippedEmptyChunks", skippedEmptyChunks);
 		state.addDetail("newTileEntities", newTileEntities);
-		state.addDetail("newEntities", newEntities);
+		state.addDetail("newEntities", newEntities.size() + " chunks");
 		state.addDetail("newMapDatas", newMapDatas);
 		state.addDetail("downloading", downloading);
 		state.addDetail("isMultiworld", isMultiworld);
@@ -14,7 +14,6 @@
  */
 package wdl;
 
-import java.io.DataInputStream;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -22,23 +21,33 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+
+import javax.annotation.Nullable;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 import net.minecraft.block.Block;
 import net.minecraft.entity.Entity;
 import net.minecraft.entity.player.EntityPlayer;
-import net.minecraft.nbt.CompressedStreamTools;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.nbt.NBTTagList;
 import net.minecraft.network.datasync.EntityDataManager;
 import net.minecraft.tileentity.TileEntity;
 import net.minecraft.util.ClassInheritanceMultiMap;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
 import net.minecraft.world.chunk.Chunk;
 import net.minecraft.world.chunk.storage.AnvilChunkLoader;
-import net.minecraft.world.chunk.storage.RegionFileCache;
 import net.minecraft.world.dimension.Dimension;
 import net.minecraft.world.storage.SaveHandler;
 import wdl.api.IEntityEditor;
@@ -47,6 +56,8 @@ import wdl.api.ITileEntityEditor.TileEntityCreationMode;
 import wdl.api.ITileEntityImportationIdentifier;
 import wdl.api.WDLApi;
 import wdl.api.WDLApi.ModInfo;
+import wdl.io.RegionCoverageIndex;
+import wdl.io.SelectiveNBTReader;
 import wdl.versioned.VersionedFunctions;
 
 /**
@@ -58,14 +69,122 @@ import wdl.versioned.VersionedFunctions;
  */
 public class WDLChunkLoader extends WDLChunkLoaderBase {
 	private static final Logger LOGGER = LogManager.getLogger();
+	/**
+	 * Reads only the tile entities of a chunk, skipping its block data.
+	 */
+	private static final SelectiveNBTReader TILE_ENTITY_READER =
+			new SelectiveNBTReader("Level.TileEntities");
 
 	public static WDLChunkLoader create(WDL wdl,
 			SaveHandler handler, Dimension dimension) {
 		return new WDLChunkLoader(wdl, getWorldSaveFolder(handler, dimension));
 	}
 
+	/**
+	 * Executor used to create NBT for snapshots of chunks that were unloaded
+	 * while downloading.  This has a single thread so that chunks are queued
+	 * for writing in the order they were unloaded; that thread exits when
+	 * idle.
+	 */
+	private final ThreadPoolExecutor serializer;
+	/**
+	 * Number of snapshots given to {@link #serializer} that are not yet
+	 * queued for writing.
+	 */
+	private final AtomicInteger pendingSnapshots = new AtomicInteger();
+	/**
+	 * Number of pending snapshots past which {@link #isBacklogged()} is true.
+	 */
+	private static final int MAX_PENDING_SNAPSHOTS = 64;
+	/**
+	 * Tile entities from the existing save, used by {@link #getOldTileEntities}.
+	 */
+	private final TileEntityImportIndex importIndex = new TileEntityImportIndex();
+
 	public WDLChunkLoader(WDL wdl, File file) {
 		super(wdl, file);
+		this.serializer = new ThreadPoolExecutor(1, 1, 10, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(),
+				new ThreadFactoryBuilder().setNameFormat("WDL Chunk Serializer").setDaemon(true).build());
+		this.serializer.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Creates NBT for the given snapshot on a background thread, and then
+	 * queues it for writing.
+	 *
+	 * @param snapshot A snapshot created by {@link #createSnapshot}.
+	 */
+	public void saveSnapshotAsync(ChunkSnapshot snapshot) {
+		pendingSnapshots.incrementAndGet();
+		serializer.execute(() -> {
+			try {
+				writeChunkNBT(snapshot.pos, createChunkNBT(snapshot));
+			} catch (Exception e) {
+				WDLMessages.chatMessageTranslated(WDL.serverProps,
+						WDLMessageTypes.ERROR,
+						"wdl.messages.generalError.failedToSaveChunk", snapshot.pos.x, snapshot.pos.z, e);
+			} finally {
+				pendingSnapshots.decrementAndGet();
+			}
+		});
+	}
+
+	/**
+	 * Blocks until all snapshots given to {@link #saveSnapshotAsync} have been
+	 * queued for writing.
+	 */
+	public void waitForSnapshots() throws InterruptedException, ExecutionException {
+		serializer.submit(() -> {}).get();
+	}
+
+	/**
+	 * Gets the number of snapshots given to {@link #saveSnapshotAsync} that
+	 * have not yet been queued for writing.
+	 */
+	public int getNumPendingSnapshots() {
+		return pendingSnapshots.get();
+	}
+
+	/**
+	 * Checks whether saving has fallen behind far enough that the client
+	 * thread should hold off on snapshotting more chunks: either many
+	 * snapshots are waiting for NBT to be created, or the region writer is
+	 * at its memory limit.
+	 */
+	public boolean isBacklogged() {
+		return pendingSnapshots.get() >= MAX_PENDING_SNAPSHOTS || regionWriter.isOverMemoryLimit();
+	}
+
+	/**
+	 * Gets the coverage index of this dimension's region folder, which is
+	 * kept up to date as chunks are written.
+	 */
+	public RegionCoverageIndex getCoverageIndex() {
+		return regionWriter.getCoverageIndex();
+	}
+
+	/**
+	 * Starts scanning the existing save for tile entities to import, in the
+	 * background.
+	 *
+	 * @param chunkX X coordinate of the chunk the player is in; regions near
+	 *               it are scanned first.
+	 * @param chunkZ Z coordinate of the chunk the player is in.
+	 */
+	public void startImportIndexScan(int chunkX, int chunkZ) {
+		// Extensions may import tile entities with any ID
+		Predicate<String> importable = WDLApi.getImplementingExtensions(ITileEntityImportationIdentifier.class).isEmpty()
+				? VersionedFunctions.IMPORTABLE_BLOCK_ENTITY_IDS::contains : id -> true;
+		importIndex.startScan(regionWriter, new File(chunkSaveLocation, "region"), chunkX, chunkZ, importable);
+	}
+
+	/**
+	 * Stops the scan started by {@link #startImportIndexScan}, so that it
+	 * doesn't hold up flushing the region files.
+	 */
+	public void stopImportIndexScan() {
+		importIndex.cancelScan();
 	}
 
 	/**
@@ -81,90 +200,144 @@ public class WDLChunkLoader extends WDLChunkLoaderBase {
 			return entityList;
 		}
 
-		// Build a list of all entities in the chunk.
-		List<Entity> entities = new ArrayList<>();
 		// Add the entities already in the chunk.
 		for (ClassInheritanceMultiMap<Entity> map : chunk.getEntityLists()) {
-			entities.addAll(map);
+			for (Entity entity : map) {
+				if (entity == null) {
+					LOGGER.warn("[WDL] Null entity in chunk at "
+							+ chunk.getPos());
+					continue;
+				}
+
+				if (!shouldSaveEntity(entity)) {
+					continue;
+				}
+
+				NBTTagCompound entityData = writeEntity(entity, chunk.x, chunk.z);
+				if (entityData != null) {
+					chunk.setHasEntities(true);
+					entityList.add(entityData);
+				}
+			}
 		}
-		// Add the manually saved entities.
-		for (Entity e : wdl.newEntities.get(chunk.getPos())) {
-			// "Unkill" the entity, since it is killed when it is unloaded.
-			e.removed = false;
-			entities.add(e);
+		// Add the manually saved entities, which were already written (and
+		// edited) when they were removed.
+		List<NBTTagCompound> savedEntities = wdl.newEntities.get(ChunkPos.asLong(chunk.x, chunk.z));
+		if (savedEntities != null) {
+			for (NBTTagCompound entityData : savedEntities) {
+				chunk.setHasEntities(true);
+				entityList.add(entityData.copy());
+			}
 		}
 
-		for (Entity entity : entities) {
-			if (entity == null) {
-				LOGGER.warn("[WDL] Null entity in chunk at "
-						+ chunk.getPos());
-				continue;
-			}
+		return entityList;
+	}
 
-			if (!shouldSaveEntity(entity)) {
-				continue;
-			}
+	/**
+	 * Applies extensions' editors to the given entity and then writes it
+	 * (along with its passengers) to NBT.  Errors are reported in chat.
+	 *
+	 * @param entity The entity to write.
+	 * @param chunkX The X coordinate of the chunk it is being saved in.
+	 * @param chunkZ The Z coordinate of the chunk it is being saved in.
+	 * @return The entity's NBT, or null if it should not be saved on its own
+	 *         (e.g. because it is a passenger) or failed to save.
+	 */
+	@Nullable
+	public static NBTTagCompound writeEntity(Entity entity, int chunkX, int chunkZ) {
+		return writeEntity(entity, chunkX, chunkZ, false);
+	}
 
-			// Apply any editors.
-			for (ModInfo<IEntityEditor> info : WDLApi
-					.getImplementingExtensions(IEntityEditor.class)) {
-				try {
-					if (info.mod.shouldEdit(entity)) {
-						info.mod.editEntity(entity);
-					}
-				} catch (Exception ex) {
-					throw new RuntimeException("Failed to edit entity "
-							+ entity + " for chunk at "
-							+ chunk.getPos() + " with extension "
-							+ info, ex);
+	/**
+	 * Applies extensions' editors to the given entity, which is being removed
+	 * from the world, and then writes it (along with its passengers) to NBT.
+	 * Unlike {@link #writeEntity(Entity, int, int)}, the entity is written
+	 * even if it is still riding another entity, as it won't be saved as part
+	 * of its vehicle once it has been removed.
+	 *
+	 * @return The entity's NBT, or null if it failed to save.
+	 */
+	@Nullable
+	public static NBTTagCompound writeRemovedEntity(Entity entity, int chunkX, int chunkZ) {
+		return writeEntity(entity, chunkX, chunkZ, true);
+	}
+
+	@Nullable
+	private static NBTTagCompound writeEntity(Entity entity, int chunkX, int chunkZ, boolean removing) {
+		// Apply any editors.
+		for (ModInfo<IEntityEditor> info : WDLApi
+				.getImplementingExtensions(IEntityEditor.class)) {
+			try {
+				if (info.mod.shouldEdit(entity)) {
+					info.mod.editEntity(entity);
 				}
+			} catch (Exception ex) {
+				throw new RuntimeException("Failed to edit entity "
+						+ entity + " for chunk at "
+						+ chunkX + ", " + chunkZ + " with extension "
+						+ info, ex);
 			}
+		}
 
-			NBTTagCompound entityData = new NBTTagCompound();
+		NBTTagCompound entityData = new NBTTagCompound();
 
+		try {
+			if (writeEntityNBT(entity, entityData, removing)) {
+				return entityData;
+			}
+			return null;
+		} catch (Exception e) {
+			WDLMessages.chatMessageTranslated(
+					WDL.serverProps,
+					WDLMessageTypes.ERROR,
+					"wdl.messages.generalError.failedToSaveEntity", entity, chunkX, chunkZ, e);
+			LOGGER.warn("Compound: " + entityData);
+			LOGGER.warn("Entity metadata dump:");
 			try {
-				if (entity.writeUnlessPassenger(entityData)) {
-					chunk.setHasEntities(true);
-					entityList.add(entityData);
-				}
-			} catch (Exception e) {
-				WDLMessages.chatMessageTranslated(
-						WDL.serverProps,
-						WDLMessageTypes.ERROR,
-						"wdl.messages.generalError.failedToSaveEntity", entity, chunk.x, chunk.z, e);
-				LOGGER.warn("Compound: " + entityData);
-				LOGGER.warn("Entity metadata dump:");
-				try {
-					List<EntityDataManager.DataEntry<?>> objects = entity
-							.getDataManager().getAll();
-					if (objects == null) {
-						LOGGER.warn("No entries (getAllWatched() returned null)");
-					} else {
-						LOGGER.warn(objects);
-						for (EntityDataManager.DataEntry<?> obj : objects) {
-							if (obj != null) {
-								LOGGER.warn("DataEntry [getValue()="
-										+ obj.getValue()
-										+ ", isDirty()="
-										+ obj.isDirty()
-										+ ", getKey()="
-										+ "DataParameter ["
-										+ "getId()="
-										+ obj.getKey().getId()
-										+ ", getSerializer()="
-										+ obj.getKey().getSerializer() + "]]");
-							}
+				List<EntityDataManager.DataEntry<?>> objects = entity
+						.getDataManager().getAll();
+				if (objects == null) {
+					LOGGER.warn("No entries (getAllWatched() returned null)");
+				} else {
+					LOGGER.warn(objects);
+					for (EntityDataManager.DataEntry<?> obj : objects) {
+						if (obj != null) {
+							LOGGER.warn("DataEntry [getValue()="
+									+ obj.getValue()
+									+ ", isDirty()="
+									+ obj.isDirty()
+									+ ", getKey()="
+									+ "DataParameter ["
+									+ "getId()="
+									+ obj.getKey().getId()
+									+ ", getSerializer()="
+									+ obj.getKey().getSerializer() + "]]");
 						}
 					}
-				} catch (Exception e2) {
-					LOGGER.warn("Failed to complete dump: ", e);
 				}
-				LOGGER.warn("End entity metadata dump");
-				continue;
+			} catch (Exception e2) {
+				LOGGER.warn("Failed to complete dump: ", e);
 			}
+			LOGGER.warn("End entity metadata dump");
+			return null;
 		}
+	}
 
-		return entityList;
+	/**
+	 * Writes the given entity and its passengers to the given tag, with the
+	 * entity's type ID.
+	 *
+	 * @param removing Whether the entity is being removed from the world; if
+	 *                 not, passengers are skipped, as they are saved with their
+	 *                 vehicle.
+	 * @return True if the entity was written.
+	 */
+	static boolean writeEntityNBT(Entity entity, NBTTagCompound entityData, boolean removing) {
+		if (removing) {
+			return entity.writeUnlessRemoved(entityData);
+		} else {
+			return entity.writeUnlessPassenger(entityData);
+		}
 	}
 
 	/**
@@ -193,23 +366,102 @@ public class WDLChunkLoader extends WDLChunkLoaderBase {
 	}
 
 	/**
-	 * Creates an NBT list of all tile entities in this chunk, importing tile
-	 * entities as needed.
+	 * Writes all of the tile entities in the chunk, including ones that were
+	 * saved manually, to the given snapshot.  Editors are not applied yet;
+	 * that happens in {@link #getTileEntityList(ChunkSnapshot)}.
 	 */
 	@Override
-	protected NBTTagList getTileEntityList(Chunk chunk) {
+	protected void snapshotTileEntities(Chunk chunk, ChunkSnapshot snapshot) {
+		if (!WDLPluginChannels.canSaveTileEntities(chunk)) {
+			return;
+		}
+		snapshot.saveTileEntities = true;
+
+		Map<BlockPos, NBTTagCompound> newTEMap = wdl.newTileEntities.get(chunk.getPos());
+		if (newTEMap != null) {
+			for (Map.Entry<BlockPos, NBTTagCompound> e : newTEMap.entrySet()) {
+				BlockPos pos = e.getKey();
+				NBTTagCompound compound = e.getValue();
+				// A failed tile entity is still recorded, so that nothing is
+				// saved at that position.
+				snapshot.newTileEntities.put(pos, compound);
+				if (compound == null) {
+					continue;
+				}
+
+				WDLMessages.chatMessageTranslated(
+						WDL.serverProps,
+						WDLMessageTypes.LOAD_TILE_ENTITY,
+						"wdl.messages.tileEntity.usingNew", compound.getString("id"), pos);
+			}
+		}
+
+		for (Map.Entry<BlockPos, TileEntity> e : chunk.getTileEntityMap().entrySet()) {
+			BlockPos pos = e.getKey();
+			if (snapshot.newTileEntities.containsKey(pos)) {
+				continue;
+			}
+			NBTTagCompound compound = writeTileEntity(pos, e.getValue());
+			if (compound != null) {
+				snapshot.existingTileEntities.put(pos, compound);
+			}
+		}
+
+		if (!WDLApi.getImplementingExtensions(ITileEntityImportationIdentifier.class).isEmpty()) {
+			// Extensions are given the live chunk, so they can only be asked on
+			// the client thread.  The old tile entities may have to be read
+			// from disk first; that happens in the background, and they are
+			// chosen on the client thread once the read finishes.
+			CompletableFuture<NBTTagList> oldList = readOldTileEntityList(snapshot.pos);
+			if (oldList.isDone() && !oldList.isCompletedExceptionally()) {
+				snapshot.oldTileEntities = CompletableFuture.completedFuture(
+						filterOldTileEntities(oldList.join(), snapshot, chunk));
+			} else {
+				snapshot.oldTileEntities = oldList.thenApplyAsync(
+						list -> filterOldTileEntities(list, snapshot, chunk),
+						task -> WDL.minecraft.addScheduledTask(task));
+			}
+		}
+	}
+
+	/**
+	 * Writes the given tile entity to NBT.
+	 *
+	 * @return The NBT, or null if the tile entity failed to save.
+	 */
+	@Nullable
+	static NBTTagCompound writeTileEntity(BlockPos pos, TileEntity te) {
+		NBTTagCompound compound = new NBTTagCompound();
+		try {
+			te.write(compound);
+			return compound;
+		} catch (Exception e) {
+			WDLMessages.chatMessageTranslated(
+					WDL.serverProps,
+					WDLMessageTypes.ERROR,
+					"wdl.messages.generalError.failedToSaveTE", te, pos,
+					pos.getX() >> 4, pos.getZ() >> 4, e);
+			LOGGER.warn("Compound: " + compound);
+			return null;
+		}
+	}
+
+	/**
+	 * Creates an NBT list of all tile entities in the given snapshot, importing
+	 * tile entities as needed.  This may be called off of the client thread.
+	 */
+	@Override
+	protected NBTTagList getTileEntityList(ChunkSnapshot snapshot) {
 		NBTTagList tileEntityList = new NBTTagList();
 
-		if (!WDLPluginChannels.canSaveTileEntities(chunk)) {
+		if (!snapshot.saveTileEntities) {
+			importIndex.markSaved(snapshot.pos);
 			return tileEntityList;
 		}
 
-		Map<BlockPos, TileEntity> chunkTEMap = chunk.getTileEntityMap();
-		Map<BlockPos, NBTTagCompound> oldTEMap = getOldTileEntities(chunk);
-		Map<BlockPos, TileEntity> newTEMap = wdl.newTileEntities.get(chunk.getPos());
-		if (newTEMap == null) {
-			newTEMap = new HashMap<>();
-		}
+		Map<BlockPos, NBTTagCompound> chunkTEMap = snapshot.existingTileEntities;
+		Map<BlockPos, NBTTagCompound> oldTEMap = getChosenOldTileEntities(snapshot);
+		Map<BlockPos, NBTTagCompound> newTEMap = snapshot.newTileEntities;
 
 		// All of the locations of tile entities in the chunk.
 		Set<BlockPos> allTELocations = new HashSet<>();
@@ -221,27 +473,12 @@ public class WDLChunkLoader extends WDLChunkLoaderBase {
 			// Now, add all of the tile entities, using the "best" map
 			// if it's in multiple.
 			if (newTEMap.containsKey(pos)) {
-				NBTTagCompound compound = new NBTTagCompound();
-
-				TileEntity te = newTEMap.get(pos);
-				try {
-					te.write(compound);
-				} catch (Exception e) {
-					WDLMessages.chatMessageTranslated(
-							WDL.serverProps,
-							WDLMessageTypes.ERROR,
-							"wdl.messages.generalError.failedToSaveTE", te, pos, chunk.x, chunk.z, e);
-					LOGGER.warn("Compound: " + compound);
+				NBTTagCompound compound = newTEMap.get(pos);
+				if (compound == null) {
+					// Failed to save
 					continue;
 				}
 
-				String entityType = compound.getString("id") +
-						" (" + te.getClass().getCanonicalName() +")";
-				WDLMessages.chatMessageTranslated(
-						WDL.serverProps,
-						WDLMessageTypes.LOAD_TILE_ENTITY,
-						"wdl.messages.tileEntity.usingNew", entityType, pos);
-
 				editTileEntity(pos, compound, TileEntityCreationMode.NEW);
 
 				tileEntityList.add(compound);
@@ -259,18 +496,7 @@ public class WDLChunkLoader extends WDLChunkLoaderBase {
 			} else if (chunkTEMap.containsKey(pos)) {
 				// TODO: Do we want a chat message for this?
 				// It seems unnecessary.
-				TileEntity te = chunkTEMap.get(pos);
-				NBTTagCompound compound = new NBTTagCompound();
-				try {
-					te.write(compound);
-				} catch (Exception e) {
-					WDLMessages.chatMessageTranslated(
-							WDL.serverProps,
-							WDLMessageTypes.ERROR,
-							"wdl.messages.generalError.failedToSaveTE", te, pos, chunk.x, chunk.z, e);
-					LOGGER.warn("Compound: " + compound);
-					continue;
-				}
+				NBTTagCompound compound = chunkTEMap.get(pos);
 
 				editTileEntity(pos, compound, TileEntityCreationMode.EXISTING);
 
@@ -278,73 +504,131 @@ public class WDLChunkLoader extends WDLChunkLoaderBase {
 			}
 		}
 
+		importIndex.markSaved(snapshot.pos);
 		return tileEntityList;
 	}
 
+	/**
+	 * Gets the old tile entities to import for the given snapshot, waiting for
+	 * the client thread to choose them if it is doing so.
+	 */
+	private Map<BlockPos, NBTTagCompound> getChosenOldTileEntities(ChunkSnapshot snapshot) {
+		if (snapshot.oldTileEntities == null) {
+			return getOldTileEntities(snapshot, null);
+		}
+		if (!snapshot.oldTileEntities.isDone() && WDL.minecraft.isCallingFromMinecraftThread()) {
+			// Waiting here would keep the client thread from choosing them
+			return getOldTileEntities(snapshot, null);
+		}
+		try {
+			return snapshot.oldTileEntities.get();
+		} catch (InterruptedException | ExecutionException e) {
+			ChunkPos chunkPos = snapshot.pos;
+			WDLMessages.chatMessageTranslated(WDL.serverProps,
+					WDLMessageTypes.ERROR,
+					"wdl.messages.generalError.failedToImportTE", chunkPos.x, chunkPos.z, e);
+			return new HashMap<>();
+		}
+	}
+
 	/**
 	 * Gets a map of all tile entities in the previous version of that chunk.
 	 * Only "problematic" tile entities (those that require manual opening) will
 	 * be imported, and the tile entity must be in the correct position (IE, the
 	 * block at the tile entity's position must match the block normally used
-	 * with that tile entity). See
-	 * {@link #shouldImportBlockEntity(String, BlockPos)} for details.
+	 * with that tile entity). See {@link #shouldImportBlockEntity} for
+	 * details.
+	 *
+	 * This may wait for the chunk to be read from disk, so it must not be
+	 * called on the client thread.
 	 *
+	 * @param snapshot
+	 *            The snapshot of the chunk that currently exists in that
+	 *            location, which is used to check the blocks.
 	 * @param chunk
-	 *            The chunk that currently exists in that location
+	 *            The live chunk, to pass to extensions, or null if they should
+	 *            not be asked (as the live chunk cannot be used on this thread).
 	 * @return A map of positions to tile entities.
 	 */
-	protected Map<BlockPos, NBTTagCompound> getOldTileEntities(Chunk chunk) {
-		Map<BlockPos, NBTTagCompound> returned = new HashMap<>();
-
+	protected Map<BlockPos, NBTTagCompound> getOldTileEntities(ChunkSnapshot snapshot, @Nullable Chunk chunk) {
 		try {
-			NBTTagCompound chunkNBT;
-
-			// The reason for the weird syntax here rather than containsKey is because
-			// chunksToSave can be accessed from multiple threads.  Note that this still
-			// doesn't handle the MC-119971-like case of the chunk being in chunksBeingSaved
-			// (but that should be rare, and this condition should not happen in the first place)
-			if ((chunkNBT = chunksToSave.get(chunk.getPos())) != null) {
-				LOGGER.warn("getOldTileEntities (and thus saveChunk) was called while a chunk was already in chunksToSave!  (location: {})", chunk.getPos(), new Exception());
-			} else try (DataInputStream dis = RegionFileCache.getChunkInputStream(
-					chunkSaveLocation, chunk.x, chunk.z)) {
-				if (dis == null) {
-					// This happens whenever the chunk hasn't been saved before.
-					// It's a normal case.
-					return returned;
-				}
+			return filterOldTileEntities(readOldTileEntityList(snapshot.pos).get(), snapshot, chunk);
+		} catch (Exception e) {
+			ChunkPos chunkPos = snapshot.pos;
+			WDLMessages.chatMessageTranslated(WDL.serverProps,
+					WDLMessageTypes.ERROR,
+					"wdl.messages.generalError.failedToImportTE", chunkPos.x, chunkPos.z, e);
+			return new HashMap<>();
+		}
+	}
 
-				chunkNBT = CompressedStreamTools.read(dis);
+	/**
+	 * Gets the tile entity list of the previous version of the given chunk.
+	 * Never blocks; if the list isn't already known, it is read from the
+	 * region file in the background.
+	 *
+	 * @return A future with the list, which is empty if the chunk has never
+	 *         been saved.
+	 */
+	private CompletableFuture<NBTTagList> readOldTileEntityList(ChunkPos chunkPos) {
+		if (importIndex.isKnown(chunkPos)) {
+			return CompletableFuture.completedFuture(importIndex.get(chunkPos));
+		}
+		if (!importIndex.wasSaved(chunkPos)
+				&& !regionWriter.getCoverageIndex().hasChunk(chunkPos.x, chunkPos.z)) {
+			// Not in the region file, and not saved this session (whose
+			// write might not have reached the coverage index yet), so
+			// there is nothing to import.
+			return CompletableFuture.completedFuture(new NBTTagList());
+		}
+		// The scan hasn't reached this region, or the chunk has been saved
+		// since.  The read happens after any write of this chunk that is
+		// still queued, so this always sees the newest saved version.
+		return regionWriter.read(chunkPos, TILE_ENTITY_READER::read).thenApply(chunkNBT -> {
+			if (chunkNBT == null) {
+				// This happens whenever the chunk hasn't been saved before.
+				// It's a normal case.
+				return new NBTTagList();
 			}
+			return chunkNBT.getCompound("Level").getList("TileEntities", 10);
+		});
+	}
 
-			NBTTagCompound levelNBT = chunkNBT.getCompound("Level");
-			NBTTagList oldList = levelNBT.getList("TileEntities", 10);
-
-			if (oldList != null) {
-				for (int i = 0; i < oldList.size(); i++) {
-					NBTTagCompound oldNBT = oldList.getCompound(i);
-
-					String entityID = oldNBT.getString("id");
-					BlockPos pos = new BlockPos(oldNBT.getInt("x"),
-							oldNBT.getInt("y"), oldNBT.getInt("z"));
-					Block block = chunk.getBlockState(pos).getBlock();
-
-					if (shouldImportBlockEntity(entityID, pos, block, oldNBT, chunk)) {
-						returned.put(pos, oldNBT);
-					} else {
-						// Even if this tile entity is saved in another way
-						// later, we still want the player to know we did not
-						// import something in that chunk.
-						WDLMessages.chatMessageTranslated(
-								WDL.serverProps,
-								WDLMessageTypes.LOAD_TILE_ENTITY,
-								"wdl.messages.tileEntity.notImporting", entityID, pos);
-					}
-				}
+	/**
+	 * Chooses which of the given old tile entities to import, as described in
+	 * {@link #getOldTileEntities}.
+	 *
+	 * @param oldList  The tile entities of the previous version of the chunk.
+	 * @param snapshot The snapshot of the current chunk.
+	 * @param chunk    The live chunk, to pass to extensions and check blocks
+	 *                 in, or null if it should not be used (which it can't be
+	 *                 off of the client thread).
+	 * @return A map of positions to tile entities.
+	 */
+	private Map<BlockPos, NBTTagCompound> filterOldTileEntities(NBTTagList oldList,
+			ChunkSnapshot snapshot, @Nullable Chunk chunk) {
+		Map<BlockPos, NBTTagCompound> returned = new HashMap<>();
+		for (int i = 0; i < oldList.size(); i++) {
+			NBTTagCompound oldNBT = oldList.getCompound(i);
+
+			String entityID = oldNBT.getString("id");
+			BlockPos pos = new BlockPos(oldNBT.getInt("x"),
+					oldNBT.getInt("y"), oldNBT.getInt("z"));
+			// The snapshot's sections may be in use by the serializer while
+			// the client thread is choosing, so use the live chunk there
+			Block block = (chunk != null ? chunk.getBlockState(pos) : snapshot.getBlockState(pos)).getBlock();
+
+			if (shouldImportBlockEntity(entityID, pos, block, oldNBT, snapshot, chunk)) {
+				returned.put(pos, oldNBT);
+			} else {
+				// Even if this tile entity is saved in another way
+				// later, we still want the player to know we did not
+				// import something in that chunk.
+				WDLMessages.chatMessageTranslated(
+						WDL.serverProps,
+						WDLMessageTypes.LOAD_TILE_ENTITY,
+						"wdl.messages.tileEntity.notImporting", entityID, pos);
 			}
-		} catch (Exception e) {
-			WDLMessages.chatMessageTranslated(WDL.serverProps,
-					WDLMessageTypes.ERROR,
-					"wdl.messages.generalError.failedToImportTE", chunk.x, chunk.z, e);
 		}
 		return returned;
 	}
@@ -365,16 +649,23 @@ public class WDLChunkLoader extends WDLChunkLoaderBase {
 	 * @param blockEntityNBT
 	 *            The full NBT tag of the existing block entity. May be used if
 	 *            further identification is needed.
+	 * @param snapshot
+	 *            The snapshot of the (current) chunk for which entities are
+	 *            being imported.
 	 * @param chunk
-	 *            The (current) chunk for which entities are being imported. May be used
-	 *            if further identification is needed (e.g. nearby blocks).
+	 *            The live chunk, given to extensions; if null, extensions are
+	 *            not asked.
 	 * @return <code>true</code> if that block entity should be imported.
 	 */
 	protected boolean shouldImportBlockEntity(String entityID, BlockPos pos,
-			Block block, NBTTagCompound blockEntityNBT, Chunk chunk) {
-		if (VersionedFunctions.shouldImportBlockEntity(entityID, pos, block, blockEntityNBT, chunk)) {
+			Block block, NBTTagCompound blockEntityNBT, ChunkSnapshot snapshot, @Nullable Chunk chunk) {
+		if (VersionedFunctions.shouldImportBlockEntity(entityID, pos, block, blockEntityNBT,
+				snapshot.existingTileEntities.get(pos))) {
 			return true;
 		}
+		if (chunk == null) {
+			return false;
+		}
 
 		for (ModInfo<ITileEntityImportationIdentifier> info : WDLApi
 				.getImplementingExtensions(ITileEntityImportationIdentifier.class)) {
@@ -412,4 +703,12 @@ public class WDLChunkLoader extends WDLChunkLoaderBase {
 			}
 		}
 	}
-}
\ No newline at end of file
+
+	@Override
+	public String toString() {
+		return "WDLChunkLoader [chunkSaveLocation=" + chunkSaveLocation
+				+ ", pendingSnapshots=" + pendingSnapshots.get()
+				+ ", importIndex=" + importIndex
+				+ ", regionWriter=" + regionWriter + "]";
+	}
+}
@@ -18,10 +18,8 @@ import java.io.File;
 import java.io.IOException;
 import java.lang.reflect.Method;
 import java.util.List;
-import java.util.Map;
-
-import org.apache.logging.log4j.LogManager;
-import org.apache.logging.log4j.Logger;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
 
 import net.minecraft.block.Block;
 import net.minecraft.nbt.NBTTagCompound;
@@ -31,7 +29,6 @@ import net.minecraft.util.math.ChunkPos;
 import net.minecraft.world.NextTickListEntry;
 import net.minecraft.world.World;
 import net.minecraft.world.chunk.Chunk;
-import net.minecraft.world.chunk.ChunkSection;
 import net.minecraft.world.chunk.NibbleArray;
 import net.minecraft.world.chunk.storage.AnvilChunkLoader;
 import net.minecraft.world.dimension.Dimension;
@@ -39,6 +36,8 @@ import net.minecraft.world.dimension.EndDimension;
 import net.minecraft.world.dimension.NetherDimension;
 import net.minecraft.world.storage.SaveHandler;
 import net.minecraft.world.storage.SessionLockException;
+import wdl.config.settings.MiscSettings;
+import wdl.io.RegionWriter;
 import wdl.versioned.VersionedFunctions;
 
 /**
@@ -49,8 +48,6 @@ import wdl.versioned.VersionedFunctions;
  */
 abstract class WDLChunkLoaderBase extends AnvilChunkLoader {
 
-	private static final Logger LOGGER = LogManager.getLogger();
-
 	/**
 	 * Gets the save folder for the given WorldProvider, respecting Forge's
 	 * dimension names if forge is present.
@@ -94,17 +91,21 @@ abstract class WDLChunkLoaderBase extends AnvilChunkLoader {
 	}
 
 	protected final WDL wdl;
-	protected final Map<ChunkPos, NBTTagCompound> chunksToSave;
 	protected final File chunkSaveLocation;
+	/**
+	 * Writes chunks to this dimension's region files.  Used instead of
+	 * {@link AnvilChunkLoader#addChunkToPending}, which goes through the single
+	 * global ThreadedFileIOBase thread.
+	 */
+	protected final RegionWriter regionWriter;
 
 	protected WDLChunkLoaderBase(WDL wdl, File file) {
 		super(file, null);
 		this.wdl = wdl;
-		@SuppressWarnings("unchecked")
-		Map<ChunkPos, NBTTagCompound> chunksToSave =
-				ReflectionUtils.findAndGetPrivateField(this, AnvilChunkLoader.class, VersionedFunctions.getChunksToSaveClass());
-		this.chunksToSave = chunksToSave;
 		this.chunkSaveLocation = file;
+		this.regionWriter = new RegionWriter(new File(file, "region"),
+				WDL.serverProps.getValue(MiscSettings.IO_THREADS),
+				WDL.serverProps.getValue(MiscSettings.PENDING_SAVE_MEMORY) * 1024L * 1024L);
 	}
 
 	/**
@@ -115,21 +116,126 @@ abstract class WDLChunkLoaderBase extends AnvilChunkLoader {
 	 */
 	@Override
 	public void saveChunk(World world, Chunk chunk) throws SessionLockException, IOException {
+		ChunkSnapshot snapshot = createSnapshot(world, chunk);
+
+		writeChunkNBT(chunk.getPos(), createChunkNBT(snapshot));
+
+		wdl.unloadChunk(chunk.getPos());
+	}
+
+	/**
+	 * Copies the data needed to save the given chunk. This must be called on
+	 * the client thread, as the chunk (and its entities and tile entities) may
+	 * otherwise be modified while they are being read.
+	 *
+	 * The snapshot includes WDL's manually saved entities and tile entities for
+	 * the chunk, so it is safe to call {@link WDL#unloadChunk} afterwards.
+	 *
+	 * @param world
+	 *            The world the chunk is in.
+	 * @param chunk
+	 *            The chunk to copy
+	 * @return A snapshot to pass to {@link #createChunkNBT(ChunkSnapshot)}.
+	 */
+	public ChunkSnapshot createSnapshot(World world, Chunk chunk) throws SessionLockException {
 		world.checkSessionLock();
 
-		NBTTagCompound levelTag = writeChunkToNBT(chunk, world);
+		ChunkSnapshot snapshot = new ChunkSnapshot(chunk, VersionedFunctions.hasSkyLight(world),
+				writeChunkToNBT(chunk, world));
+		snapshotTileEntities(chunk, snapshot);
+		return snapshot;
+	}
+
+	/**
+	 * Creates the full NBT tag for the given chunk snapshot, as it would be
+	 * written to the region file, without actually queuing it for writing.
+	 *
+	 * This does not modify the state of the chunk loader, and thus may be
+	 * called for several different chunks at once from any thread (see
+	 * {@link WDL#saveChunks}). The result must then be passed to
+	 * {@link #writeChunkNBT}.
+	 *
+	 * @param snapshot
+	 *            The snapshot of the chunk to write. Should not be reused.
+	 * @return The root tag for the chunk, including its data version.
+	 */
+	public NBTTagCompound createChunkNBT(ChunkSnapshot snapshot) {
+		NBTTagCompound levelTag = snapshot.levelTag;
+		levelTag.put("Sections", writeSections(snapshot));
+		levelTag.put("TileEntities", getTileEntityList(snapshot));
 
 		NBTTagCompound rootTag = new NBTTagCompound();
 		rootTag.put("Level", levelTag);
 		rootTag.putInt("DataVersion", VersionConstants.getDataVersion());
 
-		addChunkToPending(chunk.getPos(), rootTag);
+		return rootTag;
+	}
 
-		wdl.unloadChunk(chunk.getPos());
+	/**
+	 * Writes the sections copied into the given snapshot to NBT.
+	 */
+	private static NBTTagList writeSections(ChunkSnapshot snapshot) {
+		NBTTagList chunkSectionList = new NBTTagList();
+
+		for (ChunkSnapshot.Section section : snapshot.sections) {
+			if (section != null) {
+				NBTTagCompound sectionNBT = new NBTTagCompound();
+				sectionNBT.putByte("Y",
+						(byte) (section.y >> 4 & 255));
+				byte[] buffer = new byte[4096];
+				NibbleArray nibblearray = new NibbleArray();
+				NibbleArray nibblearray1 = section.getBlocks().getData()
+						.getDataForNBT(buffer, nibblearray);
+				sectionNBT.putByteArray("Blocks", buffer);
+				sectionNBT.putByteArray("Data", nibblearray.getData());
+
+				if (nibblearray1 != null) {
+					sectionNBT.putByteArray("Add", nibblearray1.getData());
+				}
+
+				sectionNBT.putByteArray("BlockLight", section.blockLight);
+				sectionNBT.putByteArray("SkyLight", section.skyLight != null ? section.skyLight
+						: SharedChunkArrays.getZeroLight(section.blockLight.length));
+
+				chunkSectionList.add(sectionNBT);
+			}
+		}
+
+		return chunkSectionList;
 	}
 
 	/**
-	 * Writes the given chunk, creating an NBT compound tag.
+	 * Queues a tag created by {@link #createChunkNBT} to be written to disk.
+	 *
+	 * @param pos
+	 *            The location of the chunk
+	 * @param rootTag
+	 *            The root tag for the chunk.
+	 * @return A future that completes once the chunk has been written.
+	 */
+	public CompletableFuture<Void> writeChunkNBT(ChunkPos pos, NBTTagCompound rootTag) {
+		CompletableFuture<Void> future = regionWriter.write(pos, rootTag);
+		future.whenComplete((result, ex) -> {
+			if (ex != null) {
+				WDLMessages.chatMessageTranslated(WDL.serverProps,
+						WDLMessageTypes.ERROR,
+						"wdl.messages.generalError.failedToSaveChunk", pos.x, pos.z, ex);
+			}
+		});
+		return future;
+	}
+
+	/**
+	 * Writes the given chunk, creating an NBT compound tag. Sections and tile
+	 * entities are not included; sections are copied into the
+	 * {@link ChunkSnapshot} and written by {@link #createChunkNBT}, and tile
+	 * entities are handled by {@link #snapshotTileEntities} and
+	 * {@link #getTileEntityList(ChunkSnapshot)}.
+	 *
+	 * Arrays are copied rather than shared with the chunk, so that the tag
+	 * remains valid if the chunk is modified later.  Arrays that are often the
+	 * same between chunks (single-biome chunks) come from
+	 * {@link SharedChunkArrays} instead.
 	 *
 	 * Note that this does <b>not</b> override the private method
 	 * {@link AnvilChunkLoader#writeChunkToNBT(Chunk, World, NBTCompoundTag)}.
@@ -149,65 +255,17 @@ abstract class WDLChunkLoaderBase extends AnvilChunkLoader {
 		compound.putInt("xPos", chunk.x);
 		compound.putInt("zPos", chunk.z);
 		compound.putLong("LastUpdate", world.getGameTime());
-		compound.putIntArray("HeightMap", chunk.getHeightMap());
+		compound.putIntArray("HeightMap", chunk.getHeightMap().clone());
 		compound.putBoolean("TerrainPopulated", true);  // We always want this
 		compound.putBoolean("LightPopulated", chunk.isLightPopulated());
 		compound.putLong("InhabitedTime", chunk.getInhabitedTime());
 
-		ChunkSection[] chunkSections = chunk.getSections();
-		NBTTagList chunkSectionList = new NBTTagList();
-		boolean hasSky = VersionedFunctions.hasSkyLight(world);
-
-		for (ChunkSection chunkSection : chunkSections) {
-			if (chunkSection != Chunk.EMPTY_SECTION) {
-				NBTTagCompound sectionNBT = new NBTTagCompound();
-				sectionNBT.putByte("Y",
-						(byte) (chunkSection.getYLocation() >> 4 & 255));
-				byte[] buffer = new byte[4096];
-				NibbleArray nibblearray = new NibbleArray();
-				NibbleArray nibblearray1 = chunkSection.getData()
-						.getDataForNBT(buffer, nibblearray);
-				sectionNBT.putByteArray("Blocks", buffer);
-				sectionNBT.putByteArray("Data", nibblearray.getData());
-
-				if (nibblearray1 != null) {
-					sectionNBT.putByteArray("Add", nibblearray1.getData());
-				}
-
-				NibbleArray blocklightArray = chunkSection.getBlockLight();
-				int lightArrayLen = blocklightArray.getData().length;
-				sectionNBT.putByteArray("BlockLight", blocklightArray.getData());
-
-				if (hasSky) {
-					NibbleArray skylightArray = chunkSection.getSkyLight();
-					if (skylightArray != null) {
-						sectionNBT.putByteArray("SkyLight", skylightArray.getData());
-					} else {
-						// Shouldn't happen, but if it does, handle it smoothly.
-						LOGGER.error("[WDL] Skylight array for chunk at " +
-								chunk.x + ", " + chunk.z +
-								" is null despite VersionedProperties " +
-								"saying it shouldn't be!");
-						sectionNBT.putByteArray("SkyLight", new byte[lightArrayLen]);
-					}
-				} else {
-					sectionNBT.putByteArray("SkyLight", new byte[lightArrayLen]);
-				}
-
-				chunkSectionList.add(sectionNBT);
-			}
-		}
-
-		compound.put("Sections", chunkSectionList);
-		compound.putByteArray("Biomes", chunk.getBiomeArray());
+		compound.putByteArray("Biomes", SharedChunkArrays.copyBiomes(chunk.getBiomeArray()));
 
 		chunk.setHasEntities(false);
 		NBTTagList entityList = getEntityList(chunk);
 		compound.put("Entities", entityList);
 
-		NBTTagList tileEntityList = getTileEntityList(chunk);
-		compound.put("TileEntities", tileEntityList);
-
 		List<NextTickListEntry> updateList = world.getPendingBlockUpdates(
 				chunk, false);
 		if (updateList != null) {
@@ -236,15 +294,40 @@ abstract class WDLChunkLoaderBase extends AnvilChunkLoader {
 	}
 
 	protected abstract NBTTagList getEntityList(Chunk chunk);
-	protected abstract NBTTagList getTileEntityList(Chunk chunk);
+	protected abstract void snapshotTileEntities(Chunk chunk, ChunkSnapshot snapshot);
+	protected abstract NBTTagList getTileEntityList(ChunkSnapshot snapshot);
 
 	/**
 	 * Gets a count of how many chunks there are that still need to be written to
-	 * disk. (Does not include any chunk that is currently being written to disk)
+	 * disk, including any chunk that is currently being written.
 	 *
 	 * @return The number of chunks that still need to be written to disk
 	 */
-	public synchronized int getNumPendingChunks() {
-		return this.chunksToSave.size();
+	public int getNumPendingChunks() {
+		return regionWriter.getNumPendingChunks();
+	}
+
+	/**
+	 * Gets the number of chunks that weren't written because they were
+	 * unchanged from the version already on disk.
+	 */
+	public int getNumElidedWrites() {
+		return regionWriter.getNumElidedWrites();
+	}
+
+	/**
+	 * Gets the number of chunks that were spilled to disk because too many
+	 * were waiting to be written.
+	 */
+	public long getNumSpilledChunks() {
+		return regionWriter.getNumSpilledChunks();
+	}
+
+	/**
+	 * Waits for all chunks queued by {@link #writeChunkNBT} to be written, and
+	 * closes the region files.
+	 */
+	public void flushRegionFiles() throws InterruptedException, ExecutionException {
+		regionWriter.flush();
 	}
 }
@@ -14,6 +14,9 @@
  */
 package wdl;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import javax.annotation.Nonnull;
 
 import net.minecraft.block.Block;
@@ -26,6 +29,7 @@ import net.minecraft.inventory.Container;
 import net.minecraft.inventory.ContainerChest;
 import net.minecraft.inventory.InventoryEnderChest;
 import net.minecraft.inventory.Slot;
+import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.profiler.Profiler;
 import net.minecraft.tileentity.TileEntity;
 import net.minecraft.tileentity.TileEntityEnderChest;
@@ -40,6 +44,7 @@ import wdl.api.IWorldLoadListener;
 import wdl.api.WDLApi;
 import wdl.api.WDLApi.ModInfo;
 import wdl.config.settings.GeneratorSettings;
+import wdl.config.settings.MiscSettings;
 import wdl.handler.HandlerException;
 import wdl.handler.block.BlockHandler;
 import wdl.handler.blockaction.BlockActionHandler;
@@ -118,7 +123,12 @@ public class WDLEvents {
 					WDL.serverProps,
 					WDLMessageTypes.ON_CHUNK_NO_LONGER_NEEDED,
 					"wdl.messages.onChunkNoLongerNeeded.saved", unneededChunk.x, unneededChunk.z);
-			wdl.saveChunk(unneededChunk);
+			// The unload save supersedes any pending autosave, which would
+			// otherwise run after WDL's data for the chunk has been freed
+			wdl.autosaveScheduler.remove(unneededChunk.getPos());
+			wdl.dirtyChunks.markClean(unneededChunk.getPos());
+			wdl.chunkSaveScheduler.enqueue(unneededChunk,
+					WDL.serverProps.getValue(MiscSettings.CHUNK_SAVE_BUDGET));
 		} else {
 			WDLMessages.chatMessageTranslated(
 					WDL.serverProps,
@@ -127,6 +137,29 @@ public class WDLEvents {
 		}
 	}
 
+	/**
+	 * Must be called when the server sends the full contents of a chunk,
+	 * before the new chunk is loaded.
+	 */
+	public static void onChunkDataReceived(ChunkPos pos) {
+		if (!WDL.downloading) { return; }
+
+		// If an earlier version of the chunk is still waiting to be saved, it
+		// needs to be saved before WDL starts collecting data for the new one.
+		wdl.chunkSaveScheduler.flush(pos);
+		onChunkChanged(pos);
+	}
+
+	/**
+	 * Must be called when the server sends the contents of a chunk or changes
+	 * blocks in it.
+	 */
+	public static void onChunkChanged(ChunkPos pos) {
+		if (!WDL.downloading) { return; }
+
+		wdl.dirtyChunks.markDirty(pos);
+	}
+
 	/**
 	 * Must be called when a GUI that receives item stacks from the server is
 	 * shown.
@@ -371,8 +404,23 @@ public class WDLEvents {
 						WDLMessageTypes.REMOVE_ENTITY,
 						"wdl.messages.removeEntity.savingDistance", entity,
 						entity.getPositionVector().toString(), wdl.player.getPositionVector(), threshold, serverViewDistance);
-				wdl.newEntities.put(new ChunkPos(entity.chunkCoordX,
-						entity.chunkCoordZ), entity);
+				if (!WDLChunkLoader.shouldSaveEntity(entity)) {
+					return;
+				}
+				// Written now, rather than when the chunk is saved, so that
+				// the entity object itself can be freed
+				NBTTagCompound entityData = WDLChunkLoader.writeRemovedEntity(entity,
+						entity.chunkCoordX, entity.chunkCoordZ);
+				if (entityData != null) {
+					long key = ChunkPos.asLong(entity.chunkCoordX, entity.chunkCoordZ);
+					List<NBTTagCompound> list = wdl.newEntities.get(key);
+					if (list == null) {
+						list = new ArrayList<>();
+						wdl.newEntities.put(key, list);
+					}
+					list.add(entityData);
+					wdl.dirtyChunks.markDirty(new ChunkPos(entity.chunkCoordX, entity.chunkCoordZ));
+				}
 			} else {
 				WDLMessages.chatMessageTranslated(
 						WDL.serverProps,
@@ -37,12 +37,16 @@ import net.minecraft.crash.CrashReport;
 import net.minecraft.entity.Entity;
 import net.minecraft.inventory.Container;
 import net.minecraft.network.play.server.SPacketBlockAction;
+import net.minecraft.network.play.server.SPacketBlockChange;
 import net.minecraft.network.play.server.SPacketChat;
+import net.minecraft.network.play.server.SPacketChunkData;
 import net.minecraft.network.play.server.SPacketCustomPayload;
 import net.minecraft.network.play.server.SPacketMaps;
+import net.minecraft.network.play.server.SPacketMultiBlockChange;
 import net.minecraft.network.play.server.SPacketUnloadChunk;
 import net.minecraft.profiler.Profiler;
 import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
 import net.minecraft.util.text.ITextComponent;
 import net.minecraft.world.chunk.Chunk;
 import net.minecraft.world.storage.MapData;
@@ -52,6 +56,7 @@ import wdl.api.IGuiHooksListener;
 import wdl.api.IPluginChannelListener;
 import wdl.api.WDLApi;
 import wdl.api.WDLApi.ModInfo;
+import wdl.config.settings.MiscSettings;
 import wdl.gui.GuiTurningCameraBase;
 import wdl.gui.GuiWDL;
 import wdl.gui.GuiWDLAbout;
@@ -181,6 +186,19 @@ public class WDLHooks {
 					}
 				}
 				if (ENABLE_PROFILER) PROFILER.endSection();  // "inventoryCheck"
+
+				if (ENABLE_PROFILER) PROFILER.startSection("chunkSaves");
+				if (WDL.downloading && wdl.player != null && !wdl.chunkLoader.isBacklogged()) {
+					wdl.chunkSaveScheduler.tick(wdl.player.posX, wdl.player.posZ,
+							WDL.serverProps.getValue(MiscSettings.CHUNK_SAVE_BUDGET));
+				}
+				if (ENABLE_PROFILER) PROFILER.endSection();  // "chunkSaves"
+
+				if (ENABLE_PROFILER) PROFILER.startSection("autosave");
+				if (WDL.downloading && wdl.player != null) {
+					wdl.tickAutosave();
+				}
+				if (ENABLE_PROFILER) PROFILER.endSection();  // "autosave"
 			}
 
 			if (ENABLE_PROFILER) PROFILER.startSection("camera");
@@ -255,6 +273,81 @@ public class WDLHooks {
 		}
 	}
 
+	/**
+	 * Called when {@link NetHandlerPlayClient#handleChunkData(SPacketChunkData)} is called.
+	 * <br/>
+	 * Should be at the start of the method.
+	 */
+	public static void onNHPCHandleChunkData(NetHandlerPlayClient sender,
+			SPacketChunkData packet) {
+		INSTANCE.onNHPCHandleChunkData0(sender, packet);
+	}
+	protected void onNHPCHandleChunkData0(NetHandlerPlayClient sender,
+			SPacketChunkData packet) {
+		try {
+			if (!Minecraft.getInstance().isCallingFromMinecraftThread()) {
+				return;
+			}
+
+			if (!WDL.downloading) { return; }
+
+			WDLEvents.onChunkDataReceived(new ChunkPos(packet.getChunkX(), packet.getChunkZ()));
+		} catch (Throwable e) {
+			WDL.crashed(e, "WDL mod: exception in onNHPCHandleChunkData event");
+		}
+	}
+
+	/**
+	 * Called when {@link NetHandlerPlayClient#handleBlockChange(SPacketBlockChange)} is called.
+	 * <br/>
+	 * Should be at the start of the method.
+	 */
+	public static void onNHPCHandleBlockChange(NetHandlerPlayClient sender,
+			SPacketBlockChange packet) {
+		INSTANCE.onNHPCHandleBlockChange0(sender, packet);
+	}
+	protected void onNHPCHandleBlockChange0(NetHandlerPlayClient sender,
+			SPacketBlockChange packet) {
+		try {
+			if (!Minecraft.getInstance().isCallingFromMinecraftThread()) {
+				return;
+			}
+
+			if (!WDL.downloading) { return; }
+
+			WDLEvents.onChunkChanged(new ChunkPos(packet.getPos()));
+		} catch (Throwable e) {
+			WDL.crashed(e, "WDL mod: exception in onNHPCHandleBlockChange event");
+		}
+	}
+
+	/**
+	 * Called when {@link NetHandlerPlayClient#handleMultiBlockChange(SPacketMultiBlockChange)} is called.
+	 * <br/>
+	 * Should be at the start of the method.
+	 */
+	public static void onNHPCHandleMultiBlockChange(NetHandlerPlayClient sender,
+			SPacketMultiBlockChange packet) {
+		INSTANCE.onNHPCHandleMultiBlockChange0(sender, packet);
+	}
+	protected void onNHPCHandleMultiBlockChange0(NetHandlerPlayClient sender,
+			SPacketMultiBlockChange packet) {
+		try {
+			if (!Minecraft.getInstance().isCallingFromMinecraftThread()) {
+				return;
+			}
+
+			if (!WDL.downloading) { return; }
+
+			// All of the changed blocks are in the same chunk
+			if (packet.getChangedBlocks().length > 0) {
+				WDLEvents.onChunkChanged(new ChunkPos(packet.getChangedBlocks()[0].getPos()));
+			}
+		} catch (Throwable e) {
+			WDL.crashed(e, "WDL mod: exception in onNHPCHandleMultiBlockChange event");
+		}
+	}
+
 	/**
 	 * Called when {@link NetHandlerPlayClient#handleChat(SPacketChat)} is
 	 * called.
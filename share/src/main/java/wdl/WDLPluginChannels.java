@@ -156,6 +156,63 @@ public class WDLPluginChannels {
 	 * Chunk overrides. Any chunk within a range is allowed to be downloaded in.
 	 */
 	private static Map<String, Multimap<String, ChunkRange>> chunkOverrides = new HashMap<>();
+	/**
+	 * All ranges in {@link #chunkOverrides}, indexed for lookups.  Rebuilt
+	 * whenever the server changes them.
+	 */
+	private static ChunkOverrideIndex chunkOverrideIndex = ChunkOverrideIndex.EMPTY;
+
+	/**
+	 * What can currently be saved, as an immutable snapshot of the values
+	 * above.  The checks made for every chunk and entity only read this, and
+	 * it is recomputed whenever a control packet arrives.
+	 */
+	private static final class SavePolicy {
+		final boolean canUseFunctionsUnknownToServer;
+		final boolean canDownloadInGeneral;
+		final boolean canSaveEntities;
+		final boolean canSaveTileEntities;
+		final boolean canSaveContainers;
+		final boolean canSaveMaps;
+		/** Maximum distance from the player of chunks that can be saved, or -1 if unlimited. */
+		final int saveRadius;
+		final ChunkOverrideIndex overrides;
+		final boolean hasChunkOverrides;
+
+		SavePolicy() {
+			boolean unknown = receivedPackets.contains(0) ? WDLPluginChannels.canUseFunctionsUnknownToServer : true;
+			boolean packet1 = receivedPackets.contains(1);
+
+			this.canUseFunctionsUnknownToServer = unknown;
+			this.canDownloadInGeneral = packet1 ? WDLPluginChannels.canDownloadInGeneral : unknown;
+			this.canSaveEntities = canDownloadInGeneral
+					&& (packet1 ? WDLPluginChannels.canSaveEntities : unknown);
+			this.canSaveTileEntities = canDownloadInGeneral
+					&& (packet1 ? WDLPluginChannels.canSaveTileEntities : unknown);
+			this.canSaveContainers = canSaveTileEntities
+					&& (packet1 ? WDLPluginChannels.canSaveContainers : unknown);
+			//TODO: Better value than 'canSaveTileEntities'.
+			this.canSaveMaps = canSaveTileEntities;
+			this.saveRadius = (packet1 && !canCacheChunks && WDLPluginChannels.saveRadius >= 0)
+					? WDLPluginChannels.saveRadius : -1;
+			this.overrides = chunkOverrideIndex;
+			// XXX It's possible that some implementations may not send
+			// packet 4, but still send ranges. If so, that may lead to issues.
+			// But right now, I'm not checking that.
+			this.hasChunkOverrides = receivedPackets.contains(4) && !chunkOverrideIndex.isEmpty();
+		}
+
+		@Override
+		public String toString() {
+			return "SavePolicy [canUseFunctionsUnknownToServer=" + canUseFunctionsUnknownToServer
+					+ ", canDownloadInGeneral=" + canDownloadInGeneral + ", canSaveEntities="
+					+ canSaveEntities + ", canSaveTileEntities=" + canSaveTileEntities
+					+ ", canSaveContainers=" + canSaveContainers + ", saveRadius=" + saveRadius
+					+ ", overrides=" + overrides + "]";
+		}
+	}
+
+	private static volatile SavePolicy policy = new SavePolicy();
 
 	/**
 	 * Active permission requests.
@@ -183,11 +240,7 @@ public class WDLPluginChannels {
 	 * Checks whether players can use functions unknown to the server.
 	 */
 	public static boolean canUseFunctionsUnknownToServer() {
-		if (receivedPackets.contains(0)) {
-			return canUseFunctionsUnknownToServer;
-		} else {
-			return true;
-		}
+		return policy.canUseFunctionsUnknownToServer;
 	}
 
 	/**
@@ -208,11 +261,7 @@ public class WDLPluginChannels {
 	 * overridden chunks).
 	 */
 	public static boolean canDownloadInGeneral() {
-		if (receivedPackets.contains(1)) {
-			return canDownloadInGeneral;
-		} else {
-			return canUseFunctionsUnknownToServer();
-		}
+		return policy.canDownloadInGeneral;
 	}
 
 	/**
@@ -220,157 +269,108 @@ public class WDLPluginChannels {
 	 * (and chunk caching is disabled).
 	 */
 	public static boolean canSaveChunk(Chunk chunk) {
-		if (isChunkOverridden(chunk)) {
+		SavePolicy policy = WDLPluginChannels.policy;
+		if (policy.overrides.contains(chunk.x, chunk.z)) {
 			return true;
 		}
 
-		if (!canDownloadInGeneral()) {
+		if (!policy.canDownloadInGeneral) {
 			return false;
 		}
 
-		if (receivedPackets.contains(1)) {
-			if (!canCacheChunks && saveRadius >= 0) {
-				int distanceX = chunk.x - WDL.INSTANCE.player.chunkCoordX;
-				int distanceZ = chunk.z - WDL.INSTANCE.player.chunkCoordZ;
+		if (policy.saveRadius >= 0) {
+			int distanceX = chunk.x - WDL.INSTANCE.player.chunkCoordX;
+			int distanceZ = chunk.z - WDL.INSTANCE.player.chunkCoordZ;
 
-				if (Math.abs(distanceX) > saveRadius ||
-						Math.abs(distanceZ) > saveRadius) {
-					return false;
-				}
+			if (Math.abs(distanceX) > policy.saveRadius ||
+					Math.abs(distanceZ) > policy.saveRadius) {
+				return false;
 			}
-
-			return true;
-		} else {
-			return canUseFunctionsUnknownToServer();
 		}
+
+		return true;
 	}
 
 	/**
 	 * Checks whether entities are allowed to be saved.
 	 */
 	public static boolean canSaveEntities() {
-		if (!canDownloadInGeneral()) {
-			return false;
-		}
-
-		if (receivedPackets.contains(1)) {
-			return canSaveEntities;
-		} else {
-			return canUseFunctionsUnknownToServer();
-		}
+		return policy.canSaveEntities;
 	}
 
 	/**
 	 * Checks whether entities are allowed to be saved in the given chunk.
 	 */
 	public static boolean canSaveEntities(Chunk chunk) {
-		if (isChunkOverridden(chunk)) {
-			return true;
+		if (chunk == null) {
+			return canSaveEntities();
 		}
-
-		return canSaveEntities();
+		return canSaveEntities(chunk.x, chunk.z);
 	}
 
 	/**
 	 * Checks whether entities are allowed to be saved in the given chunk.
 	 */
 	public static boolean canSaveEntities(int chunkX, int chunkZ) {
-		if (isChunkOverridden(chunkX, chunkZ)) {
-			return true;
-		}
-
-		return canSaveEntities();
+		SavePolicy policy = WDLPluginChannels.policy;
+		return policy.canSaveEntities || policy.overrides.contains(chunkX, chunkZ);
 	}
 
 	/**
 	 * Checks whether a player can save tile entities.
 	 */
 	public static boolean canSaveTileEntities() {
-		if (!canDownloadInGeneral()) {
-			return false;
-		}
-
-		if (receivedPackets.contains(1)) {
-			return canSaveTileEntities;
-		} else {
-			return canUseFunctionsUnknownToServer();
-		}
+		return policy.canSaveTileEntities;
 	}
 
 	/**
 	 * Checks whether a player can save tile entities in the given chunk.
 	 */
 	public static boolean canSaveTileEntities(Chunk chunk) {
-		if (isChunkOverridden(chunk)) {
-			return true;
+		if (chunk == null) {
+			return canSaveTileEntities();
 		}
-
-		return canSaveTileEntities();
+		return canSaveTileEntities(chunk.x, chunk.z);
 	}
 
 	/**
 	 * Checks whether a player can save tile entities in the given chunk.
 	 */
 	public static boolean canSaveTileEntities(int chunkX, int chunkZ) {
-		if (isChunkOverridden(chunkX, chunkZ)) {
-			return true;
-		}
-
-		return canSaveTileEntities();
+		SavePolicy policy = WDLPluginChannels.policy;
+		return policy.canSaveTileEntities || policy.overrides.contains(chunkX, chunkZ);
 	}
 
 	/**
 	 * Checks whether containers (such as chests) can be saved.
 	 */
 	public static boolean canSaveContainers() {
-		if (!canDownloadInGeneral()) {
-			return false;
-		}
-		if (!canSaveTileEntities()) {
-			return false;
-		}
-		if (receivedPackets.contains(1)) {
-			return canSaveContainers;
-		} else {
-			return canUseFunctionsUnknownToServer();
-		}
+		return policy.canSaveContainers;
 	}
 
 	/**
 	 * Checks whether containers (such as chests) can be saved.
 	 */
 	public static boolean canSaveContainers(Chunk chunk) {
-		if (isChunkOverridden(chunk)) {
-			return true;
+		if (chunk == null) {
+			return canSaveContainers();
 		}
-
-		return canSaveContainers();
+		return canSaveContainers(chunk.x, chunk.z);
 	}
 
 	/**
 	 * Checks whether containers (such as chests) can be saved.
 	 */
 	public static boolean canSaveContainers(int chunkX, int chunkZ) {
-		if (isChunkOverridden(chunkX, chunkZ)) {
-			return true;
-		}
-
-		return canSaveContainers();
+		SavePolicy policy = WDLPluginChannels.policy;
+		return policy.canSaveContainers || policy.overrides.contains(chunkX, chunkZ);
 	}
 
 	/**
 	 * Checks whether maps (the map item, not the world itself) can be saved.
 	 */
 	public static boolean canSaveMaps() {
-		if (!canDownloadInGeneral()) {
-			return false;
-		}
-		//TODO: Better value than 'canSaveTileEntities'.
-		if (receivedPackets.contains(1)) {
-			return canSaveTileEntities;
-		} else {
-			return canUseFunctionsUnknownToServer();
-		}
+		return policy.canSaveMaps;
 	}
 
 	/**
@@ -470,39 +470,26 @@ public class WDLPluginChannels {
 	 * Is the given chunk location part of a chunk override?
 	 */
 	public static boolean isChunkOverridden(int x, int z) {
+		return policy.overrides.contains(x, z);
+	}
+
+	/**
+	 * Rebuilds {@link #chunkOverrideIndex} after {@link #chunkOverrides} changes.
+	 */
+	private static void updateChunkOverrideIndex() {
+		List<ChunkRange> ranges = new ArrayList<>();
 		for (Multimap<String, ChunkRange> map : chunkOverrides.values()) {
-			for (ChunkRange range : map.values()) {
-				if (x >= range.x1 &&
-						x <= range.x2 &&
-						z >= range.z1 &&
-						z <= range.z2) {
-					return true;
-				}
-			}
+			ranges.addAll(map.values());
 		}
-
-		return false;
+		chunkOverrideIndex = new ChunkOverrideIndex(ranges);
+		policy = new SavePolicy();
 	}
 
 	/**
 	 * Are there any chunk overrides present?
 	 */
 	public static boolean hasChunkOverrides() {
-		if (!receivedPackets.contains(4)) {
-			// XXX It's possible that some implementations may not send
-			// packet 4, but still send ranges. If so, that may lead to issues.
-			// But right now, I'm not checking that.
-			return false;
-		}
-		if (chunkOverrides == null || chunkOverrides.isEmpty()) {
-			return false;
-		}
-		for (Multimap<String, ChunkRange> m : chunkOverrides.values()) {
-			if (!m.isEmpty()) {
-				return true;
-			}
-		}
-		return false;
+		return policy.hasChunkOverrides;
 	}
 
 	/**
@@ -523,6 +510,13 @@ public class WDLPluginChannels {
 		return ImmutableMap.copyOf(returned);
 	}
 
+	/**
+	 * Gets the chunk overrides that overlap the given area (inclusive).
+	 */
+	public static List<ChunkRange> getChunkOverridesInArea(int minX, int minZ, int maxX, int maxZ) {
+		return policy.overrides.getRangesInArea(minX, minZ, maxX, maxZ);
+	}
+
 	/**
 	 * Create a new permission request.
 	 * @param key The key for the request.
@@ -715,6 +709,8 @@ public class WDLPluginChannels {
 		chunkOverrideRequests = new ArrayList<>();
 
 		canUseFunctionsUnknownToServer = true;
+		policy = new SavePolicy();
+		EntityUtils.invalidateEntityPolicy();
 
 		WDLMessages.chatMessageTranslated(
 				WDL.serverProps,
@@ -799,6 +795,8 @@ public class WDLPluginChannels {
 				canSaveEntities = input.readBoolean();
 				canSaveTileEntities = input.readBoolean();
 				canSaveContainers = input.readBoolean();
+				// Before anything below checks the new permissions
+				policy = new SavePolicy();
 
 				WDLMessages.chatMessageTranslated(
 						WDL.serverProps,
@@ -865,6 +863,7 @@ public class WDLPluginChannels {
 
 					totalRanges += groupSize;
 				}
+				updateChunkOverrideIndex();
 
 				WDLMessages.chatMessageTranslated(
 						WDL.serverProps,
@@ -889,6 +888,7 @@ public class WDLPluginChannels {
 					newRanges.put(range.tag, range);
 				}
 				chunkOverrides.put(groupToEdit, newRanges);
+				updateChunkOverrideIndex();
 
 				if (replaceGroups) {
 					WDLMessages.chatMessageTranslated(
@@ -917,6 +917,7 @@ public class WDLPluginChannels {
 							.get(tag).size();
 					chunkOverrides.get(groupToChangeTagsFor).removeAll(tag);
 				}
+				updateChunkOverrideIndex();
 
 				WDLMessages.chatMessageTranslated(
 						WDL.serverProps,
@@ -938,6 +939,7 @@ public class WDLPluginChannels {
 					chunkOverrides.get(groupToSetTagFor).put(tag,
 							ChunkRange.readFromInput(input));
 				}
+				updateChunkOverrideIndex();
 
 				WDLMessages.chatMessageTranslated(
 						WDL.serverProps,
@@ -953,6 +955,10 @@ public class WDLPluginChannels {
 		} catch (Exception ex) {
 			WDLMessages.chatMessageTranslated(WDL.serverProps, WDLMessageTypes.PLUGIN_CHANNEL_MESSAGE,
 					"wdl.messages.permissions.badPacket", ex);
+		} finally {
+			policy = new SavePolicy();
+			// Entity ranges may have changed
+			EntityUtils.invalidateEntityPolicy();
 		}
 	}
 
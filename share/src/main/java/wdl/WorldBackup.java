@@ -42,6 +42,7 @@ import org.apache.commons.io.IOUtils;
 
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.resources.I18n;
+import wdl.io.Compression;
 import wdl.versioned.VersionedFunctions;
 
 /**
@@ -304,6 +305,7 @@ public class WorldBackup {
 
 		try (FileOutputStream outStream = new FileOutputStream(destination)) {
 			try (ZipOutputStream stream = new ZipOutputStream(outStream)) {
+				stream.setLevel(Compression.getLevel());
 				zipFolder(src, stream, src.getPath().length() + 1, monitor);
 			}
 		}
@@ -30,6 +30,7 @@ import net.minecraft.util.text.ITextComponent;
 import net.minecraft.util.text.TextComponentString;
 import net.minecraft.util.text.TextComponentTranslation;
 import wdl.EntityRealigner;
+import wdl.EntityUtils;
 import wdl.HologramHandler;
 import wdl.MessageTypeCategory;
 import wdl.VersionConstants;
@@ -100,6 +101,7 @@ class APIImpl implements WDLApi.APIInstance {
 		}
 
 		wdlMods.put(id, info);
+		EntityUtils.invalidateEntityManagers();
 
 		// IMessageAdder doesn't seem possible to do dynamically
 		if (mod instanceof IMessageTypeAdder) {
@@ -219,6 +221,7 @@ class APIImpl implements WDLApi.APIInstance {
 		if (wdlMods.containsKey(modID)) {
 			WDL.globalProps.setValue(wdlMods.get(modID).enabledSetting, enabled);
 			WDL.saveGlobalProps();
+			EntityUtils.invalidateEntityManagers();
 		}
 	}
 
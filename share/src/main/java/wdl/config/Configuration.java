@@ -18,9 +18,15 @@ import java.io.File;
 import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.annotation.CheckForSigned;
 import javax.annotation.Nonnegative;
@@ -33,6 +39,10 @@ import net.minecraft.crash.CrashReportCategory;
 /**
  * An implementation of {@link IConfiguration} that is backed by a
  * {@link Properties} object.
+ *
+ * Values read through {@link #getValue(Setting)} are cached, along with the
+ * {@linkplain #getVersion() version} they were read at; a change here or in a
+ * parent changes the version, so stale values are never returned.
  */
 public class Configuration implements IConfiguration {
 	private static final Logger LOGGER = LogManager.getLogger();
@@ -40,14 +50,107 @@ public class Configuration implements IConfiguration {
 	private final IConfiguration parent;
 	private final Properties properties;
 
+	/** Number of changes made to this configuration (not its parents). */
+	private final AtomicLong modCount = new AtomicLong();
+	private final Map<Setting<?>, CachedValue> cache = new ConcurrentHashMap<>();
+	private final List<Runnable> listeners = new CopyOnWriteArrayList<>();
+	/**
+	 * Configurations that use this one as a parent, to be notified of changes.
+	 * Weak, so that e.g. old server configurations can still be collected.
+	 */
+	private final List<WeakReference<Configuration>> children = new CopyOnWriteArrayList<>();
+
+	private static class CachedValue {
+		public final long version;
+		public final Object value;
+
+		public CachedValue(long version, Object value) {
+			this.version = version;
+			this.value = value;
+		}
+	}
+
 	public Configuration(IConfiguration parent) {
 		this.parent = parent;
 		this.properties = new Properties();
+		if (parent instanceof Configuration) {
+			((Configuration) parent).addChild(this);
+		}
+	}
+
+	private void addChild(Configuration child) {
+		children.removeIf(ref -> ref.get() == null);
+		children.add(new WeakReference<>(child));
+	}
+
+	/**
+	 * Records that something in this configuration changed, and notifies
+	 * listeners here and on all children.
+	 */
+	private void onChanged() {
+		modCount.incrementAndGet();
+		notifyListeners();
+	}
+
+	private void notifyListeners() {
+		for (Runnable listener : listeners) {
+			listener.run();
+		}
+		for (WeakReference<Configuration> ref : children) {
+			Configuration child = ref.get();
+			if (child != null) {
+				child.notifyListeners();
+			}
+		}
+	}
+
+	/**
+	 * Sets a property, recording a change if the value is different.
+	 */
+	private void setProperty(String key, String value) {
+		Object old = this.properties.setProperty(key, value);
+		if (!value.equals(old)) {
+			onChanged();
+		}
+	}
+
+	@Override
+	public long getVersion() {
+		// Each count only goes up, so the sum changes whenever any of them do
+		return modCount.get() + parent.getVersion();
+	}
+
+	@Override
+	public void addChangeListener(Runnable listener) {
+		listeners.add(Objects.requireNonNull(listener));
+	}
+
+	@Override
+	public void removeChangeListener(Runnable listener) {
+		listeners.remove(listener);
 	}
 
 	@Override
 	public <T> void setValue(Setting<T> setting, T value) {
-		this.properties.setProperty(setting.getConfigurationKey(), setting.serializeToString(value));
+		setProperty(setting.getConfigurationKey(), setting.serializeToString(value));
+	}
+
+	@Override
+	@SuppressWarnings("unchecked")
+	public <T> T getValue(Setting<T> setting) {
+		if (!setting.isCacheable()) {
+			return getValue(setting, this);
+		}
+		// Read the version first, so that a change made while the value is being
+		// computed leaves the cached value out of date rather than wrong
+		long version = getVersion();
+		CachedValue cached = cache.get(setting);
+		if (cached != null && cached.version == version) {
+			return (T) cached.value;
+		}
+		T value = getValue(setting, this);
+		cache.put(setting, new CachedValue(version, value));
+		return value;
 	}
 
 	@Override
@@ -76,7 +179,9 @@ public class Configuration implements IConfiguration {
 
 	@Override
 	public <T> void clearValue(Setting<T> setting) {
-		this.properties.remove(setting.getConfigurationKey());
+		if (this.properties.remove(setting.getConfigurationKey()) != null) {
+			onChanged();
+		}
 	}
 
 	@Override
@@ -84,6 +189,7 @@ public class Configuration implements IConfiguration {
 		try (FileReader reader = new FileReader(file)) {
 			this.properties.load(reader);
 		}
+		onChanged();
 	}
 
 	@Override
@@ -129,7 +235,7 @@ public class Configuration implements IConfiguration {
 	public void setUserEntityTrackDistance(String entityType, @Nonnegative int value) {
 		assert value >= 0;
 		String key = ENTITY_TRACK_PREFIX + entityType + ENTITY_TRACK_SUFFIX;
-		this.properties.setProperty(key, Integer.toString(value));
+		setProperty(key, Integer.toString(value));
 	}
 
 	private static final String ENTITY_TYPE_PREFIX = "Entity.", ENTITY_TYPE_SUFFIX = ".Enabled";
@@ -147,7 +253,7 @@ public class Configuration implements IConfiguration {
 	@Override
 	public void setEntityTypeEnabled(String entityType, boolean value) {
 		String key = ENTITY_TYPE_PREFIX + entityType + ENTITY_TYPE_SUFFIX;
-		this.properties.setProperty(key, Boolean.toString(value));
+		setProperty(key, Boolean.toString(value));
 	}
 
 	private static final String ENTITY_GROUP_PREFIX = "EntityGroup.", ENTITY_GROUP_SUFFIX = ".Enabled";
@@ -164,7 +270,7 @@ public class Configuration implements IConfiguration {
 	@Override
 	public void setEntityGroupEnabled(String entityGroup, boolean value) {
 		String key = ENTITY_GROUP_PREFIX + entityGroup + ENTITY_GROUP_SUFFIX;
-		this.properties.setProperty(key, Boolean.toString(value));
+		setProperty(key, Boolean.toString(value));
 	}
 
 	// Things to definitely get rid of - smelly
@@ -172,5 +278,6 @@ public class Configuration implements IConfiguration {
 	@Deprecated
 	public void putAll(Configuration conf) {
 		this.properties.putAll(conf.properties);
+		onChanged();
 	}
 }
@@ -44,6 +44,20 @@ public class DefaultConfiguration implements IConfiguration {
 		throw new UnsupportedOperationException("Cannot clear settings on the default configuration (" + setting + ")");
 	}
 
+	@Override
+	public long getVersion() {
+		// Never changes
+		return 0;
+	}
+
+	@Override
+	public void addChangeListener(Runnable listener) {
+		// Never changes, so there's nothing to listen to
+	}
+
+	@Override
+	public void removeChangeListener(Runnable listener) { }
+
 	@Override
 	public void addToCrashReport(CrashReportCategory category, String name) {
 		category.addDetail("-", "Default config (" + name + ")");
@@ -67,6 +67,29 @@ public interface IConfiguration {
 	 */
 	public abstract <T> void clearValue(Setting<T> setting);
 
+	/**
+	 * Gets a stamp that changes whenever anything in this configuration or one
+	 * of its parents changes.  Data derived from the configuration can remember
+	 * the stamp it was built with to check whether it is out of date.
+	 */
+	public abstract long getVersion();
+
+	/**
+	 * Adds a listener that is run whenever anything in this configuration or
+	 * one of its parents changes.  Setting a value to what it already was does
+	 * not count as a change.
+	 *
+	 * @param listener The listener to add.
+	 */
+	public abstract void addChangeListener(Runnable listener);
+
+	/**
+	 * Removes a listener added by {@link #addChangeListener}.
+	 *
+	 * @param listener The listener to remove.
+	 */
+	public abstract void removeChangeListener(Runnable listener);
+
 	// These methods exist partially because they can change a Setting<?> to a
 	// Setting<T> so that the type from getValue is still the type of the setting
 	// (useful for e.g. SettingButton)
@@ -58,4 +58,15 @@ public interface Setting<T> {
 	public default Optional<T> overrideFromContext(IConfiguration context) {
 		return Optional.empty();
 	}
+
+	/**
+	 * Checks whether the value of this setting only depends on the
+	 * configuration, so that it can be cached until the configuration changes.
+	 *
+	 * Settings whose default or override depends on anything else (such as the
+	 * current server) must return false.
+	 */
+	public default boolean isCacheable() {
+		return true;
+	}
 }
@@ -96,6 +96,12 @@ public final class EntitySettings {
 			}
 		}
 
+		@Override
+		public boolean isCacheable() {
+			// The default depends on the server
+			return false;
+		}
+
 		@Override
 		public TrackDistanceMode cycle(TrackDistanceMode value) {
 			if (value == TrackDistanceMode.DEFAULT) {
@@ -20,6 +20,7 @@ import wdl.WDL;
 import wdl.WorldBackup.WorldBackupType;
 import wdl.config.BaseSetting;
 import wdl.config.IConfiguration;
+import wdl.config.IntSetting;
 import wdl.config.Setting;
 import wdl.config.StringSetting;
 
@@ -66,6 +67,12 @@ public final class MiscSettings {
 		public String getDefault(IConfiguration context) {
 			return WDL.INSTANCE.getServerName();
 		}
+
+		@Override
+		public boolean isCacheable() {
+			// The default depends on the server
+			return false;
+		}
 	}
 
 	// Backup
@@ -76,6 +83,52 @@ public final class MiscSettings {
 	public static final StringSetting BACKUP_EXTENSION  =
 			new StringSetting("BackupExtension", "7z");
 
+	// Saving
+	/**
+	 * Number of threads used to create chunk NBT when saving all loaded chunks.
+	 * 1 (the default) saves chunks serially on the save thread.
+	 */
+	public static final IntSetting SAVE_THREADS =
+			new IntSetting("SaveThreads", 1);
+	/**
+	 * Milliseconds per tick that may be spent saving chunks that were unloaded
+	 * while downloading.  0 saves chunks as soon as they are unloaded.
+	 */
+	public static final IntSetting CHUNK_SAVE_BUDGET =
+			new IntSetting("ChunkSaveBudget", 5);
+	/**
+	 * Number of threads used to compress and write region files.  Each region
+	 * file is always handled by the same thread.
+	 */
+	public static final IntSetting IO_THREADS =
+			new IntSetting("IOThreads", 2);
+	/**
+	 * Megabytes of chunk data that may wait in memory to be written.  Past
+	 * this, chunks are compressed and spilled to a temporary file, and chunks
+	 * that were unloaded wait to be saved until the writers catch up.  0 uses
+	 * the default.
+	 */
+	public static final IntSetting PENDING_SAVE_MEMORY =
+			new IntSetting("PendingSaveMemory", 64);
+	/**
+	 * Compression level used for region files, level.dat, player data and
+	 * maps, from 1 (fastest) to 9 (smallest).
+	 */
+	public static final IntSetting COMPRESSION_LEVEL =
+			new IntSetting("CompressionLevel", 6);
+	/**
+	 * Seconds between autosaves of loaded chunks that have changed while
+	 * downloading.  0 disables autosaving.
+	 */
+	public static final IntSetting AUTOSAVE_INTERVAL =
+			new IntSetting("AutosaveInterval", 300);
+	/**
+	 * Whether tile entities saved manually (such as opened chests) are kept
+	 * compressed in memory until their chunk is saved.
+	 */
+	public static final Setting<Boolean> COMPRESS_CAPTURED_TILE_ENTITIES =
+			new BaseSetting<>("CompressTileEntities", true, Boolean::valueOf, Object::toString);
+
 	// Update checker
 	public static final Setting<Boolean> TUTORIAL_SHOWN =
 			new BaseSetting<>("TutorialShown", false, Boolean::valueOf, Object::toString);
@@ -15,22 +15,27 @@
 package wdl.gui;
 
 import java.io.File;
-import java.lang.reflect.Field;
+import java.util.Arrays;
+import java.util.concurrent.CompletableFuture;
 
 import javax.annotation.Nullable;
 
+import it.unimi.dsi.fastutil.longs.Long2ObjectLinkedOpenHashMap;
 import net.minecraft.client.gui.GuiScreen;
+import net.minecraft.client.renderer.texture.DynamicTexture;
 import net.minecraft.util.math.ChunkPos;
 import net.minecraft.util.math.MathHelper;
-import net.minecraft.world.chunk.storage.RegionFile;
-import net.minecraft.world.chunk.storage.RegionFileCache;
 import wdl.WDL;
 import wdl.gui.widget.ButtonDisplayGui;
 import wdl.gui.widget.Screen;
+import wdl.io.RegionCoverageIndex;
 import wdl.versioned.VersionedFunctions;
 
 /**
  * A GUI that shows chunks that have been already saved.
+ *
+ * Each region is drawn from a texture with one pixel per chunk, which is only
+ * rebuilt when the chunks saved in that region change.
  */
 public class GuiSavedChunks extends Screen {
 	private static final int TOP_MARGIN = 61, BOTTOM_MARGIN = 32;
@@ -43,24 +48,51 @@ public class GuiSavedChunks extends Screen {
 	@Nullable
 	private final GuiScreen parent;
 	private final WDL wdl;
+	/**
+	 * Save times of the chunks already in the world.  Loading this may need to
+	 * re-read every region header, so it is done in the background; regions
+	 * are drawn with only the chunks saved this session until it completes.
+	 */
+	private final CompletableFuture<RegionCoverageIndex> coverage;
 
 	/**
 	 * The current position.
 	 */
 	private float scrollX, scrollZ;
 	/**
-	 * How large each chunk is on-screen.
+	 * How large each chunk is on-screen.  Changed with the mouse wheel.
 	 */
-	private static final int SCALE = 8;
+	private int scale = 8;
+	private static final int MIN_SCALE = 1, MAX_SCALE = 32;
 
 	/**
 	 * The position of the mouse on the last tick, for dragging.
 	 */
 	private int lastTickX, lastTickY;
 
+	/**
+	 * Regions that have been on screen, by {@link ChunkPos#asLong(int, int)} of
+	 * the region coordinates, least recently drawn first.
+	 */
+	private final Long2ObjectLinkedOpenHashMap<RegionLayer> regions = new Long2ObjectLinkedOpenHashMap<>();
+	/**
+	 * Number of off-screen regions whose textures are kept, so that scrolling
+	 * back doesn't need to rebuild them.  Beyond this, the least recently drawn
+	 * ones are deleted.
+	 */
+	private static final int MAX_OFFSCREEN_REGIONS = 64;
+
 	public GuiSavedChunks(@Nullable GuiScreen parent, WDL wdl) {
 		this.parent = parent;
 		this.wdl = wdl;
+		File regionFolder = new File(wdl.saveHandler.getWorldDirectory(), "region").getAbsoluteFile();
+		if (WDL.downloading && wdl.chunkLoader != null
+				&& wdl.chunkLoader.getCoverageIndex().getRegionFolder().equals(regionFolder)) {
+			// The writer's index is already loaded and kept up to date
+			this.coverage = CompletableFuture.completedFuture(wdl.chunkLoader.getCoverageIndex());
+		} else {
+			this.coverage = RegionCoverageIndex.loadAsync(regionFolder);
+		}
 
 		if (wdl.player != null) {
 			this.scrollX = wdl.player.chunkCoordX;
@@ -90,33 +122,50 @@ public class GuiSavedChunks extends Screen {
 		lastTickX = mouseX;
 		lastTickY = mouseY;
 
-		scrollX += deltaX / (float)SCALE;
-		scrollZ += deltaY / (float)SCALE;
+		scrollX += deltaX / (float)scale;
+		scrollZ += deltaY / (float)scale;
+	}
+
+	@Override
+	public void mouseScrolled(int direction) {
+		if (direction > 0) {
+			scale = Math.min(scale * 2, MAX_SCALE);
+		} else {
+			scale = Math.max(scale / 2, MIN_SCALE);
+		}
 	}
 
 	@Override
 	public void render(int mouseX, int mouseY, float partialTicks) {
 		VersionedFunctions.drawDarkBackground(0, 0, height, width);
 
-		// Old chunks
-		int regionX = (int)wdl.player.posX >> 9;
-		int regionZ = (int)wdl.player.posZ >> 9;
-		for (int rz = -1; rz <= 1; rz++) {
-			for (int rx = -1; rx <= 1; rx++) {
-				RegionFile region = loadRegion(regionX + rx, regionZ + rz);
-				if (region != null) {
-					drawRegion(region, regionX + rx, regionZ + rz);
+		// Old chunks and chunks that have been saved already
+		int modCount = wdl.savedChunks.getModCount();
+		RegionCoverageIndex index = getCoverage();
+		int minRegionX = displayXToChunkX(0) >> 5;
+		int maxRegionX = displayXToChunkX(width) >> 5;
+		int minRegionZ = displayZToChunkZ(TOP_MARGIN) >> 5;
+		int maxRegionZ = displayZToChunkZ(height - BOTTOM_MARGIN) >> 5;
+		for (int rz = minRegionZ; rz <= maxRegionZ; rz++) {
+			for (int rx = minRegionX; rx <= maxRegionX; rx++) {
+				long key = ChunkPos.asLong(rx, rz);
+				RegionLayer region = regions.getAndMoveToLast(key);
+				if (region == null) {
+					region = new RegionLayer(rx, rz, index);
+					regions.putAndMoveToLast(key, region);
 				}
+				region.update(modCount, index);
+				region.draw();
 			}
 		}
-		// Chunks that have been saved already
-		for (ChunkPos pos : wdl.savedChunks) {
-			drawChunk(pos, 0xFF00FF00);
+		int onScreen = (maxRegionX - minRegionX + 1) * (maxRegionZ - minRegionZ + 1);
+		while (regions.size() > onScreen + MAX_OFFSCREEN_REGIONS) {
+			regions.removeFirst().delete();
 		}
 
 		// Player position.
-		int playerPosX = (int)(((wdl.player.posX / 16.0D) - scrollX) * SCALE + (width / 2));
-		int playerPosZ = (int)(((wdl.player.posZ / 16.0D) - scrollZ) * SCALE + (height / 2));
+		int playerPosX = (int)(((wdl.player.posX / 16.0D) - scrollX) * scale + (width / 2));
+		int playerPosZ = (int)(((wdl.player.posZ / 16.0D) - scrollZ) * scale + (height / 2));
 
 		drawHorizontalLine(playerPosX - 3, playerPosX + 3, playerPosZ, 0xFFFFFFFF);
 		// Vertical is 1px taller because it seems to be needed to make it proportional
@@ -127,6 +176,10 @@ public class GuiSavedChunks extends Screen {
 
 		this.drawCenteredString(this.fontRenderer, "Saved chunks",
 				this.width / 2, 8, 0xFFFFFF);
+		if (!coverage.isDone()) {
+			this.drawCenteredString(this.fontRenderer, "Loading previously saved chunks...",
+					this.width / 2, 20, 0xFFFFFF);
+		}
 
 		if (mouseY > TOP_MARGIN && mouseY < height - BOTTOM_MARGIN) {
 			this.drawString(this.fontRenderer, "Chunk at " + 
@@ -137,104 +190,163 @@ public class GuiSavedChunks extends Screen {
 		super.render(mouseX, mouseY, partialTicks);
 	}
 
+	@Override
+	public void onGuiClosed() {
+		super.onGuiClosed();
+		for (RegionLayer region : regions.values()) {
+			region.delete();
+		}
+		regions.clear();
+	}
+
 	/**
-	 * Loads a region file if it exists.
+	 * Gets the coverage index if it has finished loading.
 	 *
-	 * @param x Region x coordinate (chunk / 32)
-	 * @param z Region z coordinate (chunk / 32)
-	 * @return The region file if it exists, or else null
+	 * @return The index, or null if it is still loading or failed to load.
 	 */
 	@Nullable
-	private RegionFile loadRegion(int x, int z) {
-		// Impl note: not exactly great, probably all this data should be cached.
-		// Also, I _really_ need to refactor this world folder stuff...
-		File worldFolder = wdl.saveHandler.getWorldDirectory();
-		// 1.12- has func_191065_b or getRegionFileIfExists, but 1.13 doesn't,
-		// so we get this...
-		File regionFolder = new File(worldFolder, "region");
-		File region = new File(regionFolder, "r." + x + "." + z + ".mca");
-		if (region.exists()) {
-			return RegionFileCache.createOrLoadRegionFile(worldFolder, x << 5, z << 5);
-		} else {
+	private RegionCoverageIndex getCoverage() {
+		if (!coverage.isDone() || coverage.isCompletedExceptionally()) {
 			return null;
 		}
+		return coverage.join();
 	}
 
-	private static final Field CHUNK_TIMESTAMPS_FIELD;
-	static {
-		Field chunkTimestampsField = null;
-		int n = 0;
-		for (Field field : RegionFile.class.getDeclaredFields()) {
-			if (field.getType() == int[].class) {
-				n++;
-				if (n == 2) {
-					chunkTimestampsField = field;
-					break;
-				}
-			}
-		}
-		if (chunkTimestampsField == null) {
-			throw new AssertionError("Failed to find chunkTimestamps field (n=" + n + ")");
+	/**
+	 * The texture for a single region, along with the data it was drawn from.
+	 */
+	private class RegionLayer {
+		private final int regionX, regionZ;
+		/**
+		 * Save times of the chunks in the region file when the region was
+		 * first shown after the coverage index loaded, or null if there was
+		 * no region file.
+		 */
+		@Nullable
+		private int[] timestamps;
+		/**
+		 * Whether {@link #timestamps} has been read from the coverage index.
+		 */
+		private boolean hasTimestamps;
+		/**
+		 * Chunks saved in this session, from
+		 * {@link wdl.SavedChunkSet#getRegionBits(int, int)}.
+		 */
+		@Nullable
+		private long[] savedBits;
+		private int modCount;
+		@Nullable
+		private DynamicTexture texture;
+
+		RegionLayer(int regionX, int regionZ, @Nullable RegionCoverageIndex index) {
+			this.regionX = regionX;
+			this.regionZ = regionZ;
+
+			readTimestamps(index);
+			this.savedBits = wdl.savedChunks.getRegionBits(regionX, regionZ);
+			this.modCount = wdl.savedChunks.getModCount();
+			rebuild();
 		}
-		CHUNK_TIMESTAMPS_FIELD = chunkTimestampsField;
-		CHUNK_TIMESTAMPS_FIELD.setAccessible(true);
-	}
-	private int[] getChunkTimestamps(RegionFile region) {
-		try {
-			return (int[])CHUNK_TIMESTAMPS_FIELD.get(region);
-		} catch (Exception ex) {
-			throw new RuntimeException(ex);
+
+		private void readTimestamps(@Nullable RegionCoverageIndex index) {
+			if (index != null) {
+				// n.b. Vanilla doesn't read these values at all, which is odd.
+				this.timestamps = index.getRegionTimestamps(regionX, regionZ);
+				this.hasTimestamps = true;
+			}
 		}
-	}
 
-	private static final int YELLOW_THRESHOLD = 60 * 60 * 24; // 1 day in seconds
-	private static final int RED_THRESHOLD = 60 * 60 * 24 * 30; // 1 month
+		/**
+		 * Rebuilds the texture if the saved chunks in this region changed, or
+		 * if the coverage index has finished loading since it was built.
+		 *
+		 * @param currentModCount {@link wdl.SavedChunkSet#getModCount()}
+		 * @param index The coverage index, or null if it isn't loaded yet.
+		 */
+		void update(int currentModCount, @Nullable RegionCoverageIndex index) {
+			if (!hasTimestamps && index != null) {
+				readTimestamps(index);
+				if (timestamps != null) {
+					rebuild();
+				}
+			}
+			if (currentModCount == modCount) {
+				return;
+			}
+			modCount = currentModCount;
+			long[] bits = wdl.savedChunks.getRegionBits(regionX, regionZ);
+			if (!Arrays.equals(bits, savedBits)) {
+				savedBits = bits;
+				rebuild();
+			}
+		}
 
-	private void drawRegion(RegionFile region, int regionX, int regionZ) {
-		// n.b. Vanilla doesn't read these values at all, which is odd.
-		int[] chunkTimestamps = getChunkTimestamps(region);
-		int now = (int)(System.currentTimeMillis() / 1000);
-		for (int z = 0; z < REGION_SIZE; z++) {
-			for (int x = 0; x < REGION_SIZE; x++) {
-				int saveTime = chunkTimestamps[x + z * REGION_SIZE];
-				if (saveTime == 0) {
-					continue;
+		private void rebuild() {
+			if (timestamps == null && savedBits == null) {
+				return;
+			}
+			int[] pixels = new int[REGION_SIZE * REGION_SIZE];
+			if (timestamps != null) {
+				int now = (int)(System.currentTimeMillis() / 1000);
+				for (int i = 0; i < pixels.length; i++) {
+					if (timestamps[i] != 0) {
+						pixels[i] = getAgeColor(now - timestamps[i]);
+					}
 				}
-				int age = now - saveTime; // in seconds
-				int r, g;
-				// Make the color go from red -> yellow in ~1 day and then
-				// yellow -> red in ~1 month
-				if (age <= 0) {
-					r = 0;
-					g = 0xFF;
-				} else if (age <= YELLOW_THRESHOLD) {
-					r = 0x80 * age / YELLOW_THRESHOLD;
-					g = 0xFF - r;
-				} else {
-					r = 0x80 + 0x7F * (age - YELLOW_THRESHOLD) / RED_THRESHOLD;
-					if (r > 0xFF) r = 0xFF;
-					g = 0xFF - r;
+			}
+			if (savedBits != null) {
+				for (int i = 0; i < pixels.length; i++) {
+					if ((savedBits[i >> 6] & (1L << i)) != 0) {
+						pixels[i] = 0xFF00FF00;
+					}
 				}
-				int color = 0xFF000000 | r << 16 | g << 8;
-				drawChunk(new ChunkPos(x + regionX * REGION_SIZE, z + regionZ * REGION_SIZE), color);
 			}
+			if (texture == null) {
+				texture = VersionedFunctions.makeDynamicTexture(REGION_SIZE, REGION_SIZE);
+			}
+			VersionedFunctions.updateDynamicTexture(texture, pixels);
 		}
-	}
 
-	private void drawChunk(ChunkPos pos, int color) {
-		int x1 = chunkXToDisplayX(pos.x);
-		int z1 = chunkZToDisplayZ(pos.z);
-		int x2 = x1 + SCALE - 1;
-		int z2 = z1 + SCALE - 1;
+		void draw() {
+			if (texture != null) {
+				VersionedFunctions.drawDynamicTexture(texture,
+						chunkXToDisplayX(regionX * REGION_SIZE),
+						chunkZToDisplayZ(regionZ * REGION_SIZE),
+						REGION_SIZE, REGION_SIZE,
+						REGION_SIZE * scale, REGION_SIZE * scale);
+			}
+		}
 
-		drawRect(x1, z1, x2, z2, color);
+		void delete() {
+			if (texture != null) {
+				texture.deleteGlTexture();
+				texture = null;
+			}
+		}
+	}
 
-		int colorDark = darken(color);
+	private static final int YELLOW_THRESHOLD = 60 * 60 * 24; // 1 day in seconds
+	private static final int RED_THRESHOLD = 60 * 60 * 24 * 30; // 1 month
 
-		drawVerticalLine(x1, z1, z2, colorDark);
-		drawVerticalLine(x2, z1, z2, colorDark);
-		drawHorizontalLine(x1, x2, z1, colorDark);
-		drawHorizontalLine(x1, x2, z2, colorDark);
+	/**
+	 * Gets the color for a chunk saved the given number of seconds ago.
+	 */
+	private static int getAgeColor(int age) {
+		int r, g;
+		// Make the color go from red -> yellow in ~1 day and then
+		// yellow -> red in ~1 month
+		if (age <= 0) {
+			r = 0;
+			g = 0xFF;
+		} else if (age <= YELLOW_THRESHOLD) {
+			r = 0x80 * age / YELLOW_THRESHOLD;
+			g = 0xFF - r;
+		} else {
+			r = 0x80 + 0x7F * (age - YELLOW_THRESHOLD) / RED_THRESHOLD;
+			if (r > 0xFF) r = 0xFF;
+			g = 0xFF - r;
+		}
+		return 0xFF000000 | r << 16 | g << 8;
 	}
 
 	/**
@@ -245,7 +357,7 @@ public class GuiSavedChunks extends Screen {
 	 * @return The display position.
 	 */
 	private int chunkXToDisplayX(int chunkX) {
-		return (int)((chunkX - scrollX) * SCALE + (width / 2));
+		return (int)((chunkX - scrollX) * scale + (width / 2));
 	}
 
 	/**
@@ -256,7 +368,7 @@ public class GuiSavedChunks extends Screen {
 	 * @return The display position.
 	 */
 	private int chunkZToDisplayZ(int chunkZ) {
-		return (int)((chunkZ - scrollZ) * SCALE + (height / 2));
+		return (int)((chunkZ - scrollZ) * scale + (height / 2));
 	}
 
 	/**
@@ -267,7 +379,7 @@ public class GuiSavedChunks extends Screen {
 	 * @return The chunk position.
 	 */
 	private int displayXToChunkX(int displayX) {
-		return MathHelper.floor((displayX - (float)(width / 2)) / SCALE + scrollX);
+		return MathHelper.floor((displayX - (float)(width / 2)) / scale + scrollX);
 	}
 
 	/**
@@ -278,21 +390,6 @@ public class GuiSavedChunks extends Screen {
 	 * @return The chunk position.
 	 */
 	private int displayZToChunkZ(int displayZ) {
-		return MathHelper.floor((displayZ - (float)(height / 2)) / SCALE + scrollZ);
-	}
-
-	/**
-	 * Halves the brightness of the given color.
-	 */
-	private int darken(int color) {
-		int r = (color >> 16) & 0xFF;
-		int g = (color >> 8) & 0xFF;
-		int b = color & 0xFF;
-
-		r /= 2;
-		g /= 2;
-		b /= 2;
-
-		return (r << 16) + (g << 8) + b;
+		return MathHelper.floor((displayZ - (float)(height / 2)) / scale + scrollZ);
 	}
 }
@@ -16,8 +16,6 @@ package wdl.gui;
 
 import javax.annotation.Nullable;
 
-import com.google.common.collect.Multimap;
-
 import net.minecraft.client.audio.SimpleSound;
 import net.minecraft.client.gui.GuiButton;
 import net.minecraft.client.gui.GuiScreen;
@@ -245,10 +243,10 @@ public class GuiWDLChunkOverrides extends Screen {
 		}
 
 		// Draw current ranges
-		for (Multimap<String, ChunkRange> group : WDLPluginChannels.getChunkOverrides().values()) {
-			for (ChunkRange range : group.values()) {
-				drawRange(range, RNG_SEED, 0xFF);
-			}
+		for (ChunkRange range : WDLPluginChannels.getChunkOverridesInArea(
+				displayXToChunkX(0), displayZToChunkZ(TOP_MARGIN),
+				displayXToChunkX(width), displayZToChunkZ(height - BOTTOM_MARGIN))) {
+			drawRange(range, RNG_SEED, 0xFF);
 		}
 		for (ChunkRange range : WDLPluginChannels.getChunkOverrideRequests()) {
 			// Fancy sin alpha changing by time.
@@ -15,6 +15,7 @@
 package wdl.gui;
 
 import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
 
 import net.minecraft.client.gui.GuiButton;
 import net.minecraft.client.resources.I18n;
@@ -69,11 +70,14 @@ public class GuiWDLOverwriteChanges extends GuiTurningCameraBase implements IBac
 		}
 	}
 
-	public GuiWDLOverwriteChanges(WDL wdl, long lastSaved, long lastPlayed, Runnable callback, Runnable cancel) {
+	public GuiWDLOverwriteChanges(WDL wdl, long lastSaved, long lastPlayed,
+			CompletableFuture<Integer> changedChunks,
+			Runnable callback, Runnable cancel) {
 		super(wdl);
 		this.wdl = wdl;
 		this.lastSaved = lastSaved;
 		this.lastPlayed = lastPlayed;
+		this.changedChunks = changedChunks;
 		this.callback = callback;
 		this.cancel = cancel;
 	}
@@ -114,6 +118,12 @@ public class GuiWDLOverwriteChanges extends GuiTurningCameraBase implements IBac
 	 * Time when the world was last saved / last played.
 	 */
 	private final long lastSaved, lastPlayed;
+	/**
+	 * Number of chunks in the overworld region files that were written after
+	 * the world was last downloaded, or -1 if unknown.  This is counted in the
+	 * background, so the generic subtitle is shown until it completes.
+	 */
+	private final CompletableFuture<Integer> changedChunks;
 
 	private String title;
 	private String footer;
@@ -230,7 +240,12 @@ public class GuiWDLOverwriteChanges extends GuiTurningCameraBase implements IBac
 
 			drawCenteredString(fontRenderer, captionTitle, width / 2,
 					infoBoxY, 0xFFFFFF);
-			drawCenteredString(fontRenderer, captionSubtitle, width / 2,
+			int chunks = changedChunks.getNow(-1);
+			String subtitle = captionSubtitle;
+			if (chunks > 0) {
+				subtitle = I18n.format("wdl.gui.overwriteChanges.captionSubtitleChunks", chunks);
+			}
+			drawCenteredString(fontRenderer, subtitle, width / 2,
 					infoBoxY + fontRenderer.FONT_HEIGHT, 0xFFFFFF);
 
 			drawCenteredString(fontRenderer, overwriteWarning1, width / 2,
@@ -20,6 +20,7 @@ import net.minecraft.client.gui.Gui;
 import net.minecraft.client.gui.GuiScreen;
 import net.minecraft.client.resources.I18n;
 import net.minecraft.util.math.MathHelper;
+import wdl.CapturedTileEntities;
 import wdl.WDL;
 
 /**
@@ -29,6 +30,7 @@ import wdl.WDL;
  * {@link net.minecraft.client.gui.GuiScreenWorking GuiScreenWorking}.
  */
 public class GuiWDLSaveProgress extends GuiTurningCameraBase {
+	private final CapturedTileEntities capturedTileEntities;
 	private final String title;
 	private String majorTaskMessage = "";
 	private Supplier<String> minorTaskMessageProvider = () -> "";
@@ -58,6 +60,7 @@ public class GuiWDLSaveProgress extends GuiTurningCameraBase {
 	 */
 	public GuiWDLSaveProgress(WDL wdl, String title, int taskCount) {
 		super(wdl);
+		this.capturedTileEntities = wdl.newTileEntities;
 		this.title = title;
 		this.majorTaskCount = taskCount;
 		this.majorTaskNumber = 0;
@@ -185,6 +188,15 @@ public class GuiWDLSaveProgress extends GuiTurningCameraBase {
 			this.drawProgressBar(140, 64, 69,
 					prevMinorBar + (minorBar - prevMinorBar) * partialTicks);
 
+			if (capturedTileEntities.getCount() > 0) {
+				this.drawCenteredString(this.fontRenderer, I18n.format(
+						"wdl.gui.saveProgress.capturedTileEntities",
+						capturedTileEntities.getCount(),
+						capturedTileEntities.getChunkCount(),
+						capturedTileEntities.getRetainedBytes() / 1024),
+						this.width / 2, 160, 0xAAAAAA);
+			}
+
 			super.render(mouseX, mouseY, partialTicks);
 		}
 	}
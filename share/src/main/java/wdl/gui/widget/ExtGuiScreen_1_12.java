@@ -21,6 +21,7 @@ import java.util.List;
 import javax.annotation.OverridingMethodsMustInvokeSuper;
 
 import org.lwjgl.input.Keyboard;
+import org.lwjgl.input.Mouse;
 
 import net.minecraft.client.Minecraft;
 import net.minecraft.client.gui.GuiButton;
@@ -131,6 +132,10 @@ abstract class ExtGuiScreen extends GuiScreen implements IExtGuiScreen {
 		for (GuiList<?> list : this.listList) {
 			list.handleMouseInput();
 		}
+		int wheel = Mouse.getEventDWheel();
+		if (wheel != 0) {
+			this.mouseScrolled(wheel > 0 ? 1 : -1);
+		}
 	}
 
 	// Not supported
@@ -98,6 +98,15 @@ abstract class ExtGuiScreen extends GuiScreen implements IExtGuiScreen {
 		return result;
 	}
 
+	@Override
+	public final boolean mouseScrolled(double delta) {
+		boolean result = super.mouseScrolled(delta);
+		if (delta != 0) {
+			this.mouseScrolled(delta > 0 ? 1 : -1);
+		}
+		return result;
+	}
+
 	@Override
 	public final boolean keyPressed(int key, int scanCode, int modifiers) {
 		boolean result = super.keyPressed(key, scanCode, modifiers);
@@ -60,6 +60,11 @@ public interface IExtGuiScreen {
 	 * @param mouseY New mouse position.
 	 */
 	public abstract void mouseDragged(int mouseX, int mouseY);
+	/**
+	 * Called when the mouse wheel is scrolled.
+	 * @param direction 1 if scrolled up, -1 if scrolled down.
+	 */
+	public abstract void mouseScrolled(int direction);
 
 	/**
 	 * Called when a character is typed.  Will not be fired for special characters,
@@ -28,6 +28,9 @@ public class Screen extends ExtGuiScreen {
 	@Override
 	public void mouseUp(int mouseX, int mouseY) { }
 
+	@Override
+	public void mouseScrolled(int direction) { }
+
 	@Override
 	public void charTyped(char keyChar) { }
 
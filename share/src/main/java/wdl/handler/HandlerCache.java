@@ -0,0 +1,66 @@
+/*
+ * This file is part of World Downloader: A mod to make backups of your
+ * multiplayer worlds.
+ * http://www.minecraftforum.net/forums/mapping-and-modding/minecraft-mods/2520465
+ *
+ * Copyright (c) 2014 nairol, cubic72
+ * Copyright (c) 2019 Pokechu22, julialy
+ *
+ * This project is licensed under the MMPLv2.  The full text of the MMPL can be
+ * found in LICENSE.md, or online at https://github.com/iopleke/MMPLv2/blob/master/LICENSE.md
+ * For information about this the MMPLv2, see http://stopmodreposts.org/
+ *
+ * Do not redistribute (in modified or unmodified form) without prior permission.
+ */
+package wdl.handler;
+
+import java.util.Optional;
+import java.util.function.BiFunction;
+
+import javax.annotation.Nullable;
+
+/**
+ * Caches handler lookups keyed by a pair of classes, such as a block entity
+ * class and a container class.  The lookup function is only run once for each
+ * pair; pairs with no handler are remembered as well, so that repeated misses
+ * (e.g. block events for blocks that have no handler) stay cheap.
+ *
+ * The cache is built on {@link ClassValue}s, so it doesn't keep classes from
+ * being unloaded.
+ *
+ * @param <H> The type of handler.
+ */
+public final class HandlerCache<H> {
+	private final ClassValue<ClassValue<Optional<H>>> cache;
+
+	/**
+	 * Creates a new cache.
+	 *
+	 * @param lookup Finds the handler for the given pair of classes, or returns
+	 *               null if there is none.  Must always give the same result
+	 *               for the same classes.
+	 */
+	public HandlerCache(BiFunction<Class<?>, Class<?>, H> lookup) {
+		this.cache = new ClassValue<ClassValue<Optional<H>>>() {
+			@Override
+			protected ClassValue<Optional<H>> computeValue(Class<?> first) {
+				return new ClassValue<Optional<H>>() {
+					@Override
+					protected Optional<H> computeValue(Class<?> second) {
+						return Optional.ofNullable(lookup.apply(first, second));
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * Gets the handler for the given pair of classes.
+	 *
+	 * @return The handler, or null if none is found.
+	 */
+	@Nullable
+	public H get(Class<?> first, Class<?> second) {
+		return cache.get(first).get(second).orElse(null);
+	}
+}
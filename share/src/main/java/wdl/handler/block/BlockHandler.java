@@ -29,6 +29,7 @@ import net.minecraft.util.text.ITextComponent;
 import net.minecraft.world.IBlockReader;
 import wdl.ducks.INetworkNameable;
 import wdl.handler.BaseHandler;
+import wdl.handler.HandlerCache;
 import wdl.handler.HandlerException;
 import wdl.versioned.VersionedFunctions;
 
@@ -178,10 +179,20 @@ public abstract class BlockHandler<B extends TileEntity, C extends Container> ex
 	@SuppressWarnings("unchecked")
 	@Nullable
 	public static <B extends TileEntity, C extends Container> BlockHandler<B, C> getHandler(Class<B> blockEntityClass, Class<C> containerClass) {
+		return (BlockHandler<B, C>) CACHE.get(blockEntityClass, containerClass);
+	}
+
+	/**
+	 * Cached results of {@link #findHandler}.
+	 */
+	private static final HandlerCache<BlockHandler<?, ?>> CACHE = new HandlerCache<>(BlockHandler::findHandler);
+
+	@Nullable
+	private static BlockHandler<?, ?> findHandler(Class<?> blockEntityClass, Class<?> containerClass) {
 		for (BlockHandler<?, ?> h : VersionedFunctions.BLOCK_HANDLERS) {
 			if (h.getBlockEntityClass().equals(blockEntityClass) &&
 					h.getContainerClass().equals(containerClass)) {
-				return (BlockHandler<B, C>)h;
+				return h;
 			}
 		}
 
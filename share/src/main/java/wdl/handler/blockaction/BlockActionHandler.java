@@ -25,6 +25,7 @@ import net.minecraft.util.math.BlockPos;
 import net.minecraft.util.text.ITextComponent;
 import net.minecraft.world.IBlockReader;
 import wdl.handler.BaseHandler;
+import wdl.handler.HandlerCache;
 import wdl.handler.HandlerException;
 import wdl.versioned.VersionedFunctions;
 
@@ -128,10 +129,20 @@ public abstract class BlockActionHandler<B extends Block, E extends TileEntity>
 	@SuppressWarnings("unchecked")
 	@Nullable
 	public static <B extends Block, E extends TileEntity> BlockActionHandler<B, E> getHandler(Class<B> blockClass, Class<E> blockEntityClass) {
+		return (BlockActionHandler<B, E>) CACHE.get(blockClass, blockEntityClass);
+	}
+
+	/**
+	 * Cached results of {@link #findHandler}.
+	 */
+	private static final HandlerCache<BlockActionHandler<?, ?>> CACHE = new HandlerCache<>(BlockActionHandler::findHandler);
+
+	@Nullable
+	private static BlockActionHandler<?, ?> findHandler(Class<?> blockClass, Class<?> blockEntityClass) {
 		for (BlockActionHandler<?, ?> h : VersionedFunctions.BLOCK_ACTION_HANDLERS) {
 			if (h.getBlockEntityClass().equals(blockEntityClass) &&
 					h.getBlockClass().equals(blockClass)) {
-				return (BlockActionHandler<B, E>)h;
+				return h;
 			}
 		}
 
@@ -21,6 +21,7 @@ import net.minecraft.entity.Entity;
 import net.minecraft.inventory.Container;
 import net.minecraft.util.text.ITextComponent;
 import wdl.handler.BaseHandler;
+import wdl.handler.HandlerCache;
 import wdl.handler.HandlerException;
 import wdl.versioned.VersionedFunctions;
 
@@ -159,10 +160,20 @@ public abstract class EntityHandler<E extends Entity, C extends Container> exten
 	@SuppressWarnings("unchecked")
 	@Nullable
 	public static <E extends Entity, C extends Container> EntityHandler<? super E, ? super C> getHandler(Class<E> entityClass, Class<C> containerClass) {
+		return (EntityHandler<? super E, ? super C>) CACHE.get(entityClass, containerClass);
+	}
+
+	/**
+	 * Cached results of {@link #findHandler}.
+	 */
+	private static final HandlerCache<EntityHandler<?, ?>> CACHE = new HandlerCache<>(EntityHandler::findHandler);
+
+	@Nullable
+	private static EntityHandler<?, ?> findHandler(Class<?> entityClass, Class<?> containerClass) {
 		for (EntityHandler<?, ?> h : VersionedFunctions.ENTITY_HANDLERS) {
 			if (h.getEntityClass().isAssignableFrom(entityClass) &&
 					h.getContainerClass().isAssignableFrom(containerClass)) {
-				return (EntityHandler<? super E, ? super C>) h;
+				return h;
 			}
 		}
 
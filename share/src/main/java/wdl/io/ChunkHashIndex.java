@@ -0,0 +1,289 @@
+/*
+ * This file is part of World Downloader: A mod to make backups of your
+ * multiplayer worlds.
+ * http://www.minecraftforum.net/forums/mapping-and-modding/minecraft-mods/2520465
+ *
+ * Copyright (c) 2014 nairol, cubic72
+ * Copyright (c) 2019 Pokechu22, julialy
+ *
+ * This project is licensed under the MMPLv2.  The full text of the MMPL can be
+ * found in LICENSE.md, or online at https://github.com/iopleke/MMPLv2/blob/master/LICENSE.md
+ * For information about this the MMPLv2, see http://stopmodreposts.org/
+ *
+ * Do not redistribute (in modified or unmodified form) without prior permission.
+ */
+package wdl.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.google.common.hash.Hasher;
+import com.google.common.hash.Hashing;
+
+import net.minecraft.nbt.CompressedStreamTools;
+import net.minecraft.nbt.NBTTagCompound;
+
+/**
+ * Hashes of the chunks in a single region file, stored in a sidecar file so
+ * that chunks that haven't changed since the last download don't need to be
+ * written again.
+ *
+ * Each hash is stored with the region file's timestamp for the chunk at the
+ * time it was written; if the chunk has been rewritten since (for instance, by
+ * playing the world in singleplayer), the timestamp no longer matches and the
+ * hash is ignored.
+ *
+ * Not thread-safe; only used on a {@link RegionWriter} lane's thread.
+ */
+class ChunkHashIndex {
+	private static final Logger LOGGER = LogManager.getLogger();
+
+	/** Identifies the file format, in case it ever needs to change. */
+	private static final int MAGIC = 0x57444C48; // "WDLH"
+	private static final int VERSION = 1;
+
+	private final File file;
+	/** Hash of each chunk, or 0 if unknown. */
+	private final long[] hashes = new long[1024];
+	/** Region file timestamp of each chunk when its hash was recorded. */
+	private final int[] timestamps = new int[1024];
+	private boolean dirty;
+
+	/**
+	 * Loads the index from the given file, if it exists.  An unreadable file
+	 * is treated as empty, which only means that chunks get rewritten.
+	 */
+	ChunkHashIndex(File file) {
+		this.file = file;
+		if (!file.isFile()) {
+			return;
+		}
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+				LOGGER.warn("[WDL] Ignoring chunk hash index {} with unknown format", file);
+				return;
+			}
+			for (int i = 0; i < 1024; i++) {
+				hashes[i] = input.readLong();
+				timestamps[i] = input.readInt();
+			}
+		} catch (IOException ex) {
+			LOGGER.warn("[WDL] Failed to read chunk hash index {}", file, ex);
+			Arrays.fill(hashes, 0);
+		}
+	}
+
+	/**
+	 * Gets the sidecar file for the given region.
+	 *
+	 * @param hashFolder The folder containing the indexes of a dimension.
+	 */
+	static File getFile(File hashFolder, int chunkX, int chunkZ) {
+		return new File(hashFolder, "r." + (chunkX >> 5) + "." + (chunkZ >> 5) + ".wdlh");
+	}
+
+	private static int getIndex(int chunkX, int chunkZ) {
+		return (chunkX & 31) + (chunkZ & 31) * 32;
+	}
+
+	/**
+	 * Checks whether the given chunk is stored in the region file with the
+	 * given hash.
+	 */
+	boolean matches(WDLRegionFile regionFile, int chunkX, int chunkZ, long hash) {
+		int index = getIndex(chunkX, chunkZ);
+		return hashes[index] == hash
+				&& regionFile.hasChunk(chunkX, chunkZ)
+				&& timestamps[index] == regionFile.getTimestamp(chunkX, chunkZ);
+	}
+
+	/**
+	 * Records that the given chunk has just been written to the region file
+	 * with the given hash.
+	 */
+	void put(WDLRegionFile regionFile, int chunkX, int chunkZ, long hash) {
+		int index = getIndex(chunkX, chunkZ);
+		hashes[index] = hash;
+		timestamps[index] = regionFile.getTimestamp(chunkX, chunkZ);
+		dirty = true;
+	}
+
+	/**
+	 * Writes the index out, if it has changed.
+	 */
+	void save() throws IOException {
+		if (!dirty) {
+			return;
+		}
+		file.getParentFile().mkdirs();
+		try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			output.writeInt(MAGIC);
+			output.writeInt(VERSION);
+			for (int i = 0; i < 1024; i++) {
+				output.writeLong(hashes[i]);
+				output.writeInt(timestamps[i]);
+			}
+		}
+		dirty = false;
+	}
+
+	/**
+	 * Serializes the given chunk's NBT (uncompressed) to the given stream,
+	 * hashing the bytes as they are written.  The values of the fields that
+	 * change every time the chunk is saved (<code>LastUpdate</code> and
+	 * <code>InhabitedTime</code>) are written unchanged but hashed as 0.
+	 *
+	 * @return The hash, which is never 0.
+	 */
+	static long write(NBTTagCompound tag, OutputStream stream) throws IOException {
+		Hasher hasher = Hashing.murmur3_128().newHasher();
+		CompressedStreamTools.write(tag, new HashingOutput(stream, hasher));
+		long hash = hasher.hash().asLong();
+		return hash != 0 ? hash : 1;
+	}
+
+	/**
+	 * Writes to a stream while feeding the same bytes to a hasher, except for
+	 * the values of long tags named <code>LastUpdate</code> or
+	 * <code>InhabitedTime</code>.  NBT writes each tag's name with
+	 * {@link #writeUTF} directly before its value, which is how those are
+	 * recognized.  (This also masks fields with those names in nested tags,
+	 * which vanilla doesn't have.)
+	 */
+	private static class HashingOutput implements DataOutput {
+		private final OutputStream stream;
+		private final Hasher hasher;
+		/** Writes to both the stream and the hasher. */
+		private final DataOutputStream output;
+		private final byte[] longBuffer = new byte[8];
+		/** Whether the last thing written was the name of a masked field. */
+		private boolean maskNextLong;
+
+		HashingOutput(OutputStream stream, Hasher hasher) {
+			this.stream = stream;
+			this.hasher = hasher;
+			this.output = new DataOutputStream(new OutputStream() {
+				@Override
+				public void write(int b) throws IOException {
+					stream.write(b);
+					hasher.putByte((byte) b);
+				}
+
+				@Override
+				public void write(byte[] b, int off, int len) throws IOException {
+					stream.write(b, off, len);
+					hasher.putBytes(b, off, len);
+				}
+			});
+		}
+
+		@Override
+		public void writeLong(long v) throws IOException {
+			if (!maskNextLong) {
+				output.writeLong(v);
+				return;
+			}
+			maskNextLong = false;
+			for (int i = 0; i < 8; i++) {
+				longBuffer[i] = (byte) (v >>> (56 - 8 * i));
+			}
+			stream.write(longBuffer);
+			hasher.putLong(0);
+		}
+
+		@Override
+		public void writeUTF(String s) throws IOException {
+			output.writeUTF(s);
+			maskNextLong = s.equals("LastUpdate") || s.equals("InhabitedTime");
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			maskNextLong = false;
+			output.write(b);
+		}
+
+		@Override
+		public void write(byte[] b) throws IOException {
+			maskNextLong = false;
+			output.write(b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			maskNextLong = false;
+			output.write(b, off, len);
+		}
+
+		@Override
+		public void writeBoolean(boolean v) throws IOException {
+			maskNextLong = false;
+			output.writeBoolean(v);
+		}
+
+		@Override
+		public void writeByte(int v) throws IOException {
+			maskNextLong = false;
+			output.writeByte(v);
+		}
+
+		@Override
+		public void writeShort(int v) throws IOException {
+			maskNextLong = false;
+			output.writeShort(v);
+		}
+
+		@Override
+		public void writeChar(int v) throws IOException {
+			maskNextLong = false;
+			output.writeChar(v);
+		}
+
+		@Override
+		public void writeInt(int v) throws IOException {
+			maskNextLong = false;
+			output.writeInt(v);
+		}
+
+		@Override
+		public void writeFloat(float v) throws IOException {
+			maskNextLong = false;
+			output.writeFloat(v);
+		}
+
+		@Override
+		public void writeDouble(double v) throws IOException {
+			maskNextLong = false;
+			output.writeDouble(v);
+		}
+
+		@Override
+		public void writeBytes(String s) throws IOException {
+			maskNextLong = false;
+			output.writeBytes(s);
+		}
+
+		@Override
+		public void writeChars(String s) throws IOException {
+			maskNextLong = false;
+			output.writeChars(s);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "ChunkHashIndex [file=" + file + ", dirty=" + dirty + "]";
+	}
+}
@@ -0,0 +1,193 @@
+/*
+ * This file is part of World Downloader: A mod to make backups of your
+ * multiplayer worlds.
+ * http://www.minecraftforum.net/forums/mapping-and-modding/minecraft-mods/2520465
+ *
+ * Copyright (c) 2014 nairol, cubic72
+ * Copyright (c) 2019 Pokechu22, julialy
+ *
+ * This project is licensed under the MMPLv2.  The full text of the MMPL can be
+ * found in LICENSE.md, or online at https://github.com/iopleke/MMPLv2/blob/master/LICENSE.md
+ * For information about this the MMPLv2, see http://stopmodreposts.org/
+ *
+ * Do not redistribute (in modified or unmodified form) without prior permission.
+ */
+package wdl.io;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+import net.minecraft.nbt.CompressedStreamTools;
+import net.minecraft.nbt.NBTTagCompound;
+
+/**
+ * Shared compression settings and per-thread pooled deflaters and inflaters,
+ * used for everything WDL compresses: region files, <code>level.dat</code>,
+ * player data and maps.  Also keeps track of how much data was compressed.
+ */
+public final class Compression {
+	private Compression() { throw new AssertionError(); }
+
+	/** Header of a gzip member with no optional fields. */
+	private static final byte[] GZIP_HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+
+	private static volatile int level = 6;
+
+	private static final ThreadLocal<Deflater> RAW_DEFLATERS = ThreadLocal.withInitial(() -> new Deflater(level, true));
+	private static final ThreadLocal<Deflater> ZLIB_DEFLATERS = ThreadLocal.withInitial(() -> new Deflater(level));
+	private static final ThreadLocal<Inflater> ZLIB_INFLATERS = ThreadLocal.withInitial(Inflater::new);
+	/** Output buffers for {@link #deflate}, which grow to fit the largest chunk. */
+	private static final ThreadLocal<byte[]> DEFLATE_BUFFERS = ThreadLocal.withInitial(() -> new byte[64 * 1024]);
+
+	private static final AtomicLong bytesIn = new AtomicLong();
+	private static final AtomicLong bytesOut = new AtomicLong();
+
+	/**
+	 * Sets the compression level used from now on.
+	 *
+	 * @param newLevel The level, from 1 (fastest) to 9 (smallest).
+	 */
+	public static void setLevel(int newLevel) {
+		level = Math.max(Deflater.BEST_SPEED, Math.min(Deflater.BEST_COMPRESSION, newLevel));
+	}
+
+	/**
+	 * Gets the current compression level.
+	 */
+	public static int getLevel() {
+		return level;
+	}
+
+	/**
+	 * Gets this thread's zlib inflater, reset. It must be finished with before
+	 * the thread uses it again.
+	 */
+	public static Inflater getInflater() {
+		Inflater inflater = ZLIB_INFLATERS.get();
+		inflater.reset();
+		return inflater;
+	}
+
+	/**
+	 * Writes the given tag gzip-compressed, as with
+	 * {@link CompressedStreamTools#writeCompressed}, but using this thread's
+	 * pooled deflater and the current level.  The stream is not closed.
+	 */
+	public static void writeCompressed(NBTTagCompound tag, OutputStream stream) throws IOException {
+		writeGzip(tag, stream, true);
+	}
+
+	/**
+	 * Writes the given tag gzip-compressed, like
+	 * {@link #writeCompressed(NBTTagCompound, OutputStream)}, but without
+	 * counting it in the statistics.  Used for data that is kept in memory
+	 * rather than saved with the world.
+	 */
+	public static void writeCompressedUntracked(NBTTagCompound tag, OutputStream stream) throws IOException {
+		writeGzip(tag, stream, false);
+	}
+
+	private static void writeGzip(NBTTagCompound tag, OutputStream stream, boolean track) throws IOException {
+		Deflater deflater = RAW_DEFLATERS.get();
+		deflater.reset();
+		deflater.setLevel(level);
+
+		stream.write(GZIP_HEADER);
+
+		// None of these streams are closed, as that would close the target
+		DeflaterOutputStream deflaterStream = new DeflaterOutputStream(stream, deflater, 4096);
+		CRC32 crc = new CRC32();
+		DataOutputStream output = new DataOutputStream(new BufferedOutputStream(
+				new CheckedOutputStream(deflaterStream, crc), 8192));
+		CompressedStreamTools.write(tag, output);
+		output.flush();
+		deflaterStream.finish();
+
+		writeIntLE(stream, (int) crc.getValue());
+		writeIntLE(stream, (int) deflater.getBytesRead());
+		stream.flush();
+
+		if (track) {
+			record(deflater.getBytesRead(), deflater.getBytesWritten() + GZIP_HEADER.length + 8);
+		}
+	}
+
+	/**
+	 * Compresses the given data in the zlib format used by region files, using
+	 * this thread's pooled deflater and the current level.
+	 *
+	 * @param data   The uncompressed data.
+	 * @param length The number of bytes of data to use.
+	 * @return The compressed data.
+	 */
+	public static byte[] deflate(byte[] data, int length) {
+		Deflater deflater = ZLIB_DEFLATERS.get();
+		deflater.reset();
+		deflater.setLevel(level);
+		deflater.setInput(data, 0, length);
+		deflater.finish();
+
+		byte[] buffer = DEFLATE_BUFFERS.get();
+		int size = 0;
+		while (!deflater.finished()) {
+			if (size == buffer.length) {
+				buffer = Arrays.copyOf(buffer, buffer.length * 2);
+				DEFLATE_BUFFERS.set(buffer);
+			}
+			size += deflater.deflate(buffer, size, buffer.length - size);
+		}
+		// Don't keep the input alive until the next call
+		deflater.reset();
+
+		record(length, size);
+		return Arrays.copyOf(buffer, size);
+	}
+
+	private static void writeIntLE(OutputStream stream, int value) throws IOException {
+		stream.write(value & 0xFF);
+		stream.write((value >>> 8) & 0xFF);
+		stream.write((value >>> 16) & 0xFF);
+		stream.write((value >>> 24) & 0xFF);
+	}
+
+	/**
+	 * Records that data was compressed.
+	 *
+	 * @param uncompressed The size before compressing.
+	 * @param compressed   The size after compressing.
+	 */
+	public static void record(long uncompressed, long compressed) {
+		bytesIn.addAndGet(uncompressed);
+		bytesOut.addAndGet(compressed);
+	}
+
+	/**
+	 * Gets the total number of bytes given to the compressor since the last
+	 * {@link #resetStatistics()}.
+	 */
+	public static long getBytesIn() {
+		return bytesIn.get();
+	}
+
+	/**
+	 * Gets the total number of compressed bytes produced since the last
+	 * {@link #resetStatistics()}.
+	 */
+	public static long getBytesOut() {
+		return bytesOut.get();
+	}
+
+	public static void resetStatistics() {
+		bytesIn.set(0);
+		bytesOut.set(0);
+	}
+}
@@ -0,0 +1,375 @@
+/*
+ * This file is part of World Downloader: A mod to make backups of your
+ * multiplayer worlds.
+ * http://www.minecraftforum.net/forums/mapping-and-modding/minecraft-mods/2520465
+ *
+ * Copyright (c) 2014 nairol, cubic72
+ * Copyright (c) 2019 Pokechu22, julialy
+ *
+ * This project is licensed under the MMPLv2.  The full text of the MMPL can be
+ * found in LICENSE.md, or online at https://github.com/iopleke/MMPLv2/blob/master/LICENSE.md
+ * For information about this the MMPLv2, see http://stopmodreposts.org/
+ *
+ * Do not redistribute (in modified or unmodified form) without prior permission.
+ */
+package wdl.io;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.annotation.Nullable;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import it.unimi.dsi.fastutil.longs.Long2ObjectMap;
+import it.unimi.dsi.fastutil.longs.Long2ObjectOpenHashMap;
+import net.minecraft.util.math.ChunkPos;
+
+/**
+ * The save time and size of every chunk in the region files of a dimension,
+ * so that they can be looked up without opening the region files.
+ *
+ * The index is stored in a single file next to the region folder.  When it is
+ * loaded, any region file that was modified since the index was saved (for
+ * instance, by playing the world in singleplayer) is re-read from its header;
+ * after that, {@link RegionWriter} updates it as it writes chunks.
+ *
+ * Each {@link RegionWriter} loads its own instance when it is created (that
+ * is, once per download), and GUIs load a fresh one with {@link #loadAsync}
+ * each time they are opened (or use the writer's if it is for the same
+ * folder), so nothing outlives the session that loaded it; the file on disk is
+ * what carries the index between sessions.  Writer threads update an index
+ * while the client thread reads it, so all methods are synchronized.
+ */
+public class RegionCoverageIndex {
+	private static final Logger LOGGER = LogManager.getLogger();
+
+	/** Identifies the file format, in case it ever needs to change. */
+	private static final int MAGIC = 0x57444C43; // "WDLC"
+	private static final int VERSION = 1;
+
+	private static final Pattern REGION_FILE = Pattern.compile("^r\\.(-?\\d+)\\.(-?\\d+)\\.mca$");
+
+	private static class Region {
+		/** Last modification time and length of the region file when last read or saved. */
+		long fileModified, fileLength;
+		/** Time each chunk was last written, in seconds since the epoch, or 0. */
+		final int[] timestamps = new int[1024];
+		/** Number of sectors used by each chunk, or 0. */
+		final byte[] sectors = new byte[1024];
+		/** Whether chunks were written since the region file was last checked. */
+		boolean written;
+	}
+
+	/**
+	 * Loads indexes for {@link #loadAsync}, since re-reading region headers
+	 * can take a while and must not freeze the screen.
+	 */
+	private static final ThreadPoolExecutor LOADER;
+	static {
+		LOADER = new ThreadPoolExecutor(1, 1, 10, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<>(),
+				new ThreadFactoryBuilder().setNameFormat("WDL Region Coverage Loader").setDaemon(true).build());
+		LOADER.allowCoreThreadTimeOut(true);
+	}
+
+	private final File regionFolder;
+	private final File file;
+	private final Long2ObjectMap<Region> regions = new Long2ObjectOpenHashMap<>();
+	private int chunkCount;
+	private boolean dirty;
+
+	/**
+	 * Loads the index for the given region folder, re-reading the headers of
+	 * any region files that changed since it was saved (or all of them, if
+	 * it was never saved).
+	 *
+	 * @param regionFolder The <code>region</code> folder of a dimension.
+	 */
+	public static RegionCoverageIndex load(File regionFolder) {
+		return new RegionCoverageIndex(regionFolder.getAbsoluteFile());
+	}
+
+	/**
+	 * Loads the index for the given region folder on a background thread, as
+	 * with {@link #load(File)}.
+	 *
+	 * @param regionFolder The <code>region</code> folder of a dimension.
+	 * @return A future that completes once the index has been loaded.
+	 */
+	public static CompletableFuture<RegionCoverageIndex> loadAsync(File regionFolder) {
+		return CompletableFuture.supplyAsync(() -> load(regionFolder), LOADER);
+	}
+
+	RegionCoverageIndex(File regionFolder) {
+		this.regionFolder = regionFolder;
+		this.file = new File(regionFolder.getParentFile(), "wdl_region_coverage.dat");
+		load();
+		refresh();
+	}
+
+	/**
+	 * Gets the region folder this index covers, as an absolute path.
+	 */
+	public File getRegionFolder() {
+		return regionFolder;
+	}
+
+	/**
+	 * Gets the file the index is stored in.
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	private static int getIndex(int chunkX, int chunkZ) {
+		return (chunkX & 31) + (chunkZ & 31) * 32;
+	}
+
+	/**
+	 * Reads the saved index.  An unreadable file is treated as empty, which
+	 * only means that the region headers are read again.
+	 */
+	private void load() {
+		if (!file.isFile()) {
+			return;
+		}
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+			if (input.readInt() != MAGIC || input.readInt() != VERSION) {
+				LOGGER.warn("[WDL] Ignoring region coverage index {} with unknown format", file);
+				return;
+			}
+			int count = input.readInt();
+			for (int i = 0; i < count; i++) {
+				int regionX = input.readInt();
+				int regionZ = input.readInt();
+				Region region = new Region();
+				region.fileModified = input.readLong();
+				region.fileLength = input.readLong();
+				for (int j = 0; j < 1024; j++) {
+					region.timestamps[j] = input.readInt();
+				}
+				input.readFully(region.sectors);
+				regions.put(ChunkPos.asLong(regionX, regionZ), region);
+			}
+		} catch (IOException ex) {
+			LOGGER.warn("[WDL] Failed to read region coverage index {}", file, ex);
+			regions.clear();
+		}
+	}
+
+	/**
+	 * Re-reads the header of every region file that changed since it was last
+	 * read, and forgets regions whose file no longer exists.
+	 */
+	private void refresh() {
+		Long2ObjectMap<Region> existing = new Long2ObjectOpenHashMap<>();
+		File[] files = regionFolder.listFiles();
+		if (files != null) {
+			for (File regionFile : files) {
+				Matcher matcher = REGION_FILE.matcher(regionFile.getName());
+				if (!matcher.matches()) {
+					continue;
+				}
+				long key = ChunkPos.asLong(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+				Region region = regions.get(key);
+				if (region == null || region.fileModified != regionFile.lastModified()
+						|| region.fileLength != regionFile.length()) {
+					region = readHeader(regionFile);
+					dirty = true;
+				}
+				existing.put(key, region);
+			}
+		}
+		if (existing.size() != regions.size()) {
+			dirty = true;
+		}
+		regions.clear();
+		regions.putAll(existing);
+		chunkCount = 0;
+		for (Region region : regions.values()) {
+			for (int timestamp : region.timestamps) {
+				if (timestamp != 0) {
+					chunkCount++;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reads the chunk locations and timestamps of the given region file.  A
+	 * region file that can't be read is treated as empty.
+	 */
+	private static Region readHeader(File regionFile) {
+		Region region = new Region();
+		region.fileModified = regionFile.lastModified();
+		region.fileLength = regionFile.length();
+		if (region.fileLength < 2 * WDLRegionFile.SECTOR_SIZE) {
+			return region;
+		}
+		try (DataInputStream input = new DataInputStream(new BufferedInputStream(
+				new FileInputStream(regionFile), 2 * WDLRegionFile.SECTOR_SIZE))) {
+			int[] locations = new int[1024];
+			for (int i = 0; i < 1024; i++) {
+				locations[i] = input.readInt();
+			}
+			for (int i = 0; i < 1024; i++) {
+				int timestamp = input.readInt();
+				if (locations[i] != 0) {
+					region.sectors[i] = (byte) locations[i];
+					// Vanilla can leave the timestamp unset; it still has a chunk
+					region.timestamps[i] = (timestamp != 0 ? timestamp : 1);
+				}
+			}
+		} catch (IOException ex) {
+			LOGGER.warn("[WDL] Failed to read header of region file {}", regionFile, ex);
+			return new Region();
+		}
+		return region;
+	}
+
+	/**
+	 * Records that the given chunk was just written.
+	 *
+	 * @param timestamp The chunk's new timestamp in the region file.
+	 * @param sectors   The number of sectors it now uses.
+	 */
+	public synchronized void update(int chunkX, int chunkZ, int timestamp, int sectors) {
+		long key = ChunkPos.asLong(chunkX >> 5, chunkZ >> 5);
+		Region region = regions.get(key);
+		if (region == null) {
+			region = new Region();
+			regions.put(key, region);
+		}
+		int index = getIndex(chunkX, chunkZ);
+		if (region.timestamps[index] == 0) {
+			chunkCount++;
+		}
+		region.timestamps[index] = (timestamp != 0 ? timestamp : 1);
+		region.sectors[index] = (byte) sectors;
+		region.written = true;
+		dirty = true;
+	}
+
+	/**
+	 * Checks whether the given chunk exists in its region file.
+	 */
+	public synchronized boolean hasChunk(int chunkX, int chunkZ) {
+		return getTimestamp(chunkX, chunkZ) != 0;
+	}
+
+	/**
+	 * Gets the time the given chunk was last written, in seconds since the
+	 * epoch, or 0 if it doesn't exist.
+	 */
+	public synchronized int getTimestamp(int chunkX, int chunkZ) {
+		Region region = regions.get(ChunkPos.asLong(chunkX >> 5, chunkZ >> 5));
+		return region != null ? region.timestamps[getIndex(chunkX, chunkZ)] : 0;
+	}
+
+	/**
+	 * Gets the size of the given chunk in its region file, in bytes (rounded
+	 * up to whole sectors), or 0 if it doesn't exist.
+	 */
+	public synchronized int getSize(int chunkX, int chunkZ) {
+		Region region = regions.get(ChunkPos.asLong(chunkX >> 5, chunkZ >> 5));
+		return region != null ? (region.sectors[getIndex(chunkX, chunkZ)] & 0xFF) * WDLRegionFile.SECTOR_SIZE : 0;
+	}
+
+	/**
+	 * Gets a copy of the timestamps of the chunks in the given region, indexed
+	 * by <code>x + z * 32</code> within the region.
+	 *
+	 * @return The timestamps, or null if there is no such region file.
+	 */
+	@Nullable
+	public synchronized int[] getRegionTimestamps(int regionX, int regionZ) {
+		Region region = regions.get(ChunkPos.asLong(regionX, regionZ));
+		return region != null ? region.timestamps.clone() : null;
+	}
+
+	/**
+	 * Counts the chunks that were written after the given time.
+	 *
+	 * @param time A time in seconds since the epoch.
+	 */
+	public synchronized int countChunksWrittenAfter(long time) {
+		int count = 0;
+		for (Region region : regions.values()) {
+			for (int timestamp : region.timestamps) {
+				if (timestamp != 0 && (timestamp & 0xFFFFFFFFL) > time) {
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Gets the number of chunks in all of the region files.
+	 */
+	public synchronized int getChunkCount() {
+		return chunkCount;
+	}
+
+	/**
+	 * Writes the index out, if it has changed.  Should be called once the
+	 * region files that were written to are closed, so that their current
+	 * modification times are recorded.
+	 */
+	public synchronized void save() throws IOException {
+		if (!dirty) {
+			return;
+		}
+		for (Long2ObjectMap.Entry<Region> e : regions.long2ObjectEntrySet()) {
+			Region region = e.getValue();
+			if (region.written) {
+				File regionFile = WDLRegionFile.getFile(regionFolder,
+						(int) e.getLongKey() << 5, (int) (e.getLongKey() >> 32) << 5);
+				region.fileModified = regionFile.lastModified();
+				region.fileLength = regionFile.length();
+				region.written = false;
+			}
+		}
+		file.getParentFile().mkdirs();
+		try (DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))) {
+			output.writeInt(MAGIC);
+			output.writeInt(VERSION);
+			output.writeInt(regions.size());
+			for (Long2ObjectMap.Entry<Region> e : regions.long2ObjectEntrySet()) {
+				Region region = e.getValue();
+				// Same layout as ChunkPos.asLong: x in the low bits, z in the high
+				output.writeInt((int) e.getLongKey());
+				output.writeInt((int) (e.getLongKey() >> 32));
+				output.writeLong(region.fileModified);
+				output.writeLong(region.fileLength);
+				for (int timestamp : region.timestamps) {
+					output.writeInt(timestamp);
+				}
+				output.write(region.sectors);
+			}
+		}
+		dirty = false;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "RegionCoverageIndex [file=" + file + ", regions=" + regions.size()
+				+ ", chunks=" + chunkCount + ", dirty=" + dirty + "]";
+	}
+}
@@ -0,0 +1,552 @@
+/*
+ * This file is part of World Downloader: A mod to make backups of your
+ * multiplayer worlds.
+ * http://www.minecraftforum.net/forums/mapping-and-modding/minecraft-mods/2520465
+ *
+ * Copyright (c) 2014 nairol, cubic72
+ * Copyright (c) 2019 Pokechu22, julialy
+ *
+ * This project is licensed under the MMPLv2.  The full text of the MMPL can be
+ * found in LICENSE.md, or online at https://github.com/iopleke/MMPLv2/blob/master/LICENSE.md
+ * For information about this the MMPLv2, see http://stopmodreposts.org/
+ *
+ * Do not redistribute (in modified or unmodified form) without prior permission.
+ */
+package wdl.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BiConsumer;
+import java.util.function.BooleanSupplier;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.util.math.ChunkPos;
+
+/**
+ * Writes chunks to the region files of a single dimension, in place of
+ * vanilla's single global <code>ThreadedFileIOBase</code> thread.
+ *
+ * Each region file belongs to exactly one lane, and each lane has its own
+ * thread, so different regions are compressed and written in parallel while
+ * all operations on a single region happen in the order they were requested.
+ * Region files are only ever touched by their lane's thread, so no locking is
+ * needed on them.
+ *
+ * Every request returns a future that completes once that chunk has been
+ * written (or read), and {@link #flush()} waits for exactly the work that is
+ * outstanding.
+ *
+ * A hash of each chunk written is kept in a {@link ChunkHashIndex} next to the
+ * region folder, and chunks that are identical to what is already on disk are
+ * not written again.  The save time and size of each chunk is also recorded in
+ * the dimension's {@link RegionCoverageIndex}.
+ *
+ * Chunks are serialized and hashed on the calling thread, and the serialized
+ * data of queued chunks is limited to a fixed amount of memory.  Past that,
+ * chunks are compressed on the calling thread and appended to a
+ * {@link SpillFile}, from which their lane later reads them back; callers can
+ * use {@link #isOverMemoryLimit()} to hold off on producing more chunks.
+ */
+public class RegionWriter {
+	private static final Logger LOGGER = LogManager.getLogger();
+
+	/**
+	 * Memory limit used when none is given, in bytes; matches the default of
+	 * {@link wdl.config.settings.MiscSettings#PENDING_SAVE_MEMORY}.
+	 */
+	static final long DEFAULT_MEMORY_LIMIT = 64L * 1024 * 1024;
+
+	/**
+	 * Reads a chunk's NBT data from a region file.
+	 */
+	@FunctionalInterface
+	public static interface ChunkReader<T> {
+		/**
+		 * @param input The uncompressed NBT data of the chunk.
+		 */
+		T read(DataInputStream input) throws IOException;
+	}
+
+	/**
+	 * Maximum number of region files, and separately of hash indexes, that
+	 * each lane keeps open.  Past this, the least recently used one is closed
+	 * (or saved), as with vanilla's <code>RegionFileCache</code>.
+	 */
+	static final int MAX_OPEN_REGIONS = 64;
+
+	private static class Lane {
+		final ThreadPoolExecutor executor;
+		/** Number of chunks queued on this lane that haven't been written. */
+		final AtomicInteger pending = new AtomicInteger();
+		/**
+		 * Open region files, keyed by packed region position, least recently
+		 * used first.  Only used on the lane's thread.
+		 */
+		final Map<Long, WDLRegionFile> regionFiles = new LinkedHashMap<Long, WDLRegionFile>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, WDLRegionFile> eldest) {
+				if (size() <= MAX_OPEN_REGIONS) {
+					return false;
+				}
+				closeRegionFile(eldest.getValue());
+				return true;
+			}
+		};
+		/**
+		 * Chunk hashes of recently used regions, keyed and ordered the same
+		 * way.  Only used on the lane's thread.
+		 */
+		final Map<Long, ChunkHashIndex> hashIndexes = new LinkedHashMap<Long, ChunkHashIndex>(16, 0.75f, true) {
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Long, ChunkHashIndex> eldest) {
+				if (size() <= MAX_OPEN_REGIONS) {
+					return false;
+				}
+				saveHashIndex(eldest.getValue());
+				return true;
+			}
+		};
+
+		Lane(int id) {
+			this.executor = new ThreadPoolExecutor(1, 1, 10, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<>(),
+					new ThreadFactoryBuilder().setNameFormat("WDL Region Writer " + id).setDaemon(true).build());
+			this.executor.allowCoreThreadTimeOut(true);
+		}
+
+		void closeRegionFiles() {
+			for (WDLRegionFile regionFile : regionFiles.values()) {
+				closeRegionFile(regionFile);
+			}
+			regionFiles.clear();
+			for (ChunkHashIndex hashIndex : hashIndexes.values()) {
+				saveHashIndex(hashIndex);
+			}
+			hashIndexes.clear();
+		}
+
+		private static void closeRegionFile(WDLRegionFile regionFile) {
+			try {
+				regionFile.close();
+			} catch (IOException ex) {
+				LOGGER.warn("[WDL] Failed to close region file {}", regionFile.getFile(), ex);
+			}
+		}
+
+		private static void saveHashIndex(ChunkHashIndex hashIndex) {
+			try {
+				hashIndex.save();
+			} catch (IOException ex) {
+				LOGGER.warn("[WDL] Failed to save {}", hashIndex, ex);
+			}
+		}
+	}
+
+	private final File regionFolder;
+	private final File hashFolder;
+	private final RegionCoverageIndex coverage;
+	private final Lane[] lanes;
+	/** Number of chunks that were not written because they hadn't changed. */
+	private final AtomicInteger elidedWrites = new AtomicInteger();
+	/** Maximum size of the serialized NBT of queued chunks, in bytes. */
+	private final long memoryLimit;
+	/** Size of the serialized NBT of queued chunks, in bytes. */
+	private final AtomicLong pendingBytes = new AtomicLong();
+	/** Chunks that didn't fit in the memory limit. */
+	private final SpillFile spillFile = new SpillFile();
+	/** Region reads that haven't finished; {@link #flush()} waits for them. */
+	private final Set<CompletableFuture<Void>> regionReads = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * A ByteArrayOutputStream that exposes its buffer rather than copying it.
+	 */
+	private static class Buffer extends ByteArrayOutputStream {
+		Buffer() {
+			super(256 * 1024);
+		}
+
+		byte[] getBuffer() {
+			return buf;
+		}
+	}
+
+	/**
+	 * Buffers for the uncompressed NBT of the chunk being hashed and
+	 * compressed, reused between chunks on each lane's thread and on threads
+	 * that spill chunks.
+	 */
+	private static final ThreadLocal<Buffer> BUFFERS = ThreadLocal.withInitial(Buffer::new);
+
+	/**
+	 * Creates a writer with no limit on the memory used by queued chunks.
+	 *
+	 * @param regionFolder The <code>region</code> folder to write to.
+	 * @param threads      The number of lanes (and thus threads) to use.
+	 */
+	public RegionWriter(File regionFolder, int threads) {
+		this(regionFolder, threads, Long.MAX_VALUE);
+	}
+
+	/**
+	 * @param regionFolder The <code>region</code> folder to write to.
+	 * @param threads      The number of lanes (and thus threads) to use.
+	 * @param memoryLimit  The maximum size of the serialized NBT of queued
+	 *                     chunks, in bytes, before further chunks are spilled
+	 *                     to disk.  0 or less uses {@link #DEFAULT_MEMORY_LIMIT}.
+	 */
+	public RegionWriter(File regionFolder, int threads, long memoryLimit) {
+		this.regionFolder = regionFolder;
+		this.memoryLimit = memoryLimit > 0 ? memoryLimit : DEFAULT_MEMORY_LIMIT;
+		this.hashFolder = new File(regionFolder.getParentFile(), "wdl_region_hashes");
+		this.coverage = RegionCoverageIndex.load(regionFolder);
+		this.lanes = new Lane[Math.max(threads, 1)];
+		for (int i = 0; i < lanes.length; i++) {
+			lanes[i] = new Lane(i);
+		}
+	}
+
+	private Lane getLane(ChunkPos pos) {
+		int regionX = pos.x >> 5, regionZ = pos.z >> 5;
+		return lanes[Math.floorMod(regionX * 31 + regionZ, lanes.length)];
+	}
+
+	/**
+	 * Gets the region file for the given chunk, opening it if needed. Must
+	 * only be called on the lane's thread.
+	 *
+	 * @param write Whether the file will be written to.  If not, it is opened
+	 *              read-only, so that reading a region that doesn't exist
+	 *              doesn't create an empty file for it.
+	 */
+	private WDLRegionFile getRegionFile(Lane lane, ChunkPos pos, boolean write) throws IOException {
+		Long key = getRegionKey(pos);
+		WDLRegionFile regionFile = lane.regionFiles.get(key);
+		if (regionFile != null && write && regionFile.isReadOnly()) {
+			// Only read so far; reopen it for writing
+			lane.regionFiles.remove(key);
+			regionFile.close();
+			regionFile = null;
+		}
+		if (regionFile == null) {
+			regionFile = new WDLRegionFile(WDLRegionFile.getFile(regionFolder, pos.x, pos.z), !write);
+			lane.regionFiles.put(key, regionFile);
+		}
+		return regionFile;
+	}
+
+	/**
+	 * Gets the hash index for the given chunk's region, loading it if needed.
+	 * Must only be called on the lane's thread.
+	 */
+	private ChunkHashIndex getHashIndex(Lane lane, ChunkPos pos) {
+		return lane.hashIndexes.computeIfAbsent(getRegionKey(pos),
+				key -> new ChunkHashIndex(ChunkHashIndex.getFile(hashFolder, pos.x, pos.z)));
+	}
+
+	private static long getRegionKey(ChunkPos pos) {
+		int regionX = pos.x >> 5, regionZ = pos.z >> 5;
+		return ((long) regionX << 32) | (regionZ & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Queues the given chunk to be compressed and written.  The chunk is
+	 * serialized and hashed on this thread; if it is identical (apart from its
+	 * timestamps) to the version already in the region file, nothing is
+	 * compressed or written.
+	 *
+	 * @param pos The position of the chunk
+	 * @param tag The root tag of the chunk.  It is serialized before this
+	 *            returns, so it may be modified afterwards.
+	 * @return A future that completes once the chunk has been written.
+	 */
+	public CompletableFuture<Void> write(ChunkPos pos, NBTTagCompound tag) {
+		Buffer buffer = BUFFERS.get();
+		buffer.reset();
+		long hash;
+		try {
+			hash = ChunkHashIndex.write(tag, buffer);
+		} catch (IOException ex) {
+			CompletableFuture<Void> future = new CompletableFuture<>();
+			future.completeExceptionally(new UncheckedIOException(ex));
+			return future;
+		}
+
+		long queued = pendingBytes.get();
+		if (queued > 0 && queued + buffer.size() > memoryLimit) {
+			return spill(pos, hash, buffer);
+		}
+
+		byte[] uncompressed = Arrays.copyOf(buffer.getBuffer(), buffer.size());
+		Lane lane = getLane(pos);
+		lane.pending.incrementAndGet();
+		pendingBytes.addAndGet(uncompressed.length);
+		return CompletableFuture.runAsync(() -> {
+			try {
+				if (!isUnchanged(lane, pos, hash)) {
+					byte[] data = Compression.deflate(uncompressed, uncompressed.length);
+					store(lane, pos, hash, data, data.length);
+				}
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			} finally {
+				pendingBytes.addAndGet(-uncompressed.length);
+				lane.pending.decrementAndGet();
+			}
+		}, lane.executor);
+	}
+
+	/**
+	 * Compresses the given serialized chunk on this thread and appends it to
+	 * the spill file, and then queues it to be copied into its region file.
+	 */
+	private CompletableFuture<Void> spill(ChunkPos pos, long hash, Buffer buffer) {
+		SpillFile.Entry entry;
+		try {
+			byte[] data = Compression.deflate(buffer.getBuffer(), buffer.size());
+			entry = spillFile.append(data, data.length);
+		} catch (IOException ex) {
+			CompletableFuture<Void> future = new CompletableFuture<>();
+			future.completeExceptionally(new UncheckedIOException(ex));
+			return future;
+		}
+
+		Lane lane = getLane(pos);
+		lane.pending.incrementAndGet();
+		return CompletableFuture.runAsync(() -> {
+			try {
+				byte[] data = spillFile.read(entry);
+				if (!isUnchanged(lane, pos, hash)) {
+					store(lane, pos, hash, data, data.length);
+				}
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			} finally {
+				lane.pending.decrementAndGet();
+			}
+		}, lane.executor);
+	}
+
+	/**
+	 * Checks whether the given chunk is already on disk with the given hash,
+	 * counting it as elided if so.  Must only be called on the lane's thread.
+	 */
+	private boolean isUnchanged(Lane lane, ChunkPos pos, long hash) throws IOException {
+		// Opened for writing, as the chunk is written unless it matches
+		if (getHashIndex(lane, pos).matches(getRegionFile(lane, pos, true), pos.x, pos.z, hash)) {
+			elidedWrites.incrementAndGet();
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Writes compressed chunk data to its region file and records its hash.
+	 * Must only be called on the lane's thread.
+	 */
+	private void store(Lane lane, ChunkPos pos, long hash, byte[] data, int length) throws IOException {
+		WDLRegionFile regionFile = getRegionFile(lane, pos, true);
+		regionFile.write(pos.x, pos.z, data, length);
+		getHashIndex(lane, pos).put(regionFile, pos.x, pos.z, hash);
+		coverage.update(pos.x, pos.z, regionFile.getTimestamp(pos.x, pos.z),
+				regionFile.getSectorCount(pos.x, pos.z));
+	}
+
+	/**
+	 * Reads the given chunk, after any writes to it that are already queued.
+	 *
+	 * @param pos    The position of the chunk
+	 * @param reader Used to read the chunk's data; runs on the lane's thread.
+	 * @return A future with the result of the reader, or null if the chunk has
+	 *         not been saved.
+	 */
+	public <T> CompletableFuture<T> read(ChunkPos pos, ChunkReader<T> reader) {
+		Lane lane = getLane(pos);
+		return CompletableFuture.supplyAsync(() -> {
+			try (DataInputStream input = getRegionFile(lane, pos, false).read(pos.x, pos.z)) {
+				if (input == null) {
+					return null;
+				}
+				return reader.read(input);
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+		}, lane.executor);
+	}
+
+	/**
+	 * Reads every chunk in the given region, after any writes to it that are
+	 * already queued. Chunks that fail to read are logged and skipped.
+	 *
+	 * The region is read one row of chunks at a time, with the next row only
+	 * queued once the previous one is done, so that chunks queued for writing
+	 * in the meantime don't wait for the whole region to be read.
+	 *
+	 * @param regionX  The X coordinate of the region (chunk X divided by 32)
+	 * @param regionZ  The Z coordinate of the region
+	 * @param reader   Used to read each chunk's data; runs on the lane's thread.
+	 * @param consumer Given the result for each chunk that exists; also runs
+	 *                 on the lane's thread.
+	 * @param cancelled Checked before each row; once it returns true, no
+	 *                 further rows are read.
+	 * @return A future that completes once the whole region has been read,
+	 *         or the read was cancelled.
+	 */
+	public <T> CompletableFuture<Void> readRegion(int regionX, int regionZ, ChunkReader<T> reader,
+			BiConsumer<ChunkPos, T> consumer, BooleanSupplier cancelled) {
+		ChunkPos first = new ChunkPos(regionX << 5, regionZ << 5);
+		CompletableFuture<Void> future = readRegionRow(getLane(first), first, 0, reader, consumer, cancelled);
+		regionReads.add(future);
+		future.whenComplete((result, ex) -> regionReads.remove(future));
+		return future;
+	}
+
+	/**
+	 * Reads the given row of a region, and then queues the next one.
+	 *
+	 * @param first The first chunk in the region.
+	 * @param z     The row to read, from 0 to 31.
+	 */
+	private <T> CompletableFuture<Void> readRegionRow(Lane lane, ChunkPos first, int z,
+			ChunkReader<T> reader, BiConsumer<ChunkPos, T> consumer, BooleanSupplier cancelled) {
+		CompletableFuture<Void> row = CompletableFuture.runAsync(() -> {
+			if (cancelled.getAsBoolean()) {
+				return;
+			}
+			try {
+				WDLRegionFile regionFile = getRegionFile(lane, first, false);
+				for (int x = 0; x < 32; x++) {
+					ChunkPos pos = new ChunkPos(first.x + x, first.z + z);
+					try (DataInputStream input = regionFile.read(pos.x, pos.z)) {
+						if (input != null) {
+							consumer.accept(pos, reader.read(input));
+						}
+					} catch (IOException ex) {
+						LOGGER.warn("[WDL] Failed to read chunk at {} from {}", pos, regionFile.getFile(), ex);
+					}
+				}
+			} catch (IOException ex) {
+				throw new UncheckedIOException(ex);
+			}
+		}, lane.executor);
+		if (z == 31) {
+			return row;
+		}
+		return row.thenCompose(result -> cancelled.getAsBoolean()
+				? CompletableFuture.completedFuture(null)
+				: readRegionRow(lane, first, z + 1, reader, consumer, cancelled));
+	}
+
+	/**
+	 * Waits for all queued chunks to be written, and then closes all open
+	 * region files and saves their hash indexes and the coverage index.
+	 * Region files are reopened if more chunks are written later.
+	 */
+	public void flush() throws InterruptedException, ExecutionException {
+		// Each row of a region read is only queued once the previous one is
+		// done, so rows could otherwise reopen region files after the
+		// barriers below have closed them.  Failed reads have already been
+		// reported to whoever started them.
+		CompletableFuture.allOf(regionReads.toArray(new CompletableFuture<?>[0]))
+				.handle((result, ex) -> null).get();
+		CompletableFuture<?>[] barriers = new CompletableFuture<?>[lanes.length];
+		for (int i = 0; i < lanes.length; i++) {
+			Lane lane = lanes[i];
+			barriers[i] = CompletableFuture.runAsync(lane::closeRegionFiles, lane.executor);
+		}
+		CompletableFuture.allOf(barriers).get();
+		try {
+			coverage.save();
+		} catch (IOException ex) {
+			LOGGER.warn("[WDL] Failed to save {}", coverage, ex);
+		}
+		try {
+			spillFile.closeIfEmpty();
+		} catch (IOException ex) {
+			LOGGER.warn("[WDL] Failed to close {}", spillFile, ex);
+		}
+	}
+
+	/**
+	 * Gets the coverage index of the region folder, which is kept up to date
+	 * as chunks are written.
+	 */
+	public RegionCoverageIndex getCoverageIndex() {
+		return coverage;
+	}
+
+	/**
+	 * Gets the number of chunks that have been queued but not yet written.
+	 */
+	public int getNumPendingChunks() {
+		int total = 0;
+		for (Lane lane : lanes) {
+			total += lane.pending.get();
+		}
+		return total;
+	}
+
+	/**
+	 * Gets the number of chunks that have been queued but not yet written, for
+	 * each lane.
+	 */
+	public int[] getNumPendingChunksPerLane() {
+		int[] pending = new int[lanes.length];
+		for (int i = 0; i < lanes.length; i++) {
+			pending[i] = lanes[i].pending.get();
+		}
+		return pending;
+	}
+
+	/**
+	 * Checks whether the chunks waiting to be written use up the memory limit,
+	 * in which case further chunks are spilled to disk.  Callers that can
+	 * wait should avoid queuing more chunks until this is false.
+	 */
+	public boolean isOverMemoryLimit() {
+		return pendingBytes.get() >= memoryLimit;
+	}
+
+	/**
+	 * Gets the total number of chunks that were spilled to disk because of
+	 * the memory limit.
+	 */
+	public long getNumSpilledChunks() {
+		return spillFile.getTotalSpilled();
+	}
+
+	/**
+	 * Gets the number of chunks that were not written because they were
+	 * identical to the version already on disk.
+	 */
+	public int getNumElidedWrites() {
+		return elidedWrites.get();
+	}
+
+	@Override
+	public String toString() {
+		return "RegionWriter [regionFolder=" + regionFolder + ", pending="
+				+ Arrays.toString(getNumPendingChunksPerLane()) + ", pendingBytes="
+				+ pendingBytes.get() + ", elidedWrites=" + elidedWrites.get()
+				+ ", spillFile=" + spillFile + "]";
+	}
+}
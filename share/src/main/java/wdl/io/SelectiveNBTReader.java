@@ -0,0 +1,255 @@
+/*
+ * This file is part of World Downloader: A mod to make backups of your
+ * multiplayer worlds.
+ * http://www.minecraftforum.net/forums/mapping-and-modding/minecraft-mods/2520465
+ *
+ * Copyright (c) 2014 nairol, cubic72
+ * Copyright (c) 2019 Pokechu22, julialy
+ *
+ * This project is licensed under the MMPLv2.  The full text of the MMPL can be
+ * found in LICENSE.md, or online at https://github.com/iopleke/MMPLv2/blob/master/LICENSE.md
+ * For information about this the MMPLv2, see http://stopmodreposts.org/
+ *
+ * Do not redistribute (in modified or unmodified form) without prior permission.
+ */
+package wdl.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import javax.annotation.Nullable;
+
+import net.minecraft.nbt.CompressedStreamTools;
+import net.minecraft.nbt.NBTTagCompound;
+
+/**
+ * Reads only specific parts of an NBT structure, such as
+ * <code>Level.TileEntities</code> from a chunk, without creating tags for the
+ * rest of it. Unwanted tags are skipped based on their lengths as the stream
+ * is read.
+ *
+ * The result has the same structure as the full tag would have, but only
+ * contains the requested paths (and the compounds leading to them). Wanted tags
+ * are parsed by {@link CompressedStreamTools}, so they are identical to what a
+ * full read would produce.
+ *
+ * Instances are immutable and may be shared between threads.
+ */
+public class SelectiveNBTReader {
+	/** Maximum nesting depth, matching vanilla's limit. */
+	private static final int MAX_DEPTH = 512;
+
+	private static final byte TAG_END = 0;
+	private static final byte TAG_COMPOUND = 10;
+
+	/**
+	 * A node in the tree of requested paths.
+	 */
+	private static class Node {
+		final Map<String, Node> children = new HashMap<>();
+		/** If true, this entire tag is wanted. */
+		boolean whole;
+	}
+
+	private final Node root = new Node();
+
+	/**
+	 * @param paths The paths to read, with names separated by dots, e.g.
+	 *              <code>Level.TileEntities</code>.
+	 */
+	public SelectiveNBTReader(String... paths) {
+		for (String path : paths) {
+			Node node = root;
+			for (String name : path.split("\\.")) {
+				node = node.children.computeIfAbsent(name, k -> new Node());
+			}
+			node.whole = true;
+		}
+	}
+
+	/**
+	 * Reads the requested paths from an uncompressed NBT stream, which must
+	 * have a compound as its root tag.
+	 */
+	public NBTTagCompound read(DataInput input) throws IOException {
+		byte type = input.readByte();
+		if (type != TAG_COMPOUND) {
+			throw new IOException("Root tag must be a compound, but was type " + type);
+		}
+		input.readUTF();
+		return readCompound(input, root, 0);
+	}
+
+	private NBTTagCompound readCompound(DataInput input, Node node, int depth) throws IOException {
+		checkDepth(depth);
+
+		// Wanted tags are copied as-is into a new root compound, which is
+		// parsed normally once the end of this compound is reached.
+		ByteArrayOutputStream wantedBytes = null;
+		DataOutputStream wanted = null;
+		Map<String, NBTTagCompound> children = null;
+
+		byte type;
+		while ((type = input.readByte()) != TAG_END) {
+			String name = input.readUTF();
+			Node child = node.children.get(name);
+			if (child == null) {
+				transfer(input, null, type, depth + 1);
+			} else if (child.whole) {
+				if (wanted == null) {
+					wantedBytes = new ByteArrayOutputStream();
+					wanted = new DataOutputStream(wantedBytes);
+					wanted.writeByte(TAG_COMPOUND);
+					wanted.writeUTF("");
+				}
+				wanted.writeByte(type);
+				wanted.writeUTF(name);
+				transfer(input, wanted, type, depth + 1);
+			} else if (type == TAG_COMPOUND) {
+				if (children == null) {
+					children = new LinkedHashMap<>();
+				}
+				children.put(name, readCompound(input, child, depth + 1));
+			} else {
+				// A path goes through something that isn't a compound
+				transfer(input, null, type, depth + 1);
+			}
+		}
+
+		NBTTagCompound result;
+		if (wanted != null) {
+			wanted.writeByte(TAG_END);
+			result = CompressedStreamTools.read(new DataInputStream(
+					new ByteArrayInputStream(wantedBytes.toByteArray())));
+		} else {
+			result = new NBTTagCompound();
+		}
+		if (children != null) {
+			for (Map.Entry<String, NBTTagCompound> e : children.entrySet()) {
+				result.put(e.getKey(), e.getValue());
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * Reads the payload of a tag of the given type, either copying it to the
+	 * given output or skipping it.
+	 *
+	 * @param output Where to copy the payload, or null to skip it.
+	 */
+	private static void transfer(DataInput input, @Nullable DataOutput output, byte type, int depth) throws IOException {
+		checkDepth(depth);
+		switch (type) {
+		case 1: // Byte
+			transferBytes(input, output, 1);
+			return;
+		case 2: // Short
+			transferBytes(input, output, 2);
+			return;
+		case 3: // Int
+		case 5: // Float
+			transferBytes(input, output, 4);
+			return;
+		case 4: // Long
+		case 6: // Double
+			transferBytes(input, output, 8);
+			return;
+		case 7: // Byte array
+			transferBytes(input, output, (long) transferLength(input, output));
+			return;
+		case 8: { // String
+			int length = input.readUnsignedShort();
+			if (output != null) {
+				output.writeShort(length);
+			}
+			transferBytes(input, output, length);
+			return;
+		}
+		case 9: { // List
+			byte elementType = input.readByte();
+			if (output != null) {
+				output.writeByte(elementType);
+			}
+			int length = transferLength(input, output);
+			for (int i = 0; i < length; i++) {
+				transfer(input, output, elementType, depth + 1);
+			}
+			return;
+		}
+		case 10: { // Compound
+			byte childType;
+			while ((childType = input.readByte()) != TAG_END) {
+				if (output != null) {
+					output.writeByte(childType);
+				}
+				int nameLength = input.readUnsignedShort();
+				if (output != null) {
+					output.writeShort(nameLength);
+				}
+				transferBytes(input, output, nameLength);
+				transfer(input, output, childType, depth + 1);
+			}
+			if (output != null) {
+				output.writeByte(TAG_END);
+			}
+			return;
+		}
+		case 11: // Int array
+			transferBytes(input, output, 4L * transferLength(input, output));
+			return;
+		case 12: // Long array
+			transferBytes(input, output, 8L * transferLength(input, output));
+			return;
+		default:
+			throw new IOException("Unknown NBT tag type " + type);
+		}
+	}
+
+	private static int transferLength(DataInput input, @Nullable DataOutput output) throws IOException {
+		int length = input.readInt();
+		if (length < 0) {
+			throw new IOException("Negative NBT length " + length);
+		}
+		if (output != null) {
+			output.writeInt(length);
+		}
+		return length;
+	}
+
+	private static void transferBytes(DataInput input, @Nullable DataOutput output, long count) throws IOException {
+		if (output == null) {
+			while (count > 0) {
+				int skipped = input.skipBytes((int) Math.min(count, Integer.MAX_VALUE));
+				if (skipped <= 0) {
+					// skipBytes may give up early; readByte will throw at EOF
+					input.readByte();
+					skipped = 1;
+				}
+				count -= skipped;
+			}
+		} else {
+			byte[] buffer = new byte[(int) Math.min(count, 4096)];
+			while (count > 0) {
+				int length = (int) Math.min(count, buffer.length);
+				input.readFully(buffer, 0, length);
+				output.write(buffer, 0, length);
+				count -= length;
+			}
+		}
+	}
+
+	private static void checkDepth(int depth) throws IOException {
+		if (depth > MAX_DEPTH) {
+			throw new IOException("Tried to read NBT tag with too high complexity, depth > " + MAX_DEPTH);
+		}
+	}
+}
@@ -0,0 +1,144 @@
+/*
+ * This file is part of World Downloader: A mod to make backups of your
+ * multiplayer worlds.
+ * http://www.minecraftforum.net/forums/mapping-and-modding/minecraft-mods/2520465
+ *
+ * Copyright (c) 2014 nairol, cubic72
+ * Copyright (c) 2019 Pokechu22, julialy
+ *
+ * This project is licensed under the MMPLv2.  The full text of the MMPL can be
+ * found in LICENSE.md, or online at https://github.com/iopleke/MMPLv2/blob/master/LICENSE.md
+ * For information about this the MMPLv2, see http://stopmodreposts.org/
+ *
+ * Do not redistribute (in modified or unmodified form) without prior permission.
+ */
+package wdl.io;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import javax.annotation.Nullable;
+
+/**
+ * A temporary append-only file holding compressed chunks that didn't fit in
+ * {@link RegionWriter}'s memory limit, until their lane gets to them.
+ *
+ * The file is created when first needed, and truncated whenever every chunk
+ * in it has been read back, so it only grows while the writer is behind.
+ * Appends and reads may happen on any thread.
+ */
+class SpillFile {
+	/**
+	 * Location of a chunk in the file.
+	 */
+	static class Entry {
+		final long offset;
+		final int length;
+
+		Entry(long offset, int length) {
+			this.offset = offset;
+			this.length = length;
+		}
+	}
+
+	@Nullable
+	private File file;
+	@Nullable
+	private RandomAccessFile randomAccessFile;
+	@Nullable
+	private FileChannel channel;
+	/** Position the next chunk will be appended at. */
+	private long end;
+	/** Number of appended chunks that haven't been read back yet. */
+	private int outstanding;
+	private long totalSpilled;
+
+	/**
+	 * Appends the given data.
+	 *
+	 * @return Where the data was written, to be passed to {@link #read}.
+	 */
+	synchronized Entry append(byte[] data, int length) throws IOException {
+		if (channel == null) {
+			file = File.createTempFile("wdl-spill", ".bin");
+			file.deleteOnExit();
+			randomAccessFile = new RandomAccessFile(file, "rw");
+			channel = randomAccessFile.getChannel();
+		}
+		ByteBuffer buffer = ByteBuffer.wrap(data, 0, length);
+		long position = end;
+		while (buffer.hasRemaining()) {
+			position += channel.write(buffer, position);
+		}
+		Entry entry = new Entry(end, length);
+		end = position;
+		outstanding++;
+		totalSpilled++;
+		return entry;
+	}
+
+	/**
+	 * Reads back the given chunk.  Each entry must be read exactly once.
+	 */
+	synchronized byte[] read(Entry entry) throws IOException {
+		try {
+			ByteBuffer buffer = ByteBuffer.allocate(entry.length);
+			long position = entry.offset;
+			while (buffer.hasRemaining()) {
+				int read = channel.read(buffer, position);
+				if (read < 0) {
+					throw new EOFException("Spilled chunk at " + entry.offset + " is past the end of " + file);
+				}
+				position += read;
+			}
+			return buffer.array();
+		} finally {
+			outstanding--;
+			if (outstanding == 0) {
+				// Everything has been drained; start over from the beginning
+				channel.truncate(0);
+				end = 0;
+			}
+		}
+	}
+
+	/**
+	 * Gets the number of chunks in the file that haven't been read back yet.
+	 */
+	synchronized int getOutstanding() {
+		return outstanding;
+	}
+
+	/**
+	 * Gets the total number of chunks that have been appended.
+	 */
+	synchronized long getTotalSpilled() {
+		return totalSpilled;
+	}
+
+	/**
+	 * Closes and deletes the file, if nothing in it is still needed.  It is
+	 * recreated if more chunks are appended later.
+	 */
+	synchronized void closeIfEmpty() throws IOException {
+		if (channel == null || outstanding != 0) {
+			return;
+		}
+		randomAccessFile.close();
+		file.delete();
+		randomAccessFile = null;
+		channel = null;
+		file = null;
+		end = 0;
+	}
+
+	@Override
+	public synchronized String toString() {
+		return "SpillFile [file=" + file + ", size=" + end + ", outstanding=" + outstanding
+				+ ", totalSpilled=" + totalSpilled + "]";
+	}
+}
@@ -0,0 +1,449 @@
+/*
+ * This file is part of World Downloader: A mod to make backups of your
+ * multiplayer worlds.
+ * http://www.minecraftforum.net/forums/mapping-and-modding/minecraft-mods/2520465
+ *
+ * Copyright (c) 2014 nairol, cubic72
+ * Copyright (c) 2019 Pokechu22, julialy
+ *
+ * This project is licensed under the MMPLv2.  The full text of the MMPL can be
+ * found in LICENSE.md, or online at https://github.com/iopleke/MMPLv2/blob/master/LICENSE.md
+ * For information about this the MMPLv2, see http://stopmodreposts.org/
+ *
+ * Do not redistribute (in modified or unmodified form) without prior permission.
+ */
+package wdl.io;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.BitSet;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.annotation.Nullable;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+/**
+ * A single anvil region file (<code>r.x.z.mca</code>), holding 32 by 32
+ * chunks. This is equivalent to vanilla's <code>RegionFile</code>, and uses
+ * the same format, but is owned by WDL so that it is not shared with (or
+ * closed by) vanilla code.
+ *
+ * The file starts with two sectors of header: one with the location of each
+ * chunk (sector offset and sector count), and one with the time each chunk was
+ * last written. Each chunk is stored as its length, a compression type, and
+ * then the compressed data, padded out to a whole number of sectors.
+ *
+ * Chunks are decompressed as they are read rather than all at once.  Files
+ * opened read-only are read through a single memory mapping, made when the
+ * file is opened, so that only the pages actually read are loaded; files
+ * opened for writing are read with plain reads instead, as they would need to
+ * be remapped whenever they grow, and old mappings are only released by the
+ * garbage collector (keeping the file locked on Windows until then).
+ *
+ * A region file may be opened read-only, in which case it is never created
+ * or modified; a missing file then simply has no chunks.
+ *
+ * Instances are not thread-safe; {@link RegionWriter} only ever uses a given
+ * region file from a single thread.
+ */
+public class WDLRegionFile implements Closeable {
+	private static final Logger LOGGER = LogManager.getLogger();
+
+	/** Size of a sector, in bytes. */
+	public static final int SECTOR_SIZE = 4096;
+	/** Number of sectors used by the location and timestamp tables. */
+	private static final int HEADER_SECTORS = 2;
+	/** Largest number of sectors a chunk may use; the count is stored in a byte. */
+	private static final int MAX_SECTORS_PER_CHUNK = 255;
+	/** Bytes before the compressed data of a chunk: the length and compression type. */
+	private static final int CHUNK_HEADER_SIZE = 5;
+
+	public static final byte COMPRESSION_GZIP = 1;
+	public static final byte COMPRESSION_ZLIB = 2;
+
+	private static final byte[] ZEROS = new byte[SECTOR_SIZE];
+
+	private final File file;
+	private final boolean readOnly;
+	/** The open file, or null if it was opened read-only and doesn't exist. */
+	@Nullable
+	private final RandomAccessFile randomAccessFile;
+	@Nullable
+	private final FileChannel channel;
+	/** Sector offset (upper 24 bits) and count (lower 8 bits) of each chunk. */
+	private final int[] locations = new int[1024];
+	/** Time each chunk was last written, in seconds since the epoch. */
+	private final int[] timestamps = new int[1024];
+	/** Sectors that are currently in use by a chunk or the header. */
+	private final BitSet usedSectors = new BitSet();
+	/** Number of sectors in the file. */
+	private int sectorCount;
+	/**
+	 * Mapping of the whole file, for files opened read-only; null for files
+	 * opened for writing, or if mapping failed.
+	 */
+	@Nullable
+	private MappedByteBuffer mapped;
+	/**
+	 * Buffer that chunks are read into when the file isn't mapped.  Reused
+	 * between reads, as each read must be finished with before the next.
+	 */
+	private ByteBuffer readBuffer = ByteBuffer.allocate(0);
+
+	/**
+	 * Opens (or creates) the given region file for reading and writing.
+	 */
+	public WDLRegionFile(File file) throws IOException {
+		this(file, false);
+	}
+
+	/**
+	 * Opens the given region file.
+	 *
+	 * @param file     The file to open.
+	 * @param readOnly If true, the file is only read: it is not created if it
+	 *                 doesn't exist (it then has no chunks), and
+	 *                 {@link #write} can't be used.
+	 */
+	public WDLRegionFile(File file, boolean readOnly) throws IOException {
+		this.file = file;
+		this.readOnly = readOnly;
+		if (readOnly && !file.isFile()) {
+			this.randomAccessFile = null;
+			this.channel = null;
+			usedSectors.set(0, HEADER_SECTORS);
+			return;
+		}
+		if (!readOnly) {
+			File parent = file.getParentFile();
+			if (parent != null) {
+				parent.mkdirs();
+			}
+		}
+		this.randomAccessFile = new RandomAccessFile(file, readOnly ? "r" : "rw");
+		this.channel = randomAccessFile.getChannel();
+
+		try {
+			long length = channel.size();
+			if (length < HEADER_SECTORS * SECTOR_SIZE) {
+				// New (or truncated) file; start with an empty header.
+				if (!readOnly) {
+					for (int i = 0; i < HEADER_SECTORS; i++) {
+						writeFully(ByteBuffer.wrap(ZEROS), (long) i * SECTOR_SIZE);
+					}
+				}
+			} else {
+				ByteBuffer header = ByteBuffer.allocate(HEADER_SECTORS * SECTOR_SIZE);
+				readFully(header, 0);
+				header.flip();
+				IntBuffer ints = header.asIntBuffer();
+				ints.get(locations);
+				ints.get(timestamps);
+			}
+
+			length = channel.size();
+			if (!readOnly && (length % SECTOR_SIZE) != 0) {
+				// Pad the file to a whole number of sectors, as vanilla does
+				writeFully(ByteBuffer.wrap(ZEROS, 0, (int) (SECTOR_SIZE - (length % SECTOR_SIZE))), length);
+			}
+			this.sectorCount = (int) (channel.size() / SECTOR_SIZE);
+
+			usedSectors.set(0, HEADER_SECTORS);
+			for (int i = 0; i < locations.length; i++) {
+				int location = locations[i];
+				if (location == 0) {
+					continue;
+				}
+				int start = location >>> 8;
+				int count = location & 0xFF;
+				if (start < HEADER_SECTORS || start + count > sectorCount) {
+					LOGGER.warn("[WDL] Ignoring invalid location for chunk {} in {}: sectors {} to {} (file has {})",
+							i, file, start, start + count, sectorCount);
+					locations[i] = 0;
+					continue;
+				}
+				usedSectors.set(start, start + count);
+			}
+
+			if (readOnly) {
+				try {
+					mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+				} catch (IOException ex) {
+					LOGGER.warn("[WDL] Failed to memory-map {}; falling back to normal reads", file, ex);
+				}
+			}
+		} catch (IOException | RuntimeException ex) {
+			randomAccessFile.close();
+			throw ex;
+		}
+	}
+
+	/**
+	 * Gets the region file containing the given chunk.
+	 *
+	 * @param regionFolder The <code>region</code> folder of the dimension.
+	 */
+	public static File getFile(File regionFolder, int chunkX, int chunkZ) {
+		return new File(regionFolder, "r." + (chunkX >> 5) + "." + (chunkZ >> 5) + ".mca");
+	}
+
+	private static int getIndex(int chunkX, int chunkZ) {
+		return (chunkX & 31) + (chunkZ & 31) * 32;
+	}
+
+	/**
+	 * Checks whether this file was opened read-only.
+	 */
+	public boolean isReadOnly() {
+		return readOnly;
+	}
+
+	/**
+	 * Checks whether the given chunk has been saved in this file.
+	 */
+	public boolean hasChunk(int chunkX, int chunkZ) {
+		return locations[getIndex(chunkX, chunkZ)] != 0;
+	}
+
+	/**
+	 * Gets the time the given chunk was last written, in seconds since the
+	 * epoch, or 0 if it has not been written.
+	 */
+	public int getTimestamp(int chunkX, int chunkZ) {
+		return timestamps[getIndex(chunkX, chunkZ)];
+	}
+
+	/**
+	 * Gets the number of sectors used by the given chunk, or 0 if it has not
+	 * been written.
+	 */
+	public int getSectorCount(int chunkX, int chunkZ) {
+		return locations[getIndex(chunkX, chunkZ)] & 0xFF;
+	}
+
+	/**
+	 * Reads and decompresses the given chunk.  The stream uses this thread's
+	 * pooled inflater, so it must be finished with before the next read.
+	 *
+	 * @return A stream of the uncompressed NBT data, or null if the chunk has
+	 *         not been saved.
+	 */
+	@Nullable
+	public DataInputStream read(int chunkX, int chunkZ) throws IOException {
+		int location = locations[getIndex(chunkX, chunkZ)];
+		if (location == 0) {
+			return null;
+		}
+		int start = location >>> 8;
+		int count = location & 0xFF;
+
+		ByteBuffer buffer = getSectors(start, count);
+
+		int length = buffer.getInt();
+		if (length <= 0 || length > buffer.remaining()) {
+			throw new IOException("Invalid length " + length + " for chunk at " + chunkX + ", " + chunkZ + " in " + file);
+		}
+		byte compression = buffer.get();
+		buffer.limit(buffer.position() + length - 1);
+		// Inflated lazily as the caller reads, straight from the mapped file (or read buffer)
+		InputStream data = new ByteBufferInputStream(buffer.slice());
+		switch (compression) {
+		case COMPRESSION_GZIP:
+			return new DataInputStream(new BufferedInputStream(new GZIPInputStream(data)));
+		case COMPRESSION_ZLIB:
+			return new DataInputStream(new BufferedInputStream(new InflaterInputStream(data, Compression.getInflater())));
+		default:
+			throw new IOException("Unknown compression type " + compression + " for chunk at " + chunkX + ", " + chunkZ + " in " + file);
+		}
+	}
+
+	/**
+	 * Writes the given chunk, replacing any previous version of it.
+	 *
+	 * @param data   The zlib-compressed NBT data of the chunk.
+	 * @param length The number of bytes of data to use.
+	 */
+	public void write(int chunkX, int chunkZ, byte[] data, int length) throws IOException {
+		if (readOnly) {
+			throw new IllegalStateException("Can't write to " + file + "; it was opened read-only");
+		}
+		int sectorsNeeded = (length + CHUNK_HEADER_SIZE + SECTOR_SIZE - 1) / SECTOR_SIZE;
+		if (sectorsNeeded > MAX_SECTORS_PER_CHUNK) {
+			throw new IOException("Chunk at " + chunkX + ", " + chunkZ + " is too large to save (" + length + " bytes)");
+		}
+
+		int index = getIndex(chunkX, chunkZ);
+		int location = locations[index];
+		int start = location >>> 8;
+		int count = location & 0xFF;
+
+		if (location == 0 || count != sectorsNeeded) {
+			if (location != 0) {
+				usedSectors.clear(start, start + count);
+			}
+			start = findFreeSectors(sectorsNeeded);
+			usedSectors.set(start, start + sectorsNeeded);
+		}
+
+		ByteBuffer header = ByteBuffer.allocate(CHUNK_HEADER_SIZE);
+		header.putInt(length + 1);
+		header.put(COMPRESSION_ZLIB);
+		header.flip();
+		long position = (long) start * SECTOR_SIZE;
+		position += writeFully(header, position);
+		position += writeFully(ByteBuffer.wrap(data, 0, length), position);
+		int padding = sectorsNeeded * SECTOR_SIZE - length - CHUNK_HEADER_SIZE;
+		writeFully(ByteBuffer.wrap(ZEROS, 0, padding), position);
+		sectorCount = Math.max(sectorCount, start + sectorsNeeded);
+
+		// Only update the header once the data is in place
+		locations[index] = (start << 8) | sectorsNeeded;
+		timestamps[index] = (int) (System.currentTimeMillis() / 1000L);
+		writeHeaderEntry(index);
+	}
+
+	/**
+	 * Gets a buffer over the given sectors.  This is a view of the memory-mapped
+	 * file if there is one; otherwise, the sectors are read into
+	 * {@link #readBuffer}.
+	 */
+	private ByteBuffer getSectors(int start, int count) throws IOException {
+		long position = (long) start * SECTOR_SIZE;
+		int size = count * SECTOR_SIZE;
+
+		if (mapped != null && position + size <= mapped.capacity()) {
+			ByteBuffer view = mapped.duplicate();
+			view.limit((int) (position + size));
+			view.position((int) position);
+			return view.slice();
+		}
+
+		if (readBuffer.capacity() < size) {
+			readBuffer = ByteBuffer.allocate(size);
+		}
+		readBuffer.clear();
+		readBuffer.limit(size);
+		readFully(readBuffer, position);
+		readBuffer.flip();
+		return readBuffer;
+	}
+
+	/**
+	 * Finds the first run of unused sectors that is long enough, which may
+	 * extend past the end of the file.
+	 */
+	private int findFreeSectors(int needed) {
+		int start = usedSectors.nextClearBit(HEADER_SECTORS);
+		while (true) {
+			int end = usedSectors.nextSetBit(start);
+			if (end < 0 || end - start >= needed) {
+				return start;
+			}
+			start = usedSectors.nextClearBit(end);
+		}
+	}
+
+	private void writeHeaderEntry(int index) throws IOException {
+		ByteBuffer entry = ByteBuffer.allocate(4);
+		entry.putInt(0, locations[index]);
+		writeFully(entry, index * 4L);
+		entry.clear();
+		entry.putInt(0, timestamps[index]);
+		writeFully(entry, SECTOR_SIZE + index * 4L);
+	}
+
+	private void readFully(ByteBuffer buffer, long position) throws IOException {
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, position);
+			if (read < 0) {
+				throw new EOFException("Unexpected end of " + file + " at " + position);
+			}
+			position += read;
+		}
+	}
+
+	private int writeFully(ByteBuffer buffer, long position) throws IOException {
+		int total = 0;
+		while (buffer.hasRemaining()) {
+			int written = channel.write(buffer, position + total);
+			total += written;
+		}
+		return total;
+	}
+
+	/**
+	 * Gets the file this region is stored in.
+	 */
+	public File getFile() {
+		return file;
+	}
+
+	@Override
+	public void close() throws IOException {
+		// The mapping itself is released once it is garbage collected; it is
+		// only ever made once, for read-only files.
+		mapped = null;
+		if (randomAccessFile != null) {
+			randomAccessFile.close();
+		}
+	}
+
+	/**
+	 * An input stream over the remaining bytes of a buffer.
+	 */
+	private static class ByteBufferInputStream extends InputStream {
+		private final ByteBuffer buffer;
+
+		ByteBufferInputStream(ByteBuffer buffer) {
+			this.buffer = buffer;
+		}
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? (buffer.get() & 0xFF) : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (len == 0) {
+				return 0;
+			}
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+			len = Math.min(len, buffer.remaining());
+			buffer.get(b, off, len);
+			return len;
+		}
+
+		@Override
+		public long skip(long n) {
+			int skipped = (int) Math.max(0, Math.min(n, buffer.remaining()));
+			buffer.position(buffer.position() + skipped);
+			return skipped;
+		}
+
+		@Override
+		public int available() {
+			return buffer.remaining();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "WDLRegionFile [file=" + file + ", sectorCount=" + sectorCount + "]";
+	}
+}
@@ -0,0 +1,28 @@
+/*
+ * This file is part of World Downloader: A mod to make backups of your
+ * multiplayer worlds.
+ * http://www.minecraftforum.net/forums/mapping-and-modding/minecraft-mods/2520465
+ *
+ * Copyright (c) 2014 nairol, cubic72
+ * Copyright (c) 2019 Pokechu22, julialy
+ *
+ * This project is licensed under the MMPLv2.  The full text of the MMPL can be
+ * found in LICENSE.md, or online at https://github.com/iopleke/MMPLv2/blob/master/LICENSE.md
+ * For information about this the MMPLv2, see http://stopmodreposts.org/
+ *
+ * Do not redistribute (in modified or unmodified form) without prior permission.
+ */
+/**
+ * WDL's own region file input and output, used instead of vanilla's
+ * {@code RegionFileCache} and {@code ThreadedFileIOBase} when saving chunks.
+ * The files produced are normal anvil region files.
+ *
+ * Nothing in this package depends on the Minecraft version other than the NBT
+ * classes.
+ */
+@MethodsReturnNonnullByDefault
+@ParametersAreNonnullByDefault
+package wdl.io;
+
+import mcp.MethodsReturnNonnullByDefault;
+import javax.annotation.ParametersAreNonnullByDefault;
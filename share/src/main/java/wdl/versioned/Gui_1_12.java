@@ -24,6 +24,7 @@ import net.minecraft.client.network.NetHandlerPlayClient;
 import net.minecraft.client.renderer.BufferBuilder;
 import net.minecraft.client.renderer.GlStateManager;
 import net.minecraft.client.renderer.Tessellator;
+import net.minecraft.client.renderer.texture.DynamicTexture;
 import net.minecraft.client.renderer.vertex.DefaultVertexFormats;
 import net.minecraft.world.World;
 
@@ -156,4 +157,31 @@ final class GuiFunctions {
 	static void setClipboardString(String text) {
 		GuiScreen.setClipboardString(text);
 	}
+
+	/* (non-javadoc)
+	 * @see VersionedFunctions#makeDynamicTexture
+	 */
+	static DynamicTexture makeDynamicTexture(int width, int height) {
+		return new DynamicTexture(width, height);
+	}
+
+	/* (non-javadoc)
+	 * @see VersionedFunctions#updateDynamicTexture
+	 */
+	static void updateDynamicTexture(DynamicTexture texture, int[] pixels) {
+		int[] data = texture.getTextureData();
+		System.arraycopy(pixels, 0, data, 0, data.length);
+		texture.updateDynamicTexture();
+	}
+
+	/* (non-javadoc)
+	 * @see VersionedFunctions#drawDynamicTexture
+	 */
+	static void drawDynamicTexture(DynamicTexture texture, int x, int y, int textureWidth,
+			int textureHeight, int width, int height) {
+		GlStateManager.bindTexture(texture.getGlTextureId());
+		GlStateManager.color(1.0F, 1.0F, 1.0F, 1.0F);
+		Gui.drawScaledCustomSizeModalRect(x, y, 0, 0, textureWidth, textureHeight,
+				width, height, textureWidth, textureHeight);
+	}
 }
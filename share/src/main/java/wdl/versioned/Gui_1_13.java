@@ -23,6 +23,8 @@ import net.minecraft.client.network.NetHandlerPlayClient;
 import net.minecraft.client.renderer.BufferBuilder;
 import net.minecraft.client.renderer.GlStateManager;
 import net.minecraft.client.renderer.Tessellator;
+import net.minecraft.client.renderer.texture.DynamicTexture;
+import net.minecraft.client.renderer.texture.NativeImage;
 import net.minecraft.client.renderer.vertex.DefaultVertexFormats;
 import net.minecraft.world.World;
 
@@ -155,4 +157,37 @@ final class GuiFunctions {
 	static void setClipboardString(String text) {
 		Minecraft.getInstance().keyboardListener.setClipboardString(text);
 	}
+
+	/* (non-javadoc)
+	 * @see VersionedFunctions#makeDynamicTexture
+	 */
+	static DynamicTexture makeDynamicTexture(int width, int height) {
+		return new DynamicTexture(width, height, true);
+	}
+
+	/* (non-javadoc)
+	 * @see VersionedFunctions#updateDynamicTexture
+	 */
+	static void updateDynamicTexture(DynamicTexture texture, int[] pixels) {
+		NativeImage image = texture.getTextureData();
+		int width = image.getWidth();
+		for (int i = 0; i < pixels.length; i++) {
+			// NativeImage takes ABGR, so swap red and blue
+			int argb = pixels[i];
+			int abgr = (argb & 0xFF00FF00) | (argb >> 16 & 0xFF) | (argb & 0xFF) << 16;
+			image.setPixelRGBA(i % width, i / width, abgr);
+		}
+		texture.updateDynamicTexture();
+	}
+
+	/* (non-javadoc)
+	 * @see VersionedFunctions#drawDynamicTexture
+	 */
+	static void drawDynamicTexture(DynamicTexture texture, int x, int y, int textureWidth,
+			int textureHeight, int width, int height) {
+		GlStateManager.bindTexture(texture.getGlTextureId());
+		GlStateManager.color4f(1.0F, 1.0F, 1.0F, 1.0F);
+		Gui.drawScaledCustomSizeModalRect(x, y, 0, 0, textureWidth, textureHeight,
+				width, height, textureWidth, textureHeight);
+	}
 }
@@ -19,6 +19,7 @@ import javax.annotation.Nullable;
 import com.google.common.collect.BiMap;
 import com.google.common.collect.HashBiMap;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 
 import it.unimi.dsi.fastutil.ints.Int2ObjectArrayMap;
 import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
@@ -39,10 +40,8 @@ import net.minecraft.client.Minecraft;
 import net.minecraft.nbt.INBTBase;
 import net.minecraft.nbt.NBTTagCompound;
 import net.minecraft.tileentity.TileEntity;
-import net.minecraft.tileentity.TileEntityCommandBlock;
 import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.World;
-import net.minecraft.world.chunk.Chunk;
 import net.minecraft.world.storage.SaveHandler;
 import wdl.handler.block.BeaconHandler;
 import wdl.handler.block.BlockHandler;
@@ -102,11 +101,26 @@ final class HandlerFunctions {
 			new VillagerHandler()
 	);
 
+	/* (non-javadoc)
+	 * @see VersionedFunctions#IMPORTABLE_BLOCK_ENTITY_IDS
+	 */
+	static final ImmutableSet<String> IMPORTABLE_BLOCK_ENTITY_IDS = ImmutableSet.of(
+			"minecraft:chest",
+			"minecraft:trapped_chest",
+			"minecraft:dispenser",
+			"minecraft:dropper",
+			"minecraft:furnace",
+			"minecraft:brewing_stand",
+			"minecraft:hopper",
+			"minecraft:beacon",
+			"minecraft:shulker_box",
+			"minecraft:command_block");
+
 	/* (non-javadoc)
 	 * @see VersionedFunctions#shouldImportBlockEntity
 	 */
 	static boolean shouldImportBlockEntity(String entityID, BlockPos pos,
-			Block block, NBTTagCompound blockEntityNBT, Chunk chunk) {
+			Block block, NBTTagCompound blockEntityNBT, @Nullable NBTTagCompound currentBlockEntityNBT) {
 		// Note blocks do not have a block entity in this version.
 		if (block instanceof BlockChest && entityID.equals("minecraft:chest")) {
 			return true;
@@ -131,13 +145,11 @@ final class HandlerFunctions {
 			// Only import command blocks if the current world doesn't have a command set
 			// for the one there, as WDL doesn't explicitly save them so we need to use the
 			// one currently present in the world.
-			TileEntity temp = chunk.getTileEntity(pos, Chunk.EnumCreateEntityType.CHECK);
-			if (temp == null || !(temp instanceof TileEntityCommandBlock)) {
+			if (currentBlockEntityNBT == null || !currentBlockEntityNBT.getString("id").equals("minecraft:command_block")) {
 				// Bad/missing data currently there, import the old data
 				return true;
 			}
-			TileEntityCommandBlock te = (TileEntityCommandBlock) temp;
-			boolean currentBlockHasCommand = !te.getCommandBlockLogic().getCommand().isEmpty();
+			boolean currentBlockHasCommand = !currentBlockEntityNBT.getString("Command").isEmpty();
 			// Only import if the current command block has no command.
 			return !currentBlockHasCommand;
 		} else {
@@ -30,6 +30,7 @@ import javax.annotation.meta.TypeQualifierNickname;
 
 import com.google.common.collect.BiMap;
 import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableSet;
 
 import it.unimi.dsi.fastutil.ints.Int2ObjectMap;
 import net.minecraft.block.Block;
@@ -40,6 +41,7 @@ import net.minecraft.client.entity.EntityPlayerSP;
 import net.minecraft.client.gui.GuiScreen;
 import net.minecraft.client.multiplayer.ChunkProviderClient;
 import net.minecraft.client.network.NetHandlerPlayClient;
+import net.minecraft.client.renderer.texture.DynamicTexture;
 import net.minecraft.entity.passive.EntityVillager;
 import net.minecraft.init.Items;
 import net.minecraft.item.ItemStack;
@@ -53,7 +55,6 @@ import net.minecraft.util.math.BlockPos;
 import net.minecraft.world.GameRules;
 import net.minecraft.world.World;
 import net.minecraft.world.biome.Biome;
-import net.minecraft.world.chunk.Chunk;
 import net.minecraft.world.chunk.storage.AnvilChunkLoader;
 import net.minecraft.world.dimension.DimensionType;
 import net.minecraft.world.storage.MapData;
@@ -94,6 +95,13 @@ public final class VersionedFunctions {
 	 */
 	public static final ImmutableList<EntityHandler<?, ?>> ENTITY_HANDLERS = HandlerFunctions.ENTITY_HANDLERS;
 
+	/**
+	 * IDs of the block entities that {@link #shouldImportBlockEntity} may
+	 * import; block entities with other IDs are never imported (unless an
+	 * extension asks for them).
+	 */
+	public static final ImmutableSet<String> IMPORTABLE_BLOCK_ENTITY_IDS = HandlerFunctions.IMPORTABLE_BLOCK_ENTITY_IDS;
+
 	/**
 	 * Checks if the block entity should be imported. Only "problematic" (IE,
 	 * those that require manual interaction such as chests) block entities will
@@ -110,15 +118,15 @@ public final class VersionedFunctions {
 	 * @param blockEntityNBT
 	 *            The full NBT tag of the existing block entity. May be used if
 	 *            further identification is needed.
-	 * @param chunk
-	 *            The (current) chunk for which entities are being imported. May be used
-	 *            if further identification is needed (e.g. nearby blocks).
+	 * @param currentBlockEntityNBT
+	 *            The NBT of the block entity currently at that position, as of
+	 *            when the chunk was snapshotted, or null if there is none.
 	 * @return true if it should be imported
 	 * @see wdl.WDLChunkLoader#shouldImportBlockEntity
 	 */
 	public static boolean shouldImportBlockEntity(String entityID, BlockPos pos,
-			Block block, NBTTagCompound blockEntityNBT, Chunk chunk) {
-		return HandlerFunctions.shouldImportBlockEntity(entityID, pos, block, blockEntityNBT, chunk);
+			Block block, NBTTagCompound blockEntityNBT, @Nullable NBTTagCompound currentBlockEntityNBT) {
+		return HandlerFunctions.shouldImportBlockEntity(entityID, pos, block, blockEntityNBT, currentBlockEntityNBT);
 	}
 
 	/**
@@ -428,6 +436,43 @@ public final class VersionedFunctions {
 		GuiFunctions.drawBorder(topMargin, bottomMargin, top, left, bottom, right);
 	}
 
+	/**
+	 * Creates a texture whose contents can be set with
+	 * {@link #updateDynamicTexture}.  It must be deleted once no longer needed.
+	 *
+	 * @param width Width of the texture, in pixels.
+	 * @param height Height of the texture, in pixels.
+	 */
+	public static DynamicTexture makeDynamicTexture(int width, int height) {
+		return GuiFunctions.makeDynamicTexture(width, height);
+	}
+
+	/**
+	 * Replaces the contents of the given texture and uploads it.
+	 *
+	 * @param texture A texture from {@link #makeDynamicTexture}.
+	 * @param pixels The new contents, as ARGB colors in rows, of the same size as the texture.
+	 */
+	public static void updateDynamicTexture(DynamicTexture texture, int[] pixels) {
+		GuiFunctions.updateDynamicTexture(texture, pixels);
+	}
+
+	/**
+	 * Draws the whole of the given texture, stretched to the given size.
+	 *
+	 * @param texture A texture from {@link #makeDynamicTexture}.
+	 * @param x Where to draw the texture.
+	 * @param y Where to draw the texture.
+	 * @param textureWidth The width of the texture, in pixels.
+	 * @param textureHeight The height of the texture, in pixels.
+	 * @param width The width to draw the texture at.
+	 * @param height The height to draw the texture at.
+	 */
+	public static void drawDynamicTexture(DynamicTexture texture, int x, int y, int textureWidth,
+			int textureHeight, int width, int height) {
+		GuiFunctions.drawDynamicTexture(texture, x, y, textureWidth, textureHeight, width, height);
+	}
+
 	/**
 	 * Copies the given text into the system clipboard.
 	 * @param text The text to copy
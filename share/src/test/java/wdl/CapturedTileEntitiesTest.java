@@ -0,0 +1,80 @@
+/*
+ * This file is part of World Downloader: A mod to make backups of your
+ * multiplayer worlds.
+ * http://www.minecraftforum.net/forums/mapping-and-modding/minecraft-mods/2520465
+ *
+ * Copyright (c) 2014 nairol, cubic72
+ * Copyright (c) 2019 Pokechu22, julialy
+ *
+ * This project is licensed under the MMPLv2.  The full text of the MMPL can be
+ * found in LICENSE.md, or online at https://github.com/iopleke/MMPLv2/blob/master/LICENSE.md
+ * For information about this the MMPLv2, see http://stopmodreposts.org/
+ *
+ * Do not redistribute (in modified or unmodified form) without prior permission.
+ */
+package wdl;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.util.Map;
+
+import org.junit.Test;
+
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.util.math.BlockPos;
+import net.minecraft.util.math.ChunkPos;
+
+/**
+ * Checks that {@link CapturedTileEntities} gives back the NBT it was given,
+ * and keeps its statistics up to date.
+ */
+public class CapturedTileEntitiesTest {
+
+	private static NBTTagCompound makeChest(String name) {
+		NBTTagCompound compound = new NBTTagCompound();
+		compound.putString("id", "minecraft:chest");
+		compound.putString("CustomName", name);
+		return compound;
+	}
+
+	private void checkRoundTrip(boolean compress) {
+		CapturedTileEntities captured = new CapturedTileEntities();
+		captured.setCompress(compress);
+
+		BlockPos first = new BlockPos(-1, 64, 5);
+		BlockPos second = new BlockPos(-16, 10, 15);
+		BlockPos failed = new BlockPos(-2, 70, 0);
+		captured.put(first, makeChest("Old"));
+		captured.put(first, makeChest("First"));
+		captured.put(second, makeChest("Second"));
+		captured.put(failed, null);
+
+		assertThat(captured.getCount(), is(3));
+		assertThat(captured.getChunkCount(), is(1));
+		assertThat(captured.getRetainedBytes(), is(greaterThan(0L)));
+
+		Map<BlockPos, NBTTagCompound> map = captured.get(new ChunkPos(-1, 0));
+		assertThat(map.size(), is(3));
+		assertThat(map.get(first), is(makeChest("First")));
+		assertThat(map.get(second), is(makeChest("Second")));
+		assertTrue(map.containsKey(failed));
+		assertThat(map.get(failed), is(nullValue()));
+		assertThat(captured.get(new ChunkPos(0, 0)), is(nullValue()));
+
+		captured.remove(new ChunkPos(-1, 0));
+		assertThat(captured.getCount(), is(0));
+		assertThat(captured.getChunkCount(), is(0));
+		assertThat(captured.getRetainedBytes(), is(0L));
+	}
+
+	@Test
+	public void testCompressed() {
+		checkRoundTrip(true);
+	}
+
+	@Test
+	public void testUncompressed() {
+		checkRoundTrip(false);
+	}
+}
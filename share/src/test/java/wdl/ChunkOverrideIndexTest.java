@@ -0,0 +1,88 @@
+/*
+ * This file is part of World Downloader: A mod to make backups of your
+ * multiplayer worlds.
+ * http://www.minecraftforum.net/forums/mapping-and-modding/minecraft-mods/2520465
+ *
+ * Copyright (c) 2014 nairol, cubic72
+ * Copyright (c) 2019 Pokechu22, julialy
+ *
+ * This project is licensed under the MMPLv2.  The full text of the MMPL can be
+ * found in LICENSE.md, or online at https://github.com/iopleke/MMPLv2/blob/master/LICENSE.md
+ * For information about this the MMPLv2, see http://stopmodreposts.org/
+ *
+ * Do not redistribute (in modified or unmodified form) without prior permission.
+ */
+package wdl;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import wdl.WDLPluginChannels.ChunkRange;
+
+/**
+ * Checks {@link ChunkOverrideIndex} against simply checking every range.
+ */
+public class ChunkOverrideIndexTest {
+
+	private static boolean bruteForce(List<ChunkRange> ranges, int x, int z) {
+		for (ChunkRange range : ranges) {
+			if (x >= range.x1 && x <= range.x2 && z >= range.z1 && z <= range.z2) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Test
+	public void testEmpty() {
+		assertFalse(ChunkOverrideIndex.EMPTY.contains(0, 0));
+		assertTrue(ChunkOverrideIndex.EMPTY.isEmpty());
+		assertThat(ChunkOverrideIndex.EMPTY.getRangesInArea(-10, -10, 10, 10), is(empty()));
+	}
+
+	@Test
+	public void testRandomRanges() {
+		Random random = new Random(42);
+		List<ChunkRange> ranges = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			int x = random.nextInt(200) - 100, z = random.nextInt(200) - 100;
+			ranges.add(new ChunkRange("tag" + (i % 3), x, z,
+					x + random.nextInt(15) - 7, z + random.nextInt(15) - 7));
+		}
+		ChunkOverrideIndex index = new ChunkOverrideIndex(ranges);
+		assertThat(index.size(), is(200));
+
+		for (int x = -120; x <= 120; x++) {
+			for (int z = -120; z <= 120; z++) {
+				assertEquals("Chunk at " + x + ", " + z, bruteForce(ranges, x, z), index.contains(x, z));
+			}
+		}
+
+		List<ChunkRange> inArea = index.getRangesInArea(-20, 0, 10, 30);
+		for (ChunkRange range : ranges) {
+			boolean overlaps = range.x2 >= -20 && range.x1 <= 10 && range.z2 >= 0 && range.z1 <= 30;
+			assertEquals(range.toString(), overlaps, inArea.contains(range));
+		}
+	}
+
+	@Test
+	public void testExtremeCoordinates() {
+		ChunkOverrideIndex index = new ChunkOverrideIndex(Arrays.asList(
+				new ChunkRange("", Integer.MAX_VALUE - 1, Integer.MIN_VALUE, Integer.MAX_VALUE, Integer.MAX_VALUE),
+				new ChunkRange("", 0, 0, 0, 0),
+				new ChunkRange("", 0, 1, 0, 1)));
+		assertTrue(index.contains(Integer.MAX_VALUE, 0));
+		assertTrue(index.contains(Integer.MAX_VALUE - 1, Integer.MIN_VALUE));
+		assertFalse(index.contains(Integer.MAX_VALUE - 2, 0));
+		assertTrue(index.contains(0, 1));
+		assertFalse(index.contains(0, 2));
+		assertFalse(index.contains(Integer.MIN_VALUE, 0));
+	}
+}
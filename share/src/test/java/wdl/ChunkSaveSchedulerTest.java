@@ -0,0 +1,143 @@
+/*
+ * This file is part of World Downloader: A mod to make backups of your
+ * multiplayer worlds.
+ * http://www.minecraftforum.net/forums/mapping-and-modding/minecraft-mods/2520465
+ *
+ * Copyright (c) 2014 nairol, cubic72
+ * Copyright (c) 2019 Pokechu22, julialy
+ *
+ * This project is licensed under the MMPLv2.  The full text of the MMPL can be
+ * found in LICENSE.md, or online at https://github.com/iopleke/MMPLv2/blob/master/LICENSE.md
+ * For information about this the MMPLv2, see http://stopmodreposts.org/
+ *
+ * Do not redistribute (in modified or unmodified form) without prior permission.
+ */
+package wdl;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+import static org.mockito.Mockito.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import net.minecraft.util.math.ChunkPos;
+import net.minecraft.world.chunk.Chunk;
+
+/**
+ * Tests the ordering and bookkeeping of {@link ChunkSaveScheduler}.
+ */
+public class ChunkSaveSchedulerTest extends MaybeMixinTest {
+
+	private static Chunk chunkAt(int x, int z) {
+		Chunk chunk = mock(Chunk.class);
+		when(chunk.getPos()).thenReturn(new ChunkPos(x, z));
+		return chunk;
+	}
+
+	/**
+	 * With no budget, chunks are saved as soon as they are queued.
+	 */
+	@Test
+	public void testNoBudget() {
+		List<Chunk> saved = new ArrayList<>();
+		ChunkSaveScheduler scheduler = new ChunkSaveScheduler(saved::add);
+		Chunk chunk = chunkAt(3, 4);
+
+		scheduler.enqueue(chunk, 0);
+
+		assertThat(saved, contains(chunk));
+		assertThat(scheduler.getQueueDepth(), is(0));
+		assertThat(scheduler.getTotalSaved(), is(1L));
+	}
+
+	/**
+	 * Flushing saves everything, nearest to the player first.
+	 */
+	@Test
+	public void testFlushNearestFirst() {
+		List<Chunk> saved = new ArrayList<>();
+		ChunkSaveScheduler scheduler = new ChunkSaveScheduler(saved::add);
+		Chunk far = chunkAt(10, 10), near = chunkAt(0, 0), middle = chunkAt(-3, 2);
+
+		scheduler.enqueue(far, 5);
+		scheduler.enqueue(near, 5);
+		scheduler.enqueue(middle, 5);
+		assertThat(saved, is(empty()));
+		assertThat(scheduler.getQueueDepth(), is(3));
+
+		scheduler.flush(8, 8);
+
+		assertThat(saved, contains(near, middle, far));
+		assertThat(scheduler.getQueueDepth(), is(0));
+		assertThat(scheduler.getPeakQueueDepth(), is(3));
+	}
+
+	/**
+	 * Unloading the same position twice only saves the newer chunk.
+	 */
+	@Test
+	public void testDuplicateReplaced() {
+		List<Chunk> saved = new ArrayList<>();
+		ChunkSaveScheduler scheduler = new ChunkSaveScheduler(saved::add);
+		Chunk first = chunkAt(1, 1), second = chunkAt(1, 1);
+
+		scheduler.enqueue(first, 5);
+		scheduler.enqueue(second, 5);
+		scheduler.flush(0, 0);
+
+		assertThat(saved, contains(second));
+	}
+
+	/**
+	 * A tick always saves at least one chunk, even with a tiny budget.
+	 */
+	@Test
+	public void testTickMakesProgress() {
+		List<Chunk> saved = new ArrayList<>();
+		ChunkSaveScheduler scheduler = new ChunkSaveScheduler(chunk -> {
+			saved.add(chunk);
+			try {
+				Thread.sleep(5);
+			} catch (InterruptedException ex) {
+				throw new AssertionError(ex);
+			}
+		});
+		Chunk near = chunkAt(0, 0), far = chunkAt(5, 0);
+
+		scheduler.enqueue(far, 1);
+		scheduler.enqueue(near, 1);
+		scheduler.tick(0, 0, 1);
+
+		assertThat(saved, contains(near));
+		assertThat(scheduler.getQueueDepth(), is(1));
+
+		scheduler.clear();
+		assertThat(scheduler.getQueueDepth(), is(0));
+		assertThat(scheduler.getTotalSaved(), is(0L));
+	}
+
+	/**
+	 * A queued chunk whose position is loaded again is saved right away, and
+	 * only that chunk.
+	 */
+	@Test
+	public void testFlushReloadedPosition() {
+		List<Chunk> saved = new ArrayList<>();
+		ChunkSaveScheduler scheduler = new ChunkSaveScheduler(saved::add);
+		Chunk reloaded = chunkAt(2, 2), other = chunkAt(3, 3);
+
+		scheduler.enqueue(reloaded, 5);
+		scheduler.enqueue(other, 5);
+
+		assertTrue(scheduler.flush(new ChunkPos(2, 2)));
+		assertThat(saved, contains(reloaded));
+		assertThat(scheduler.getQueueDepth(), is(1));
+		assertThat(scheduler.getReloadedBeforeSave(), is(1L));
+
+		assertFalse(scheduler.flush(new ChunkPos(2, 2)));
+		assertThat(saved, contains(reloaded));
+	}
+}
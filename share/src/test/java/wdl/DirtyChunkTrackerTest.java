@@ -0,0 +1,69 @@
+/*
+ * This file is part of World Downloader: A mod to make backups of your
+ * multiplayer worlds.
+ * http://www.minecraftforum.net/forums/mapping-and-modding/minecraft-mods/2520465
+ *
+ * Copyright (c) 2014 nairol, cubic72
+ * Copyright (c) 2019 Pokechu22, julialy
+ *
+ * This project is licensed under the MMPLv2.  The full text of the MMPL can be
+ * found in LICENSE.md, or online at https://github.com/iopleke/MMPLv2/blob/master/LICENSE.md
+ * For information about this the MMPLv2, see http://stopmodreposts.org/
+ *
+ * Do not redistribute (in modified or unmodified form) without prior permission.
+ */
+package wdl;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import net.minecraft.util.math.ChunkPos;
+
+/**
+ * Checks that {@link DirtyChunkTracker} only hands out chunks once the
+ * interval has passed, and only ones that changed.
+ */
+public class DirtyChunkTrackerTest {
+
+	@Test
+	public void testInterval() {
+		DirtyChunkTracker tracker = new DirtyChunkTracker();
+		tracker.reset(1000);
+		tracker.markDirty(new ChunkPos(1, 2));
+		tracker.markDirty(new ChunkPos(3, 4));
+		tracker.markDirty(new ChunkPos(1, 2));
+
+		assertThat(tracker.takeDirtyIfDue(10999, 10), is(empty()));
+		assertThat(tracker.takeDirtyIfDue(11000, 10), contains(new ChunkPos(1, 2), new ChunkPos(3, 4)));
+		assertThat(tracker.getNumDirty(), is(0));
+
+		tracker.markDirty(new ChunkPos(5, 6));
+		assertThat(tracker.takeDirtyIfDue(12000, 10), is(empty()));
+		assertThat(tracker.takeDirtyIfDue(21000, 10), contains(new ChunkPos(5, 6)));
+		assertThat(tracker.getTotalAutosaved(), is(3L));
+	}
+
+	@Test
+	public void testMarkClean() {
+		DirtyChunkTracker tracker = new DirtyChunkTracker();
+		tracker.reset(0);
+		tracker.markDirty(new ChunkPos(1, 2));
+		tracker.markDirty(new ChunkPos(3, 4));
+		tracker.markClean(new ChunkPos(1, 2));
+
+		assertFalse(tracker.isDirty(new ChunkPos(1, 2)));
+		assertThat(tracker.takeDirtyIfDue(60000, 60), contains(new ChunkPos(3, 4)));
+	}
+
+	@Test
+	public void testDisabled() {
+		DirtyChunkTracker tracker = new DirtyChunkTracker();
+		tracker.reset(0);
+		tracker.markDirty(new ChunkPos(1, 2));
+
+		assertThat(tracker.takeDirtyIfDue(Long.MAX_VALUE / 2, 0), is(empty()));
+		assertTrue(tracker.isDirty(new ChunkPos(1, 2)));
+	}
+}
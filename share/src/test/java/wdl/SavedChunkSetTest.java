@@ -0,0 +1,105 @@
+/*
+ * This file is part of World Downloader: A mod to make backups of your
+ * multiplayer worlds.
+ * http://www.minecraftforum.net/forums/mapping-and-modding/minecraft-mods/2520465
+ *
+ * Copyright (c) 2014 nairol, cubic72
+ * Copyright (c) 2019 Pokechu22, julialy
+ *
+ * This project is licensed under the MMPLv2.  The full text of the MMPL can be
+ * found in LICENSE.md, or online at https://github.com/iopleke/MMPLv2/blob/master/LICENSE.md
+ * For information about this the MMPLv2, see http://stopmodreposts.org/
+ *
+ * Do not redistribute (in modified or unmodified form) without prior permission.
+ */
+package wdl;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.junit.Test;
+
+import net.minecraft.util.math.ChunkPos;
+
+/**
+ * Tests {@link SavedChunkSet}, including negative coordinates and region
+ * boundaries.
+ */
+public class SavedChunkSetTest {
+
+	private static Set<ChunkPos> collect(SavedChunkSet set, int minX, int minZ, int maxX, int maxZ) {
+		Set<ChunkPos> result = new HashSet<>();
+		set.forEachInArea(minX, minZ, maxX, maxZ, (x, z) -> result.add(new ChunkPos(x, z)));
+		return result;
+	}
+
+	@Test
+	public void testAddAndContains() {
+		SavedChunkSet set = new SavedChunkSet();
+		assertTrue(set.add(0, 0));
+		assertTrue(set.add(-1, -1));
+		assertTrue(set.add(31, -32));
+		assertTrue(set.add(new ChunkPos(-33, 100)));
+		assertFalse(set.add(-1, -1));
+
+		assertThat(set.size(), is(4));
+		assertTrue(set.contains(-1, -1));
+		assertTrue(set.contains(new ChunkPos(31, -32)));
+		assertTrue(set.contains(-33, 100));
+		assertFalse(set.contains(-1, 0));
+		assertFalse(set.contains(31, 0));
+		assertFalse(set.contains(63, -32));
+
+		set.clear();
+		assertThat(set.size(), is(0));
+		assertFalse(set.contains(0, 0));
+	}
+
+	@Test
+	public void testForEachInArea() {
+		SavedChunkSet set = new SavedChunkSet();
+		set.add(0, 0);
+		set.add(-1, -1);
+		set.add(5, 40);
+		set.add(-100, 3);
+
+		assertThat(collect(set, -1, -1, 5, 40), containsInAnyOrder(
+				new ChunkPos(0, 0), new ChunkPos(-1, -1), new ChunkPos(5, 40)));
+		// Chunks in a visited region but outside of the area are skipped
+		assertThat(collect(set, 0, 0, 4, 40), contains(new ChunkPos(0, 0)));
+		assertThat(collect(set, -100, 3, -100, 3), contains(new ChunkPos(-100, 3)));
+		assertThat(collect(set, 10, 10, 20, 20), is(empty()));
+	}
+
+	@Test
+	public void testReadWrite() throws IOException {
+		SavedChunkSet set = new SavedChunkSet();
+		for (int i = -50; i < 50; i += 3) {
+			set.add(i, i * 7);
+		}
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		set.write(new DataOutputStream(bytes));
+
+		SavedChunkSet read = new SavedChunkSet();
+		read.add(1000, 1000);
+		read.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+		assertThat(read.size(), is(set.size()));
+		assertFalse(read.contains(1000, 1000));
+		assertThat(collect(read, -50, -350, 50, 350), is(collect(set, -50, -350, 50, 350)));
+	}
+
+	@Test(expected = IOException.class)
+	public void testReadBadHeader() throws IOException {
+		new SavedChunkSet().read(new DataInputStream(new ByteArrayInputStream(new byte[12])));
+	}
+}
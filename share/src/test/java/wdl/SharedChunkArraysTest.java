@@ -0,0 +1,66 @@
+/*
+ * This file is part of World Downloader: A mod to make backups of your
+ * multiplayer worlds.
+ * http://www.minecraftforum.net/forums/mapping-and-modding/minecraft-mods/2520465
+ *
+ * Copyright (c) 2014 nairol, cubic72
+ * Copyright (c) 2019 Pokechu22, julialy
+ *
+ * This project is licensed under the MMPLv2.  The full text of the MMPL can be
+ * found in LICENSE.md, or online at https://github.com/iopleke/MMPLv2/blob/master/LICENSE.md
+ * For information about this the MMPLv2, see http://stopmodreposts.org/
+ *
+ * Do not redistribute (in modified or unmodified form) without prior permission.
+ */
+package wdl;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Checks that {@link SharedChunkArrays} only shares arrays when that doesn't
+ * change their contents.
+ */
+public class SharedChunkArraysTest {
+
+	@Test
+	public void testZeroLight() {
+		byte[] light = SharedChunkArrays.getZeroLight(2048);
+		assertThat(light.length, is(2048));
+		for (byte b : light) {
+			assertThat(b, is((byte) 0));
+		}
+		assertThat(SharedChunkArrays.getZeroLight(2048), is(sameInstance(light)));
+		assertThat(SharedChunkArrays.getZeroLight(100).length, is(100));
+	}
+
+	@Test
+	public void testUniformBiomes() {
+		byte[] biomes = new byte[256];
+		Arrays.fill(biomes, (byte) 8);
+		byte[] copy = SharedChunkArrays.copyBiomes(biomes);
+		assertArrayEquals(biomes, copy);
+		assertThat(copy, is(not(sameInstance(biomes))));
+
+		// Modifying the chunk's array must not affect the shared one
+		biomes[0] = 9;
+		assertThat(copy[0], is((byte) 8));
+		biomes[0] = 8;
+		assertThat(SharedChunkArrays.copyBiomes(biomes), is(sameInstance(copy)));
+	}
+
+	@Test
+	public void testMixedBiomes() {
+		byte[] biomes = new byte[256];
+		Arrays.fill(biomes, (byte) -2);
+		biomes[255] = 1;
+		byte[] copy = SharedChunkArrays.copyBiomes(biomes);
+		assertArrayEquals(biomes, copy);
+		assertThat(copy, is(not(sameInstance(biomes))));
+		assertThat(SharedChunkArrays.copyBiomes(biomes), is(not(sameInstance(copy))));
+	}
+}
@@ -0,0 +1,79 @@
+/*
+ * This file is part of World Downloader: A mod to make backups of your
+ * multiplayer worlds.
+ * http://www.minecraftforum.net/forums/mapping-and-modding/minecraft-mods/2520465
+ *
+ * Copyright (c) 2014 nairol, cubic72
+ * Copyright (c) 2019 Pokechu22, julialy
+ *
+ * This project is licensed under the MMPLv2.  The full text of the MMPL can be
+ * found in LICENSE.md, or online at https://github.com/iopleke/MMPLv2/blob/master/LICENSE.md
+ * For information about this the MMPLv2, see http://stopmodreposts.org/
+ *
+ * Do not redistribute (in modified or unmodified form) without prior permission.
+ */
+package wdl;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagList;
+import net.minecraft.util.math.ChunkPos;
+import wdl.io.RegionWriter;
+
+/**
+ * Checks that {@link TileEntityImportIndex} only keeps importable tile
+ * entities, and forgets chunks once they are saved.
+ */
+public class TileEntityImportIndexTest {
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private static NBTTagCompound tileEntity(String id) {
+		NBTTagCompound tag = new NBTTagCompound();
+		tag.putString("id", id);
+		return tag;
+	}
+
+	@Test
+	public void testScan() throws Exception {
+		File regionFolder = new File(folder.getRoot(), "region");
+		ChunkPos pos = new ChunkPos(3, 4);
+
+		NBTTagList tileEntities = new NBTTagList();
+		tileEntities.add(tileEntity("chest"));
+		tileEntities.add(tileEntity("sign"));
+		NBTTagCompound level = new NBTTagCompound();
+		level.put("TileEntities", tileEntities);
+		NBTTagCompound root = new NBTTagCompound();
+		root.put("Level", level);
+
+		RegionWriter writer = new RegionWriter(regionFolder, 1);
+		writer.write(pos, root).get();
+
+		TileEntityImportIndex index = new TileEntityImportIndex();
+		assertFalse(index.isKnown(pos));
+		index.startScan(writer, regionFolder, 0, 0, "chest"::equals);
+		long deadline = System.currentTimeMillis() + 10000;
+		while (!index.isKnown(pos)) {
+			assertTrue("Scan took too long", System.currentTimeMillis() < deadline);
+			Thread.sleep(10);
+		}
+
+		NBTTagList kept = index.get(pos);
+		assertEquals(1, kept.size());
+		assertEquals("chest", kept.getCompound(0).getString("id"));
+
+		index.markSaved(pos);
+		assertFalse(index.isKnown(pos));
+		assertTrue(index.wasSaved(pos));
+		assertEquals(0, index.get(pos).size());
+		writer.flush();
+	}
+}
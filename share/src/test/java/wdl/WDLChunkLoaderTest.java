@@ -0,0 +1,58 @@
+/*
+ * This file is part of World Downloader: A mod to make backups of your
+ * multiplayer worlds.
+ * http://www.minecraftforum.net/forums/mapping-and-modding/minecraft-mods/2520465
+ *
+ * Copyright (c) 2014 nairol, cubic72
+ * Copyright (c) 2019 Pokechu22, julialy
+ *
+ * This project is licensed under the MMPLv2.  The full text of the MMPL can be
+ * found in LICENSE.md, or online at https://github.com/iopleke/MMPLv2/blob/master/LICENSE.md
+ * For information about this the MMPLv2, see http://stopmodreposts.org/
+ *
+ * Do not redistribute (in modified or unmodified form) without prior permission.
+ */
+package wdl;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+import net.minecraft.entity.monster.EntityZombie;
+import net.minecraft.entity.passive.EntityPig;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagList;
+import wdl.TestWorld.ServerWorld;
+
+/**
+ * Tests for the entity-writing parts of {@link WDLChunkLoader}.
+ */
+public class WDLChunkLoaderTest extends MaybeMixinTest {
+	/**
+	 * Checks that a passenger is only written on its own when it is being
+	 * removed, and is otherwise left to its vehicle.
+	 */
+	@Test
+	public void testRidingEntity() {
+		ServerWorld world = TestWorld.makeServer();
+		EntityPig pig = new EntityPig(world);
+		EntityZombie zombie = new EntityZombie(world);
+		assertTrue(zombie.startRiding(pig, true));
+
+		NBTTagCompound vehicleTag = new NBTTagCompound();
+		assertTrue(WDLChunkLoader.writeEntityNBT(pig, vehicleTag, false));
+		NBTTagList passengers = vehicleTag.getList("Passengers", 10);
+		assertThat(passengers.size(), is(1));
+		String passengerId = passengers.getCompound(0).getString("id");
+		assertThat(passengerId, not(isEmptyString()));
+
+		assertFalse(WDLChunkLoader.writeEntityNBT(zombie, new NBTTagCompound(), false));
+
+		NBTTagCompound removedTag = new NBTTagCompound();
+		assertTrue(WDLChunkLoader.writeEntityNBT(zombie, removedTag, true));
+		assertThat(removedTag.getString("id"), is(passengerId));
+
+		world.close();
+	}
+}
@@ -24,6 +24,7 @@ import org.junit.Test;
 
 import net.minecraft.init.Blocks;
 import net.minecraft.network.play.server.SPacketBlockAction;
+import net.minecraft.network.play.server.SPacketBlockChange;
 import net.minecraft.network.play.server.SPacketChat;
 import net.minecraft.network.play.server.SPacketCustomPayload;
 import net.minecraft.network.play.server.SPacketMaps;
@@ -90,6 +91,17 @@ public class WDLHooksTest extends AbstractWorldBehaviorTest {
 		});
 	}
 
+	@Test
+	public void testHandleBlockChange() {
+		doWithMockHooks(mock -> {
+			makeMockWorld();
+			SPacketBlockChange packet = new SPacketBlockChange(clientWorld, BlockPos.ORIGIN);
+			clientPlayer.connection.handleBlockChange(packet);
+
+			verify(mock).onNHPCHandleBlockChange0(clientPlayer.connection, packet);
+		});
+	}
+
 	@Test
 	public void testHandleCustomPayload() {
 		doWithMockHooks(mock -> {
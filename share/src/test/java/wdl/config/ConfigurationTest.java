@@ -0,0 +1,93 @@
+/*
+ * This file is part of World Downloader: A mod to make backups of your
+ * multiplayer worlds.
+ * http://www.minecraftforum.net/forums/mapping-and-modding/minecraft-mods/2520465
+ *
+ * Copyright (c) 2014 nairol, cubic72
+ * Copyright (c) 2019 Pokechu22, julialy
+ *
+ * This project is licensed under the MMPLv2.  The full text of the MMPL can be
+ * found in LICENSE.md, or online at https://github.com/iopleke/MMPLv2/blob/master/LICENSE.md
+ * For information about this the MMPLv2, see http://stopmodreposts.org/
+ *
+ * Do not redistribute (in modified or unmodified form) without prior permission.
+ */
+package wdl.config;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Checks that cached values in {@link Configuration} are updated when the
+ * configuration or its parents change.
+ */
+public class ConfigurationTest {
+
+	@Test
+	public void testCachedValue() {
+		IntSetting setting = new IntSetting("test", 1);
+		Configuration config = new Configuration(new DefaultConfiguration());
+		assertThat(config.getValue(setting), is(1));
+		config.setValue(setting, 2);
+		assertThat(config.getValue(setting), is(2));
+		config.clearValue(setting);
+		assertThat(config.getValue(setting), is(1));
+	}
+
+	@Test
+	public void testParentChange() {
+		IntSetting setting = new IntSetting("test", 1);
+		Configuration parent = new Configuration(new DefaultConfiguration());
+		Configuration child = new Configuration(parent);
+		assertThat(child.getValue(setting), is(1));
+
+		long version = child.getVersion();
+		parent.setValue(setting, 5);
+		assertThat(child.getVersion(), is(not(version)));
+		assertThat(child.getValue(setting), is(5));
+
+		// The child's own value takes priority
+		child.setValue(setting, 3);
+		parent.setValue(setting, 6);
+		assertThat(child.getValue(setting), is(3));
+	}
+
+	@Test
+	public void testListeners() {
+		IntSetting setting = new IntSetting("test", 1);
+		Configuration parent = new Configuration(new DefaultConfiguration());
+		Configuration child = new Configuration(parent);
+		AtomicInteger parentChanges = new AtomicInteger();
+		AtomicInteger childChanges = new AtomicInteger();
+		parent.addChangeListener(parentChanges::incrementAndGet);
+		Runnable childListener = childChanges::incrementAndGet;
+		child.addChangeListener(childListener);
+
+		parent.setValue(setting, 2);
+		assertThat(parentChanges.get(), is(1));
+		assertThat(childChanges.get(), is(1));
+
+		child.setValue(setting, 3);
+		assertThat(parentChanges.get(), is(1));
+		assertThat(childChanges.get(), is(2));
+
+		// Not actually a change
+		long version = child.getVersion();
+		parent.setValue(setting, 2);
+		child.setValue(setting, 3);
+		child.setUserEntityTrackDistance("test", 0);
+		child.setUserEntityTrackDistance("test", 0);
+		assertThat(parentChanges.get(), is(1));
+		assertThat(childChanges.get(), is(3));
+		assertThat(child.getVersion(), is(version + 1));
+
+		child.removeChangeListener(childListener);
+		parent.clearValue(setting);
+		assertThat(parentChanges.get(), is(2));
+		assertThat(childChanges.get(), is(3));
+	}
+}
@@ -0,0 +1,53 @@
+/*
+ * This file is part of World Downloader: A mod to make backups of your
+ * multiplayer worlds.
+ * http://www.minecraftforum.net/forums/mapping-and-modding/minecraft-mods/2520465
+ *
+ * Copyright (c) 2014 nairol, cubic72
+ * Copyright (c) 2019 Pokechu22, julialy
+ *
+ * This project is licensed under the MMPLv2.  The full text of the MMPL can be
+ * found in LICENSE.md, or online at https://github.com/iopleke/MMPLv2/blob/master/LICENSE.md
+ * For information about this the MMPLv2, see http://stopmodreposts.org/
+ *
+ * Do not redistribute (in modified or unmodified form) without prior permission.
+ */
+package wdl.handler;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+/**
+ * Checks that {@link HandlerCache} only runs the lookup once per pair of
+ * classes, including for pairs without a handler.
+ */
+public class HandlerCacheTest {
+
+	@Test
+	public void testHitsAndMisses() {
+		AtomicInteger lookups = new AtomicInteger();
+		HandlerCache<String> cache = new HandlerCache<>((first, second) -> {
+			lookups.incrementAndGet();
+			if (first == Integer.class && second == String.class) {
+				return "handler";
+			}
+			return null;
+		});
+
+		assertThat(cache.get(Integer.class, String.class), is("handler"));
+		assertThat(cache.get(Integer.class, String.class), is("handler"));
+		assertThat(lookups.get(), is(1));
+
+		assertThat(cache.get(String.class, Integer.class), is(nullValue()));
+		assertThat(cache.get(String.class, Integer.class), is(nullValue()));
+		assertThat(lookups.get(), is(2));
+
+		// Same first class, different second class is a separate entry
+		assertThat(cache.get(Integer.class, Long.class), is(nullValue()));
+		assertThat(lookups.get(), is(3));
+	}
+}
@@ -0,0 +1,75 @@
+/*
+ * This file is part of World Downloader: A mod to make backups of your
+ * multiplayer worlds.
+ * http://www.minecraftforum.net/forums/mapping-and-modding/minecraft-mods/2520465
+ *
+ * Copyright (c) 2014 nairol, cubic72
+ * Copyright (c) 2019 Pokechu22, julialy
+ *
+ * This project is licensed under the MMPLv2.  The full text of the MMPL can be
+ * found in LICENSE.md, or online at https://github.com/iopleke/MMPLv2/blob/master/LICENSE.md
+ * For information about this the MMPLv2, see http://stopmodreposts.org/
+ *
+ * Do not redistribute (in modified or unmodified form) without prior permission.
+ */
+package wdl.io;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import net.minecraft.nbt.CompressedStreamTools;
+import net.minecraft.nbt.NBTTagCompound;
+
+/**
+ * Checks that {@link ChunkHashIndex#write} writes the same bytes as vanilla
+ * while leaving the timestamps out of the hash.
+ */
+public class ChunkHashIndexTest {
+
+	private static NBTTagCompound chunk(String name, long lastUpdate) {
+		NBTTagCompound level = new NBTTagCompound();
+		level.putString("Name", name);
+		// A string value that looks like a masked name mustn't affect the next tag
+		level.putString("Note", "LastUpdate");
+		level.putLong("Count", lastUpdate);
+		level.putLong("LastUpdate", lastUpdate);
+		level.putLong("InhabitedTime", lastUpdate * 2);
+		NBTTagCompound root = new NBTTagCompound();
+		root.put("Level", level);
+		return root;
+	}
+
+	@Test
+	public void testWrite() throws IOException {
+		NBTTagCompound tag = chunk("a", 100);
+		ByteArrayOutputStream expected = new ByteArrayOutputStream();
+		CompressedStreamTools.write(tag, new DataOutputStream(expected));
+		ByteArrayOutputStream actual = new ByteArrayOutputStream();
+		ChunkHashIndex.write(tag, actual);
+		assertArrayEquals(expected.toByteArray(), actual.toByteArray());
+	}
+
+	@Test
+	public void testHashIgnoresTimestamps() throws IOException {
+		NBTTagCompound first = chunk("a", 100);
+		NBTTagCompound second = chunk("a", 100);
+		second.getCompound("Level").putLong("LastUpdate", 200);
+		second.getCompound("Level").putLong("InhabitedTime", 300);
+		assertEquals(hash(first), hash(second));
+
+		assertNotEquals(hash(first), hash(chunk("b", 100)));
+		// Other longs are still hashed
+		NBTTagCompound third = chunk("a", 100);
+		third.getCompound("Level").putLong("Count", 5);
+		assertNotEquals(hash(first), hash(third));
+	}
+
+	private static long hash(NBTTagCompound tag) throws IOException {
+		return ChunkHashIndex.write(tag, new ByteArrayOutputStream());
+	}
+}
@@ -0,0 +1,110 @@
+/*
+ * This file is part of World Downloader: A mod to make backups of your
+ * multiplayer worlds.
+ * http://www.minecraftforum.net/forums/mapping-and-modding/minecraft-mods/2520465
+ *
+ * Copyright (c) 2014 nairol, cubic72
+ * Copyright (c) 2019 Pokechu22, julialy
+ *
+ * This project is licensed under the MMPLv2.  The full text of the MMPL can be
+ * found in LICENSE.md, or online at https://github.com/iopleke/MMPLv2/blob/master/LICENSE.md
+ * For information about this the MMPLv2, see http://stopmodreposts.org/
+ *
+ * Do not redistribute (in modified or unmodified form) without prior permission.
+ */
+package wdl.io;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.zip.InflaterInputStream;
+
+import org.junit.After;
+import org.junit.Test;
+
+import net.minecraft.nbt.CompressedStreamTools;
+import net.minecraft.nbt.NBTTagCompound;
+
+/**
+ * Checks that {@link Compression#writeCompressed} produces gzip data that
+ * vanilla can read, at every level, and that {@link Compression#deflate}
+ * produces valid zlib data when its buffers are reused.
+ */
+public class CompressionTest {
+
+	@After
+	public void resetLevel() {
+		Compression.setLevel(6);
+		Compression.resetStatistics();
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		NBTTagCompound tag = new NBTTagCompound();
+		tag.putByteArray("Data", new byte[50000]);
+		tag.putString("Name", "test");
+
+		for (int level = 1; level <= 9; level++) {
+			Compression.setLevel(level);
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			Compression.writeCompressed(tag, out);
+			// Twice, to make sure that the pooled deflater is reset
+			Compression.writeCompressed(tag, out);
+
+			ByteArrayInputStream in = new ByteArrayInputStream(out.toByteArray(), 0, out.size() / 2);
+			assertEquals("Level " + level, tag, CompressedStreamTools.readCompressed(in));
+		}
+	}
+
+	@Test
+	public void testStatistics() throws IOException {
+		Compression.resetStatistics();
+		NBTTagCompound tag = new NBTTagCompound();
+		tag.putByteArray("Data", new byte[50000]);
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		Compression.writeCompressed(tag, out);
+		assertTrue(Compression.getBytesIn() > 50000);
+		assertEquals(out.size(), Compression.getBytesOut());
+
+		ByteArrayOutputStream untracked = new ByteArrayOutputStream();
+		Compression.writeCompressedUntracked(tag, untracked);
+		assertEquals(out.size(), Compression.getBytesOut());
+		assertEquals(tag, CompressedStreamTools.readCompressed(new ByteArrayInputStream(untracked.toByteArray())));
+	}
+
+	@Test
+	public void testDeflateReuse() throws IOException {
+		// Random data doesn't compress, so this also grows the output buffer
+		byte[] large = new byte[100000];
+		new Random(42).nextBytes(large);
+		assertArrayEquals(large, inflate(Compression.deflate(large, large.length), large.length));
+
+		byte[] small = "small".getBytes("UTF-8");
+		byte[] padded = Arrays.copyOf(small, 100);
+		assertArrayEquals(small, inflate(Compression.deflate(padded, small.length), small.length));
+	}
+
+	private static byte[] inflate(byte[] compressed, int length) throws IOException {
+		byte[] result = new byte[length];
+		try (DataInputStream input = new DataInputStream(new InflaterInputStream(
+				new ByteArrayInputStream(compressed)))) {
+			input.readFully(result);
+			assertEquals(-1, input.read());
+		}
+		return result;
+	}
+
+	@Test
+	public void testLevelClamped() {
+		Compression.setLevel(0);
+		assertEquals(1, Compression.getLevel());
+		Compression.setLevel(100);
+		assertEquals(9, Compression.getLevel());
+	}
+}
@@ -0,0 +1,87 @@
+/*
+ * This file is part of World Downloader: A mod to make backups of your
+ * multiplayer worlds.
+ * http://www.minecraftforum.net/forums/mapping-and-modding/minecraft-mods/2520465
+ *
+ * Copyright (c) 2014 nairol, cubic72
+ * Copyright (c) 2019 Pokechu22, julialy
+ *
+ * This project is licensed under the MMPLv2.  The full text of the MMPL can be
+ * found in LICENSE.md, or online at https://github.com/iopleke/MMPLv2/blob/master/LICENSE.md
+ * For information about this the MMPLv2, see http://stopmodreposts.org/
+ *
+ * Do not redistribute (in modified or unmodified form) without prior permission.
+ */
+package wdl.io;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that {@link RegionCoverageIndex} is built from region headers, kept up
+ * to date, and rebuilt for region files changed behind its back.
+ */
+public class RegionCoverageIndexTest {
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private static void writeChunk(File regionFolder, int chunkX, int chunkZ, int size) throws Exception {
+		try (WDLRegionFile regionFile = new WDLRegionFile(WDLRegionFile.getFile(regionFolder, chunkX, chunkZ))) {
+			regionFile.write(chunkX, chunkZ, new byte[size], size);
+		}
+	}
+
+	@Test
+	public void testBuildFromHeaders() throws Exception {
+		File regionFolder = new File(folder.getRoot(), "region");
+		writeChunk(regionFolder, 3, -40, 100);
+		writeChunk(regionFolder, 40, 2, 5000);
+
+		RegionCoverageIndex index = new RegionCoverageIndex(regionFolder);
+		assertEquals(2, index.getChunkCount());
+		assertTrue(index.hasChunk(3, -40));
+		assertTrue(index.hasChunk(40, 2));
+		assertFalse(index.hasChunk(4, -40));
+		assertFalse(index.hasChunk(1000, 1000));
+		assertEquals(WDLRegionFile.SECTOR_SIZE, index.getSize(3, -40));
+		assertEquals(2 * WDLRegionFile.SECTOR_SIZE, index.getSize(40, 2));
+		assertNotEquals(0, index.getTimestamp(3, -40));
+		assertNotNull(index.getRegionTimestamps(0, -2));
+		assertNull(index.getRegionTimestamps(0, 0));
+		assertEquals(0, index.countChunksWrittenAfter(Integer.MAX_VALUE));
+		assertEquals(2, index.countChunksWrittenAfter(0));
+	}
+
+	@Test
+	public void testUpdateAndReload() throws Exception {
+		File regionFolder = new File(folder.getRoot(), "region");
+		writeChunk(regionFolder, 0, 0, 100);
+
+		RegionCoverageIndex index = new RegionCoverageIndex(regionFolder);
+		// Recorded as RegionWriter would after writing the chunk
+		writeChunk(regionFolder, 1, 0, 100);
+		index.update(1, 0, 1234, 1);
+		assertEquals(1234, index.getTimestamp(1, 0));
+		assertEquals(2, index.getChunkCount());
+		index.save();
+		assertTrue(index.getFile().isFile());
+
+		RegionCoverageIndex reloaded = new RegionCoverageIndex(regionFolder);
+		// Not re-read from the header, which has the real timestamp
+		assertEquals(1234, reloaded.getTimestamp(1, 0));
+		assertEquals(2, reloaded.getChunkCount());
+
+		// A change made without updating the index is picked up on load
+		File regionFile = WDLRegionFile.getFile(regionFolder, 0, 0);
+		writeChunk(regionFolder, 2, 0, 100);
+		regionFile.setLastModified(regionFile.lastModified() + 10000);
+		RegionCoverageIndex rebuilt = new RegionCoverageIndex(regionFolder);
+		assertEquals(3, rebuilt.getChunkCount());
+		assertNotEquals(1234, rebuilt.getTimestamp(1, 0));
+	}
+}
@@ -0,0 +1,157 @@
+/*
+ * This file is part of World Downloader: A mod to make backups of your
+ * multiplayer worlds.
+ * http://www.minecraftforum.net/forums/mapping-and-modding/minecraft-mods/2520465
+ *
+ * Copyright (c) 2014 nairol, cubic72
+ * Copyright (c) 2019 Pokechu22, julialy
+ *
+ * This project is licensed under the MMPLv2.  The full text of the MMPL can be
+ * found in LICENSE.md, or online at https://github.com/iopleke/MMPLv2/blob/master/LICENSE.md
+ * For information about this the MMPLv2, see http://stopmodreposts.org/
+ *
+ * Do not redistribute (in modified or unmodified form) without prior permission.
+ */
+package wdl.io;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import net.minecraft.nbt.CompressedStreamTools;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.util.math.ChunkPos;
+
+/**
+ * Checks that {@link RegionWriter} skips writing chunks that haven't changed,
+ * and only those.
+ */
+public class RegionWriterTest {
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private static NBTTagCompound chunk(int value, long lastUpdate) {
+		NBTTagCompound level = new NBTTagCompound();
+		level.putInt("Value", value);
+		level.putLong("LastUpdate", lastUpdate);
+		level.putLong("InhabitedTime", lastUpdate * 2);
+		NBTTagCompound root = new NBTTagCompound();
+		root.put("Level", level);
+		return root;
+	}
+
+	@Test
+	public void testElision() throws Exception {
+		File regionFolder = new File(folder.getRoot(), "region");
+		ChunkPos pos = new ChunkPos(5, -7);
+
+		RegionWriter writer = new RegionWriter(regionFolder, 2);
+		writer.write(pos, chunk(1, 100)).get();
+		assertEquals(0, writer.getNumElidedWrites());
+		writer.write(pos, chunk(1, 200)).get();
+		assertEquals(1, writer.getNumElidedWrites());
+		writer.write(pos, chunk(2, 300)).get();
+		assertEquals(1, writer.getNumElidedWrites());
+		writer.flush();
+
+		// The hashes persist in the sidecar index
+		RegionWriter reopened = new RegionWriter(regionFolder, 1);
+		reopened.write(pos, chunk(2, 400)).get();
+		assertEquals(1, reopened.getNumElidedWrites());
+		NBTTagCompound saved = reopened.read(pos, CompressedStreamTools::read).get();
+		assertEquals(2, saved.getCompound("Level").getInt("Value"));
+		// The timestamps are still written, even though they aren't hashed
+		assertEquals(300, saved.getCompound("Level").getLong("LastUpdate"));
+		reopened.flush();
+	}
+
+	@Test
+	public void testMemoryLimit() throws Exception {
+		File regionFolder = new File(folder.getRoot(), "region");
+		// With room for a single byte, everything but the first queued chunk is spilled
+		RegionWriter writer = new RegionWriter(regionFolder, 2, 1);
+		List<CompletableFuture<Void>> futures = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			futures.add(writer.write(new ChunkPos(i, -i), chunk(i, i)));
+		}
+		CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get();
+
+		for (int i = 0; i < 100; i++) {
+			NBTTagCompound saved = writer.read(new ChunkPos(i, -i), CompressedStreamTools::read).get();
+			assertEquals(i, saved.getCompound("Level").getInt("Value"));
+		}
+		writer.flush();
+	}
+
+	@Test
+	public void testDefaultMemoryLimit() throws Exception {
+		File regionFolder = new File(folder.getRoot(), "region");
+		// A limit of 0 means the default, not that every chunk is spilled
+		RegionWriter writer = new RegionWriter(regionFolder, 1, 0);
+		assertFalse(writer.isOverMemoryLimit());
+		writer.write(new ChunkPos(0, 0), chunk(1, 100)).get();
+		writer.write(new ChunkPos(1, 0), chunk(2, 100)).get();
+		assertEquals(0, writer.getNumSpilledChunks());
+		writer.flush();
+	}
+
+	@Test
+	public void testManyRegions() throws Exception {
+		File regionFolder = new File(folder.getRoot(), "region");
+		int regions = RegionWriter.MAX_OPEN_REGIONS + 10;
+
+		// More regions than a lane keeps open, so the first ones are closed
+		// and their hash indexes saved before the end
+		RegionWriter writer = new RegionWriter(regionFolder, 1);
+		for (int i = 0; i < regions; i++) {
+			writer.write(new ChunkPos(i * 32, 0), chunk(i, 100)).get();
+		}
+		for (int i = 0; i < regions; i++) {
+			writer.write(new ChunkPos(i * 32, 0), chunk(i, 200)).get();
+		}
+		assertEquals(regions, writer.getNumElidedWrites());
+		for (int i = 0; i < regions; i++) {
+			NBTTagCompound saved = writer.read(new ChunkPos(i * 32, 0), CompressedStreamTools::read).get();
+			assertEquals(i, saved.getCompound("Level").getInt("Value"));
+		}
+		writer.flush();
+	}
+
+	@Test
+	public void testRegionFileReplaced() throws Exception {
+		File regionFolder = new File(folder.getRoot(), "region");
+		ChunkPos pos = new ChunkPos(0, 0);
+
+		RegionWriter writer = new RegionWriter(regionFolder, 1);
+		writer.write(pos, chunk(1, 100)).get();
+		writer.flush();
+		assertTrue(WDLRegionFile.getFile(regionFolder, 0, 0).delete());
+
+		writer.write(pos, chunk(1, 100)).get();
+		assertEquals(0, writer.getNumElidedWrites());
+		writer.flush();
+	}
+
+	@Test
+	public void testReadMissingRegion() throws Exception {
+		File regionFolder = new File(folder.getRoot(), "region");
+		ChunkPos pos = new ChunkPos(40, 40);
+
+		RegionWriter writer = new RegionWriter(regionFolder, 1);
+		assertNull(writer.read(pos, CompressedStreamTools::read).get());
+		assertFalse(WDLRegionFile.getFile(regionFolder, pos.x, pos.z).exists());
+
+		// The region is reopened for writing once something is written to it
+		writer.write(pos, chunk(1, 100)).get();
+		NBTTagCompound saved = writer.read(pos, CompressedStreamTools::read).get();
+		assertEquals(1, saved.getCompound("Level").getInt("Value"));
+		writer.flush();
+	}
+}
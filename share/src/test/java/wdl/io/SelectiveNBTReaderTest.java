@@ -0,0 +1,127 @@
+/*
+ * This file is part of World Downloader: A mod to make backups of your
+ * multiplayer worlds.
+ * http://www.minecraftforum.net/forums/mapping-and-modding/minecraft-mods/2520465
+ *
+ * Copyright (c) 2014 nairol, cubic72
+ * Copyright (c) 2019 Pokechu22, julialy
+ *
+ * This project is licensed under the MMPLv2.  The full text of the MMPL can be
+ * found in LICENSE.md, or online at https://github.com/iopleke/MMPLv2/blob/master/LICENSE.md
+ * For information about this the MMPLv2, see http://stopmodreposts.org/
+ *
+ * Do not redistribute (in modified or unmodified form) without prior permission.
+ */
+package wdl.io;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import net.minecraft.nbt.CompressedStreamTools;
+import net.minecraft.nbt.NBTTagCompound;
+import net.minecraft.nbt.NBTTagList;
+
+/**
+ * Tests {@link SelectiveNBTReader} against a structure resembling a chunk.
+ */
+public class SelectiveNBTReaderTest {
+
+	private static NBTTagCompound createChunk() {
+		NBTTagCompound level = new NBTTagCompound();
+		level.putInt("xPos", 3);
+		level.putString("Status", "postprocessed");
+		level.putByteArray("Biomes", new byte[256]);
+
+		NBTTagList sections = new NBTTagList();
+		for (int i = 0; i < 4; i++) {
+			NBTTagCompound section = new NBTTagCompound();
+			section.putByte("Y", (byte) i);
+			section.putByteArray("BlockLight", new byte[2048]);
+			section.putIntArray("Data", new int[] { i, i * 2, i * 3 });
+			sections.add(section);
+		}
+		level.put("Sections", sections);
+
+		NBTTagList tileEntities = new NBTTagList();
+		for (int i = 0; i < 3; i++) {
+			NBTTagCompound te = new NBTTagCompound();
+			te.putString("id", "minecraft:chest");
+			te.putInt("x", i);
+			te.putInt("y", 64);
+			te.putInt("z", -i);
+			NBTTagList items = new NBTTagList();
+			NBTTagCompound item = new NBTTagCompound();
+			item.putString("id", "minecraft:stone");
+			item.putByte("Count", (byte) 5);
+			items.add(item);
+			te.put("Items", items);
+			tileEntities.add(te);
+		}
+		level.put("TileEntities", tileEntities);
+
+		NBTTagCompound root = new NBTTagCompound();
+		root.put("Level", level);
+		root.putInt("DataVersion", 1631);
+		return root;
+	}
+
+	private static NBTTagCompound readSelectively(NBTTagCompound tag, String... paths) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		CompressedStreamTools.write(tag, new DataOutputStream(bytes));
+		DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+		NBTTagCompound result = new SelectiveNBTReader(paths).read(input);
+		assertThat("Whole stream should be consumed", input.read(), is(-1));
+		return result;
+	}
+
+	@Test
+	public void testTileEntities() throws IOException {
+		NBTTagCompound chunk = createChunk();
+		NBTTagCompound result = readSelectively(chunk, "Level.TileEntities");
+
+		NBTTagCompound level = result.getCompound("Level");
+		assertEquals(chunk.getCompound("Level").getList("TileEntities", 10),
+				level.getList("TileEntities", 10));
+		assertThat(level.getList("Sections", 10).size(), is(0));
+		assertThat(level.getInt("xPos"), is(0));
+		assertThat(level.getString("Status"), is(""));
+		assertThat(result.getInt("DataVersion"), is(0));
+	}
+
+	@Test
+	public void testMultiplePaths() throws IOException {
+		NBTTagCompound chunk = createChunk();
+		NBTTagCompound result = readSelectively(chunk, "DataVersion", "Level.xPos", "Level.Sections");
+
+		NBTTagCompound level = result.getCompound("Level");
+		assertThat(result.getInt("DataVersion"), is(1631));
+		assertThat(level.getInt("xPos"), is(3));
+		assertEquals(chunk.getCompound("Level").getList("Sections", 10),
+				level.getList("Sections", 10));
+		assertThat(level.getList("TileEntities", 10).size(), is(0));
+	}
+
+	@Test
+	public void testMissingPath() throws IOException {
+		NBTTagCompound result = readSelectively(createChunk(), "Level.Entities", "Missing.Thing", "DataVersion.Inner");
+
+		assertThat(result.getCompound("Level").getList("Entities", 10).size(), is(0));
+		assertThat(result.getInt("DataVersion"), is(0));
+	}
+
+	@Test
+	public void testWholeTree() throws IOException {
+		NBTTagCompound chunk = createChunk();
+		NBTTagCompound result = readSelectively(chunk, "Level", "DataVersion");
+
+		assertEquals(chunk, result);
+	}
+}
@@ -0,0 +1,60 @@
+/*
+ * This file is part of World Downloader: A mod to make backups of your
+ * multiplayer worlds.
+ * http://www.minecraftforum.net/forums/mapping-and-modding/minecraft-mods/2520465
+ *
+ * Copyright (c) 2014 nairol, cubic72
+ * Copyright (c) 2019 Pokechu22, julialy
+ *
+ * This project is licensed under the MMPLv2.  The full text of the MMPL can be
+ * found in LICENSE.md, or online at https://github.com/iopleke/MMPLv2/blob/master/LICENSE.md
+ * For information about this the MMPLv2, see http://stopmodreposts.org/
+ *
+ * Do not redistribute (in modified or unmodified form) without prior permission.
+ */
+package wdl.io;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Checks that {@link SpillFile} returns what was appended, in any order, and
+ * starts over once drained.
+ */
+public class SpillFileTest {
+
+	private static byte[] randomData(int length, long seed) {
+		byte[] data = new byte[length];
+		new Random(seed).nextBytes(data);
+		return data;
+	}
+
+	@Test
+	public void testAppendRead() throws IOException {
+		SpillFile spillFile = new SpillFile();
+		byte[] first = randomData(1000, 1);
+		byte[] second = randomData(5000, 2);
+
+		SpillFile.Entry firstEntry = spillFile.append(first, 800);
+		SpillFile.Entry secondEntry = spillFile.append(second, second.length);
+		assertEquals(2, spillFile.getOutstanding());
+
+		assertArrayEquals(second, spillFile.read(secondEntry));
+		byte[] expected = new byte[800];
+		System.arraycopy(first, 0, expected, 0, 800);
+		assertArrayEquals(expected, spillFile.read(firstEntry));
+		assertEquals(0, spillFile.getOutstanding());
+
+		// Drained, so the next chunk starts at the beginning again
+		SpillFile.Entry thirdEntry = spillFile.append(first, first.length);
+		assertEquals(0, thirdEntry.offset);
+		assertArrayEquals(first, spillFile.read(thirdEntry));
+		assertEquals(3, spillFile.getTotalSpilled());
+
+		spillFile.closeIfEmpty();
+	}
+}
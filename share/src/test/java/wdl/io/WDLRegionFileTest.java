@@ -0,0 +1,148 @@
+/*
+ * This file is part of World Downloader: A mod to make backups of your
+ * multiplayer worlds.
+ * http://www.minecraftforum.net/forums/mapping-and-modding/minecraft-mods/2520465
+ *
+ * Copyright (c) 2014 nairol, cubic72
+ * Copyright (c) 2019 Pokechu22, julialy
+ *
+ * This project is licensed under the MMPLv2.  The full text of the MMPL can be
+ * found in LICENSE.md, or online at https://github.com/iopleke/MMPLv2/blob/master/LICENSE.md
+ * For information about this the MMPLv2, see http://stopmodreposts.org/
+ *
+ * Do not redistribute (in modified or unmodified form) without prior permission.
+ */
+package wdl.io;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.Random;
+import java.util.zip.DeflaterOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Checks that {@link WDLRegionFile} reads back what it writes, including after
+ * being reopened and when chunks change size.
+ */
+public class WDLRegionFileTest {
+	@Rule
+	public final TemporaryFolder folder = new TemporaryFolder();
+
+	private static byte[] compress(byte[] data) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (DeflaterOutputStream output = new DeflaterOutputStream(bytes)) {
+			output.write(data);
+		}
+		return bytes.toByteArray();
+	}
+
+	private static byte[] randomData(int length, long seed) {
+		byte[] data = new byte[length];
+		new Random(seed).nextBytes(data);
+		return data;
+	}
+
+	private static void write(WDLRegionFile region, int x, int z, byte[] data) throws IOException {
+		byte[] compressed = compress(data);
+		region.write(x, z, compressed, compressed.length);
+	}
+
+	private static byte[] read(WDLRegionFile region, int x, int z, int length) throws IOException {
+		try (DataInputStream input = region.read(x, z)) {
+			assertNotNull(input);
+			byte[] data = new byte[length];
+			input.readFully(data);
+			assertThat(input.read(), is(-1));
+			return data;
+		}
+	}
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		File file = WDLRegionFile.getFile(folder.getRoot(), -3, 40);
+		assertThat(file.getName(), is("r.-1.1.mca"));
+
+		byte[] small = randomData(100, 1);
+		byte[] large = randomData(20000, 2);
+		try (WDLRegionFile region = new WDLRegionFile(file)) {
+			assertFalse(region.hasChunk(-3, 40));
+			assertNull(region.read(-3, 40));
+
+			write(region, -3, 40, small);
+			write(region, -4, 41, large);
+
+			assertArrayEquals(small, read(region, -3, 40, small.length));
+			assertArrayEquals(large, read(region, -4, 41, large.length));
+			assertThat(region.getTimestamp(-3, 40), is(greaterThan(0)));
+		}
+		assertThat(file.length() % WDLRegionFile.SECTOR_SIZE, is(0L));
+
+		try (WDLRegionFile region = new WDLRegionFile(file)) {
+			assertArrayEquals(small, read(region, -3, 40, small.length));
+			assertArrayEquals(large, read(region, -4, 41, large.length));
+			assertFalse(region.hasChunk(0, 0));
+		}
+	}
+
+	@Test
+	public void testResize() throws IOException {
+		File file = WDLRegionFile.getFile(folder.getRoot(), 0, 0);
+
+		byte[] first = randomData(10000, 3);
+		byte[] second = randomData(100, 4);
+		byte[] other = randomData(100, 5);
+		byte[] third = randomData(30000, 6);
+		try (WDLRegionFile region = new WDLRegionFile(file)) {
+			write(region, 0, 0, first);
+			write(region, 1, 0, other);
+			long length = file.length();
+
+			// Shrinking frees sectors, which are then reused
+			write(region, 0, 0, second);
+			write(region, 2, 0, other);
+			assertThat(file.length(), is(length));
+
+			// Growing moves the chunk to the end
+			write(region, 0, 0, third);
+
+			assertArrayEquals(third, read(region, 0, 0, third.length));
+			assertArrayEquals(other, read(region, 1, 0, other.length));
+			assertArrayEquals(other, read(region, 2, 0, other.length));
+		}
+	}
+
+	@Test
+	public void testReadOnly() throws IOException {
+		File file = WDLRegionFile.getFile(folder.getRoot(), 0, 0);
+
+		try (WDLRegionFile region = new WDLRegionFile(file, true)) {
+			assertFalse(region.hasChunk(0, 0));
+			assertNull(region.read(0, 0));
+		}
+		assertFalse(file.exists());
+
+		byte[] data = randomData(1000, 7);
+		try (WDLRegionFile region = new WDLRegionFile(file)) {
+			write(region, 0, 0, data);
+		}
+		long length = file.length();
+		try (WDLRegionFile region = new WDLRegionFile(file, true)) {
+			assertArrayEquals(data, read(region, 0, 0, data.length));
+			try {
+				write(region, 1, 0, data);
+				fail("Wrote to a read-only region file");
+			} catch (IllegalStateException ex) {
+				// Expected
+			}
+		}
+		assertThat(file.length(), is(length));
+	}
+}